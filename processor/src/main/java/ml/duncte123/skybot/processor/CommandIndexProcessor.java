@@ -0,0 +1,160 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.processor;
+
+import javax.annotation.processing.AbstractProcessor;
+import javax.annotation.processing.RoundEnvironment;
+import javax.annotation.processing.SupportedAnnotationTypes;
+import javax.lang.model.SourceVersion;
+import javax.lang.model.element.*;
+import javax.lang.model.type.TypeMirror;
+import javax.lang.model.util.ElementFilter;
+import javax.tools.Diagnostic;
+import javax.tools.JavaFileObject;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Finds all the commands at compile time and writes a class that creates them, this way we don't have to scan the
+ * classpath for them when the bot starts
+ * <p>
+ * A class is picked up when it is a public, non abstract class in the commands package that implements ICommand and
+ * has a public constructor without arguments
+ */
+@SupportedAnnotationTypes("*")
+public class CommandIndexProcessor extends AbstractProcessor {
+
+    private static final String COMMANDS_PACKAGE = "ml.duncte123.skybot.commands";
+    private static final String COMMAND_INTERFACE = "ml.duncte123.skybot.objects.command.ICommand";
+    // Keep this in sync with CommandIndex.GENERATED_CLASS
+    private static final String INDEX_PACKAGE = "ml.duncte123.skybot";
+    private static final String INDEX_CLASS = "GeneratedCommandIndex";
+
+    private final Set<String> commands = new TreeSet<>();
+    private boolean written = false;
+
+    @Override
+    public SourceVersion getSupportedSourceVersion() {
+        return SourceVersion.latestSupported();
+    }
+
+    @Override
+    public boolean process(Set<? extends TypeElement> annotations, RoundEnvironment roundEnv) {
+        if (written || roundEnv.processingOver()) {
+            return false;
+        }
+
+        final TypeElement commandInterface = processingEnv.getElementUtils().getTypeElement(COMMAND_INTERFACE);
+
+        if (commandInterface == null) {
+            return false;
+        }
+
+        final TypeMirror commandType = processingEnv.getTypeUtils().erasure(commandInterface.asType());
+
+        for (Element element : roundEnv.getRootElements()) {
+            collect(element, commandType);
+        }
+
+        // All the sources are in the first round, the next rounds only have the files that we generated
+        write();
+        written = true;
+
+        return false;
+    }
+
+    private void collect(Element element, TypeMirror commandType) {
+        if (!(element instanceof TypeElement)) {
+            return;
+        }
+
+        final TypeElement type = (TypeElement) element;
+
+        for (TypeElement inner : ElementFilter.typesIn(type.getEnclosedElements())) {
+            if (inner.getModifiers().contains(Modifier.STATIC)) {
+                collect(inner, commandType);
+            }
+        }
+
+        final String packageName = processingEnv.getElementUtils().getPackageOf(type).getQualifiedName().toString();
+
+        if (!packageName.startsWith(COMMANDS_PACKAGE) || type.getKind() != ElementKind.CLASS) {
+            return;
+        }
+
+        final Set<Modifier> modifiers = type.getModifiers();
+
+        if (!modifiers.contains(Modifier.PUBLIC) || modifiers.contains(Modifier.ABSTRACT)) {
+            return;
+        }
+
+        if (!processingEnv.getTypeUtils().isAssignable(processingEnv.getTypeUtils().erasure(type.asType()), commandType)) {
+            return;
+        }
+
+        for (ExecutableElement constructor : ElementFilter.constructorsIn(type.getEnclosedElements())) {
+            if (constructor.getModifiers().contains(Modifier.PUBLIC) && constructor.getParameters().isEmpty()) {
+                commands.add(type.getQualifiedName().toString());
+                return;
+            }
+        }
+    }
+
+    private void write() {
+        try {
+            final JavaFileObject file = processingEnv.getFiler()
+                .createSourceFile(INDEX_PACKAGE + '.' + INDEX_CLASS);
+
+            try (PrintWriter out = new PrintWriter(file.openWriter())) {
+                out.println("package " + INDEX_PACKAGE + ";");
+                out.println();
+                out.println("import " + COMMAND_INTERFACE + ";");
+                out.println();
+                out.println("import java.util.List;");
+                out.println("import java.util.function.Supplier;");
+                out.println();
+                out.println("@javax.annotation.processing.Generated(\"" + getClass().getName() + "\")");
+                out.println("public final class " + INDEX_CLASS + " implements CommandIndex {");
+                out.println();
+                out.println("    @Override");
+                out.println("    public List<Supplier<ICommand>> getCommands() {");
+                out.println("        return List.of(");
+
+                int i = 0;
+
+                for (String command : commands) {
+                    out.print("            " + command + "::new");
+                    out.println(++i < commands.size() ? "," : "");
+                }
+
+                out.println("        );");
+                out.println("    }");
+                out.println("}");
+            }
+
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.NOTE,
+                "Wrote " + commands.size() + " commands to " + INDEX_CLASS);
+        } catch (IOException e) {
+            processingEnv.getMessager().printMessage(Diagnostic.Kind.ERROR,
+                "Could not write the command index: " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.benchmarks;
+
+import com.sedmelluq.discord.lavaplayer.format.AudioDataFormat;
+import com.sedmelluq.discord.lavaplayer.format.StandardAudioDataFormats;
+import com.sedmelluq.discord.lavaplayer.track.playback.*;
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.audio.AudioPlayerSenderHandler;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.nio.ByteBuffer;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * One 20ms tick of the audio send threads with a number of local players, the gc profiler shows how much every tick
+ * allocates
+ * <p>
+ * The frames go through the real lavaplayer frame buffers, the player itself is left out because it would only add
+ * the cost of decoding the track
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class AudioSendBenchmark {
+
+    private static final AudioDataFormat FORMAT = StandardAudioDataFormats.DISCORD_OPUS;
+    /**
+     * How many ms of audio the players buffer, lower than the default of lavaplayer so a thousand ring buffers fit in
+     * the heap of the benchmark, we never have more than one frame in it anyway
+     */
+    private static final int BUFFER_DURATION = 400;
+    /**
+     * 20 seconds of audio, long enough that the frame lengths don't repeat in a pattern that a small cache can learn
+     */
+    private static final int FRAME_COUNT = 1000;
+    /**
+     * The largest frame that opus makes for 20ms
+     */
+    private static final int MAX_OPUS_FRAME = 1275;
+
+    @Param({"100", "1000"})
+    public int players;
+
+    /**
+     * Opus frames don't have a fixed size, these are the frames that we play in a loop. The lengths are spread like
+     * variable bitrate music at 128kbps, with a few short frames for silence
+     */
+    private byte[][] opusFrames;
+    private AudioFrameBuffer[] allocatingBuffers;
+    private AudioFrameBuffer[] mutableBuffers;
+    private AudioPlayerSenderHandler[] handlers;
+    private MutableAudioFrame sourceFrame;
+    private long tick = 0;
+
+    @Setup
+    public void setup() {
+        final AtomicBoolean stopping = new AtomicBoolean();
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+
+        opusFrames = new byte[FRAME_COUNT][];
+
+        for (int i = 0; i < opusFrames.length; i++) {
+            final int length = random.nextInt(20) == 0 ? 3 :
+                (int) Math.max(3, Math.min(MAX_OPUS_FRAME, 320 + random.nextGaussian() * 100));
+
+            opusFrames[i] = new byte[length];
+            random.nextBytes(opusFrames[i]);
+        }
+
+        allocatingBuffers = new AudioFrameBuffer[players];
+        mutableBuffers = new AudioFrameBuffer[players];
+        handlers = new AudioPlayerSenderHandler[players];
+
+        for (int i = 0; i < players; i++) {
+            allocatingBuffers[i] = new AllocatingAudioFrameBuffer(BUFFER_DURATION, FORMAT, stopping);
+            mutableBuffers[i] = new NonAllocatingAudioFrameBuffer(BUFFER_DURATION, FORMAT, stopping);
+            handlers[i] = new AudioPlayerSenderHandler(mutableBuffers[i]);
+        }
+
+        sourceFrame = new MutableAudioFrame();
+        sourceFrame.setBuffer(ByteBuffer.allocate(FORMAT.maximumChunkSize()));
+        sourceFrame.setFormat(FORMAT);
+        sourceFrame.setVolume(100);
+    }
+
+    /**
+     * How the send handler used to work, every frame is a new object with its own array
+     */
+    @Benchmark
+    public void allocatingFrames(Blackhole blackhole) throws InterruptedException {
+        final byte[] data = opusFrames[(int) (tick++ % opusFrames.length)];
+
+        for (AudioFrameBuffer buffer : allocatingBuffers) {
+            buffer.consume(new ImmutableAudioFrame(tick * 20, data.clone(), 100, FORMAT));
+
+            final AudioFrame frame = buffer.provide();
+
+            blackhole.consume(frame == null ? null : frame.getData());
+        }
+    }
+
+    @Benchmark
+    public void mutableFrames(Blackhole blackhole) throws InterruptedException {
+        final byte[] data = opusFrames[(int) (tick++ % opusFrames.length)];
+
+        sourceFrame.setTimecode(tick * 20);
+        sourceFrame.store(data, 0, data.length);
+
+        for (int i = 0; i < players; i++) {
+            mutableBuffers[i].consume(sourceFrame);
+
+            final AudioPlayerSenderHandler handler = handlers[i];
+
+            blackhole.consume(handler.canProvide() ? handler.provide20MsAudio() : null);
+        }
+    }
+}
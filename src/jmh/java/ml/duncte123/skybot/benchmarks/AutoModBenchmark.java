@@ -0,0 +1,71 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.benchmarks;
+
+import kotlin.Triple;
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.utils.BadWordFilter;
+import ml.duncte123.skybot.utils.SpamFilter;
+import net.dv8tion.jda.core.entities.Message;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The swear filter and the spam check that run on every message when they are turned on
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class AutoModBenchmark {
+
+    private final String cleanText = "Hey everyone, does anyone know a good place to get pizza around here?";
+    private final String longText = cleanText.repeat(20);
+    private BadWordFilter wordFilter;
+    private SpamFilter spamFilter;
+    private Message message;
+
+    @Setup
+    public void setup(BotState state) {
+        // This downloads the word list, without a connection the filter is empty
+        wordFilter = new BadWordFilter();
+        spamFilter = new SpamFilter(state.variables.getDatabase(), state.variables);
+        spamFilter.applyRates(new long[]{20, 45, 60, 120, 240, 2400});
+        message = state.discord.getGuilds().get(0).createMessage(state.member, state.channel, cleanText);
+    }
+
+    @Benchmark
+    public boolean swearFilterShort() {
+        return wordFilter.filterText(cleanText);
+    }
+
+    @Benchmark
+    public boolean swearFilterLong() {
+        return wordFilter.filterText(longText);
+    }
+
+    @Benchmark
+    public boolean spamCheck(BotState state) {
+        return spamFilter.check(new Triple<>(state.member, message, false));
+    }
+}
@@ -0,0 +1,70 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.benchmarks;
+
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.Variables;
+import ml.duncte123.skybot.objects.guild.GuildSettings;
+import ml.duncte123.skybot.replay.FakeDiscord;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.TextChannel;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * The bot and a small fake discord from the replay harness, this needs the same config.json as the bot
+ */
+@State(Scope.Benchmark)
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class BotState {
+
+    Variables variables;
+    FakeDiscord discord;
+    Guild guild;
+    Member member;
+    TextChannel channel;
+
+    @Setup
+    public void setup() {
+        variables = new Variables();
+        discord = new FakeDiscord(10, 100, 2, false);
+
+        for (FakeDiscord.FakeGuild fakeGuild : discord.getGuilds()) {
+            final long guildId = fakeGuild.getGuild().getIdLong();
+
+            variables.getGuildSettings().put(guildId, new GuildSettings(guildId));
+        }
+
+        final FakeDiscord.FakeGuild fakeGuild = discord.getGuilds().get(0);
+
+        guild = fakeGuild.getGuild();
+        member = fakeGuild.getMembers().get(0);
+        channel = fakeGuild.getTextChannels().get(0);
+    }
+
+    @TearDown
+    public void tearDown() {
+        variables.getCommandManager().commandScheduler.shutdown();
+        variables.getRadioStreams().shutdown();
+        variables.getDatabase().getService().shutdown();
+    }
+}
@@ -0,0 +1,74 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.benchmarks;
+
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.CommandManager;
+import ml.duncte123.skybot.Settings;
+import ml.duncte123.skybot.objects.command.ICommand;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Parsing the prefix and arguments of a message and finding the command for it
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class CommandBenchmark {
+
+    private final String simple = Settings.PREFIX + "help";
+    private final String withArgs = Settings.PREFIX + "ttb hello world \"a quoted argument\" and more";
+    private final String customPrefix = "!!help music";
+
+    @Benchmark
+    public List<String> parseSimple() {
+        return CommandManager.parseCommand(simple, "!!");
+    }
+
+    @Benchmark
+    public List<String> parseWithArgs() {
+        return CommandManager.parseCommand(withArgs, "!!");
+    }
+
+    @Benchmark
+    public List<String> parseCustomPrefix() {
+        return CommandManager.parseCommand(customPrefix, "!!");
+    }
+
+    @Benchmark
+    public ICommand lookupByName(BotState state) {
+        return state.variables.getCommandManager().getCommand("help");
+    }
+
+    @Benchmark
+    public ICommand lookupByAlias(BotState state) {
+        return state.variables.getCommandManager().getCommand("np");
+    }
+
+    @Benchmark
+    public ICommand lookupMissing(BotState state) {
+        return state.variables.getCommandManager().getCommand("thisisnotacommand");
+    }
+}
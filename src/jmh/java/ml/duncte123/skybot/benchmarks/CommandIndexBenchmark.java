@@ -0,0 +1,69 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.benchmarks;
+
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.CommandIndex;
+import ml.duncte123.skybot.objects.command.ICommand;
+import org.openjdk.jmh.annotations.*;
+import org.reflections.Reflections;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Compares the generated command index with the classpath scan that it replaced, every fork is a cold start
+ */
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 0)
+@Measurement(iterations = 1)
+@Fork(10)
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class CommandIndexBenchmark {
+
+    @Benchmark
+    public List<ICommand> generatedIndex() throws ReflectiveOperationException {
+        final CommandIndex index = (CommandIndex) Class.forName(CommandIndex.GENERATED_CLASS)
+            .getDeclaredConstructor().newInstance();
+        final List<ICommand> commands = new ArrayList<>();
+
+        for (Supplier<ICommand> constructor : index.getCommands()) {
+            commands.add(constructor.get());
+        }
+
+        return commands;
+    }
+
+    @Benchmark
+    public List<ICommand> reflectionsScan() {
+        final List<ICommand> commands = new ArrayList<>();
+
+        for (Class<? extends ICommand> cmd : new Reflections("ml.duncte123.skybot.commands").getSubTypesOf(ICommand.class)) {
+            try {
+                commands.add(cmd.getDeclaredConstructor().newInstance());
+            } catch (Exception ignored) {
+            }
+        }
+
+        return commands;
+    }
+}
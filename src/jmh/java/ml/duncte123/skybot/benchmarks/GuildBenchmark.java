@@ -0,0 +1,74 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.benchmarks;
+
+import com.jagrosh.jagtag.Parser;
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.audio.GuildMusicManager;
+import ml.duncte123.skybot.objects.guild.GuildSettings;
+import ml.duncte123.skybot.utils.AudioUtils;
+import ml.duncte123.skybot.utils.CustomCommandUtils;
+import ml.duncte123.skybot.utils.GuildSettingsUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The lookups that happen for a guild on every message and rendering a custom command
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class GuildBenchmark {
+
+    private final String customCommand = "Hello {user}, welcome to {guild}! You said: {args}";
+
+    @Benchmark
+    public GuildSettings settingsLookup(BotState state) {
+        return GuildSettingsUtils.getGuild(state.guild, state.variables);
+    }
+
+    @Benchmark
+    public GuildMusicManager musicManagerLookup(BotState state) {
+        return state.variables.getAudioUtils().getMusicManager(state.guild, false);
+    }
+
+    @Benchmark
+    public String trackTimestamp() {
+        return AudioUtils.getTimestamp(3_725_000L);
+    }
+
+    @Benchmark
+    public String renderCustomCommand(BotState state) {
+        final Parser parser = CustomCommandUtils.PARSER;
+        final String result = parser.clear()
+            .put("user", state.member.getUser())
+            .put("channel", state.channel)
+            .put("guild", state.guild)
+            .put("args", "some arguments here")
+            .parse(customCommand);
+
+        parser.clear();
+
+        return result;
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.benchmarks;
+
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.Settings;
+import ml.duncte123.skybot.objects.WebVariables;
+import ml.duncte123.skybot.utils.AirUtils;
+import ml.duncte123.skybot.web.DashboardCache;
+import ml.duncte123.skybot.web.PageCache;
+import ml.duncte123.skybot.web.controllers.Commands;
+import org.openjdk.jmh.annotations.*;
+import spark.ModelAndView;
+import spark.Request;
+import spark.Response;
+import spark.template.jtwig.JtwigTemplateEngine;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serving the pages of the website with and without the {@link PageCache}, and building the channel and role lists
+ * of the dashboard with and without the {@link DashboardCache}
+ * <p>
+ * The uncached page cache has a ttl of 0 so it renders the page on every request but still sets the same headers
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class WebBenchmark {
+
+    private final JtwigTemplateEngine engine = new JtwigTemplateEngine("views");
+    private final PageCache cachedPages = new PageCache();
+    private final PageCache uncachedPages = new PageCache(0L);
+    private final DashboardCache dashboardCache = new DashboardCache();
+    private final Request request = new FakeRequest();
+    private final Response response = new FakeResponse();
+    private ModelAndView home;
+
+    @Setup
+    public void setup() {
+        home = new ModelAndView(
+            new WebVariables()
+                .put("title", "Home")
+                .put("color", AirUtils.colorToHex(Settings.defaultColour))
+                .getMap(),
+            "home.twig"
+        );
+    }
+
+    @Benchmark
+    public Object homeCached() {
+        return cachedPages.serve(request, response, "home.twig", () -> engine.render(home));
+    }
+
+    @Benchmark
+    public Object homeUncached() {
+        return uncachedPages.serve(request, response, "home.twig", () -> engine.render(home));
+    }
+
+    @Benchmark
+    public Object commandsCached(BotState state) {
+        return cachedPages.serve(request, response, "commands.twig:" + Settings.PREFIX,
+            () -> engine.render(Commands.INSTANCE.show(Settings.PREFIX, state.variables)));
+    }
+
+    @Benchmark
+    public Object commandsUncached(BotState state) {
+        return uncachedPages.serve(request, response, "commands.twig:" + Settings.PREFIX,
+            () -> engine.render(Commands.INSTANCE.show(Settings.PREFIX, state.variables)));
+    }
+
+    @Benchmark
+    public DashboardCache.GuildView dashboardCached(BotState state) {
+        return dashboardCache.getView(state.guild);
+    }
+
+    @Benchmark
+    public DashboardCache.GuildView dashboardUncached(BotState state) {
+        dashboardCache.invalidate(state.guild.getIdLong());
+
+        return dashboardCache.getView(state.guild);
+    }
+
+    /**
+     * A browser that does not have the page yet and accepts gzip
+     */
+    private static class FakeRequest extends Request {
+        @Override
+        public String headers(String header) {
+            return "Accept-Encoding".equals(header) ? "gzip, deflate" : null;
+        }
+    }
+
+    /**
+     * Throws the headers away, spark would write them to the servlet response
+     */
+    private static class FakeResponse extends Response {
+        @Override
+        public void header(String header, String value) {
+            // nothing to write to
+        }
+
+        @Override
+        public void status(int statusCode) {
+            // nothing to write to
+        }
+    }
+}
@@ -99,6 +99,21 @@ public final class LavalinkManager {
             g.getAudioManager().isConnected();
     }
 
+    /**
+     * Destroys the link of a guild so lavalink lets go of its player, this does not create a link when there is none
+     */
+    public void destroyLink(long guildId) {
+        if (!isEnabled()) {
+            return;
+        }
+
+        final Link link = lavalink.getExistingLink(String.valueOf(guildId));
+
+        if (link != null) {
+            link.destroy();
+        }
+    }
+
     public VoiceChannel getConnectedChannel(@NotNull Guild guild) {
         //NOTE: never use the local audio manager, since the audio connection may be remote
         // there is also no reason to look the channel up remotely from lavalink, if we have access to a real guild
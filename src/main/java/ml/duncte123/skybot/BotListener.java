@@ -24,6 +24,7 @@ import gnu.trove.list.array.TLongArrayList;
 import kotlin.Triple;
 import me.duncte123.botcommons.text.TextColor;
 import ml.duncte123.skybot.audio.GuildMusicManager;
+import ml.duncte123.skybot.commands.music.LyricsCommand;
 import ml.duncte123.skybot.connections.database.DBManager;
 import ml.duncte123.skybot.entities.jda.DunctebotGuild;
 import ml.duncte123.skybot.objects.command.*;
@@ -34,31 +35,34 @@ import net.dv8tion.jda.core.Permission;
 import net.dv8tion.jda.core.entities.*;
 import net.dv8tion.jda.core.events.ReadyEvent;
 import net.dv8tion.jda.core.events.ShutdownEvent;
+import net.dv8tion.jda.core.events.channel.text.GenericTextChannelEvent;
+import net.dv8tion.jda.core.events.channel.text.TextChannelDeleteEvent;
+import net.dv8tion.jda.core.events.channel.text.update.TextChannelUpdateTopicEvent;
 import net.dv8tion.jda.core.events.guild.GuildJoinEvent;
 import net.dv8tion.jda.core.events.guild.GuildLeaveEvent;
 import net.dv8tion.jda.core.events.guild.member.*;
 import net.dv8tion.jda.core.events.guild.voice.GuildVoiceLeaveEvent;
 import net.dv8tion.jda.core.events.guild.voice.GuildVoiceMoveEvent;
 import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
+import net.dv8tion.jda.core.events.role.GenericRoleEvent;
 import net.dv8tion.jda.core.exceptions.ErrorResponseException;
 import net.dv8tion.jda.core.hooks.ListenerAdapter;
 import org.jetbrains.annotations.NotNull;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.lang.management.ManagementFactory;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Arrays;
-import java.util.List;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import static me.duncte123.botcommons.messaging.MessageUtils.sendMsg;
 
@@ -82,6 +86,14 @@ public class BotListener extends ListenerAdapter {
      * This filter helps us to fiter out spam
      */
     private final SpamFilter spamFilter;
+    /**
+     * This holds the invites of the guilds that have the invite filter enabled
+     */
+    private final GuildInviteCache inviteCache = new GuildInviteCache();
+    /**
+     * This holds the compiled command rules from the channel topics
+     */
+    private final ChannelTopicRules topicRules;
     /**
      * This timer is for checking unbans
      * This timer is for clearing our caches
@@ -134,6 +146,7 @@ public class BotListener extends ListenerAdapter {
         this.variables = variables;
         this.database = variables.getDatabase();
         this.commandManager = variables.getCommandManager();
+        this.topicRules = new ChannelTopicRules(this.commandManager);
 
         this.spamFilter = new SpamFilter(database, variables);
     }
@@ -150,50 +163,48 @@ public class BotListener extends ListenerAdapter {
             unbanTimerRunning = true;
         }
 
+        ShardManager manager = event.getJDA().asBot().getShardManager();
+
         if (!isCacheCleanerActive) {
             logger.info("Starting spam-cache-cleaner!");
             systemPool.scheduleAtFixedRate(spamFilter::clearMessages, 20, 13, TimeUnit.SECONDS);
+            systemPool.scheduleAtFixedRate(variables.getAudioUtils()::removeIdleManagers, 5, 5, TimeUnit.MINUTES);
+            systemPool.scheduleAtFixedRate(() -> inviteCache.refreshInvites(manager), 1, 1, TimeUnit.MINUTES);
+            systemPool.scheduleAtFixedRate(Command.patronEntitlements::removeExpired, 10, 10, TimeUnit.MINUTES);
+            systemPool.scheduleAtFixedRate(GuildUtils.joinOrderIndex::removeUnused, 30, 30, TimeUnit.MINUTES);
+            systemPool.scheduleAtFixedRate(variables.getDashboardCache()::removeExpired, 10, 10, TimeUnit.MINUTES);
+            systemPool.scheduleAtFixedRate(variables.getWarningLedger()::prune, 1, 1, TimeUnit.HOURS);
+            systemPool.scheduleAtFixedRate(commandManager.commandThrottle::removeFull, 5, 5, TimeUnit.MINUTES);
+
+            // Get the genius token now so the first lyrics lookup does not have to wait for it
+            final ICommand lyrics = commandManager.getCommand("lyrics");
+
+            if (lyrics instanceof LyricsCommand) {
+                ((LyricsCommand) lyrics).startTokenRefresh(variables.getConfig().genius);
+            }
+
             isCacheCleanerActive = true;
         }
 
         shardsReady++;
-        ShardManager manager = event.getJDA().asBot().getShardManager();
         if (shardsReady == manager.getShardsTotal()) {
+            logger.info("All shards are ready, {}ms after the bot started",
+                System.currentTimeMillis() - ManagementFactory.getRuntimeMXBean().getStartTime());
 
-            loadPatrons(manager);
+            // Don't block the event thread of the last shard while we go over all the guilds
+            systemPool.execute(() -> loadPatrons(manager));
         }
     }
 
     private void loadPatrons(@NotNull ShardManager manager) {
         logger.info("Collecting patrons");
 
-        Guild supportGuild = manager.getGuildById(Command.supportGuildId);
-
-        List<Long> patronsList = supportGuild.getMembersWithRoles(supportGuild.getRoleById(Command.patronsRole))
-            .stream().map(Member::getUser).map(User::getIdLong).collect(Collectors.toList());
-
-        Command.patrons.addAll(patronsList);
-
-        logger.info("Found {} normal patrons", Command.patrons.size());
+        PatronEntitlements entitlements = Command.patronEntitlements;
 
-        List<User> guildPatronsList = supportGuild.getMembersWithRoles(supportGuild.getRoleById(Command.guildPatronsRole))
-            .stream().map(Member::getUser).collect(Collectors.toList());
+        entitlements.rebuild(manager);
 
-        TLongList patronGuildsTrove = new TLongArrayList();
-
-        guildPatronsList.forEach((patron) -> {
-            List<Long> guilds = manager.getMutualGuilds(patron).stream()
-                .filter((it) -> it.getOwner().equals(it.getMember(patron)) ||
-                    it.getMember(patron).hasPermission(Permission.ADMINISTRATOR))
-                .map(Guild::getIdLong)
-                .collect(Collectors.toList());
-
-            patronGuildsTrove.addAll(guilds);
-        });
-
-        Command.guildPatrons.addAll(patronGuildsTrove);
-
-        logger.info("Found {} guild patrons", patronGuildsTrove.size());
+        logger.info("Found {} normal patrons", entitlements.getPatronCount());
+        logger.info("Found {} guild patrons", entitlements.getGuildPatronCount());
 
         GuildUtils.reloadOneGuildPatrons(manager, database);
     }
@@ -250,7 +261,7 @@ public class BotListener extends ListenerAdapter {
             return;
         }
 
-        if (!canRunCommands(rw, settings, event)) return;
+        if (!topicRules.canRunCommand(event.getChannel(), rw, settings.getCustomPrefix())) return;
 
         if (!rw.startsWith(selfMember) && !rw.startsWith(selfUser)) {
             //Handle the command
@@ -273,6 +284,8 @@ public class BotListener extends ListenerAdapter {
     @Override
     public void onGuildMemberJoin(GuildMemberJoinEvent event) {
         Guild guild = event.getGuild();
+        GuildUtils.joinOrderIndex.onMemberJoin(event.getMember());
+
         if (event.getMember().equals(guild.getSelfMember())) return;
 
         /*
@@ -311,6 +324,7 @@ public class BotListener extends ListenerAdapter {
     @Override
     public void onGuildMemberLeave(GuildMemberLeaveEvent event) {
         Guild guild = event.getGuild();
+        GuildUtils.joinOrderIndex.onMemberLeave(guild.getIdLong(), event.getUser().getIdLong());
 
         if (guild.getIdLong() == Command.supportGuildId) {
             handlePatronRemoval(event.getUser().getIdLong());
@@ -361,6 +375,35 @@ public class BotListener extends ListenerAdapter {
             guild.getId(),
             TextColor.RESET
         );
+
+        variables.getAudioUtils().removeMusicManager(guild.getIdLong());
+        inviteCache.remove(guild.getIdLong());
+        GuildUtils.joinOrderIndex.remove(guild.getIdLong());
+        commandManager.commandThrottle.removeGuild(guild.getIdLong());
+
+        for (TextChannel channel : guild.getTextChannelCache()) {
+            topicRules.invalidate(channel.getIdLong());
+        }
+    }
+
+    @Override
+    public void onTextChannelUpdateTopic(TextChannelUpdateTopicEvent event) {
+        topicRules.invalidate(event.getChannel().getIdLong());
+    }
+
+    @Override
+    public void onTextChannelDelete(TextChannelDeleteEvent event) {
+        topicRules.invalidate(event.getChannel().getIdLong());
+    }
+
+    @Override
+    public void onGenericTextChannel(GenericTextChannelEvent event) {
+        variables.getDashboardCache().invalidate(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onGenericRole(GenericRoleEvent event) {
+        variables.getDashboardCache().invalidate(event.getGuild().getIdLong());
     }
 
     @Override
@@ -412,24 +455,44 @@ public class BotListener extends ListenerAdapter {
     @Override
     public void onGuildMemberRoleRemove(GuildMemberRoleRemoveEvent event) {
 
+        if (event.getMember().equals(event.getGuild().getSelfMember())) {
+            variables.getDashboardCache().invalidate(event.getGuild().getIdLong());
+        }
+
         if (event.getGuild().getIdLong() != Command.supportGuildId) {
             return;
         }
 
+        long userId = event.getUser().getIdLong();
+
         for (Role role : event.getRoles()) {
             long roleId = role.getIdLong();
 
-            if (!(roleId == Command.patronsRole || roleId == Command.guildPatronsRole || roleId == Command.oneGuildPatronsRole)) {
-                continue;
+            if (roleId == Command.patronsRole) {
+                Command.patronEntitlements.removePatron(userId);
             }
 
-            handlePatronRemoval(event.getUser().getIdLong());
+            if (roleId == Command.guildPatronsRole) {
+                Command.patronEntitlements.removeGuildPatron(userId);
+            }
+
+            if (roleId == Command.oneGuildPatronsRole) {
+                Command.patronEntitlements.removeOneGuildPatron(userId);
+                GuildUtils.removeOneGuildPatron(userId, database);
+            }
         }
+
+        // The buckets of the user are sized for their old patron status
+        commandManager.commandThrottle.removeUser(userId);
     }
 
     @Override
     public void onGuildMemberRoleAdd(GuildMemberRoleAddEvent event) {
 
+        if (event.getMember().equals(event.getGuild().getSelfMember())) {
+            variables.getDashboardCache().invalidate(event.getGuild().getIdLong());
+        }
+
         if (event.getGuild().getIdLong() != Command.supportGuildId) {
             return;
         }
@@ -442,20 +505,11 @@ public class BotListener extends ListenerAdapter {
             long roleId = role.getIdLong();
 
             if (roleId == Command.patronsRole) {
-                Command.patrons.add(userId);
+                Command.patronEntitlements.addPatron(userId);
             }
 
             if (roleId == Command.guildPatronsRole) {
-                List<Long> guilds = manager.getMutualGuilds(user).stream()
-                    .filter((it) -> {
-                        Member member = it.getMember(user);
-
-                        return it.getOwner().equals(member) || member.hasPermission(Permission.ADMINISTRATOR);
-                    })
-                    .map(Guild::getIdLong)
-                    .collect(Collectors.toList());
-
-                Command.guildPatrons.addAll(guilds);
+                Command.patronEntitlements.addGuildPatron(user, manager);
             }
 
             if (roleId == Command.oneGuildPatronsRole) {
@@ -463,6 +517,8 @@ public class BotListener extends ListenerAdapter {
             }
         }
 
+        commandManager.commandThrottle.removeUser(userId);
+
     }
 
     @Override
@@ -477,7 +533,8 @@ public class BotListener extends ListenerAdapter {
             this.systemPool.shutdown();
 
         AirUtils.stop(database, variables.getAudioUtils());
-        commandManager.commandThread.shutdown();
+        commandManager.commandScheduler.shutdown();
+        variables.getRadioStreams().shutdown();
 
         /*
          * Only shut down if we are not updating
@@ -532,26 +589,6 @@ public class BotListener extends ListenerAdapter {
         return true;
     }
 
-    private boolean shouldBlockCommand(@NotNull GuildSettings settings, @NotNull String rw, @NotNull String s) {
-        return s.equalsIgnoreCase(
-            rw.replaceFirst(Pattern.quote(Settings.OTHER_PREFIX), Pattern.quote(Settings.PREFIX))
-                .replaceFirst(Pattern.quote(settings.getCustomPrefix()), Pattern.quote(Settings.PREFIX))
-                .replaceFirst(Pattern.quote(Settings.PREFIX), "").split("\\s+", 2)[0].toLowerCase()
-        );
-    }
-
-    //                                    raw,    category?
-    private boolean hasCorrectCategory(@NotNull String rw, @NotNull String categoryName) {
-
-        ICommand command = commandManager.getCommand(rw.replaceFirst(Pattern.quote(Settings.OTHER_PREFIX), Settings.PREFIX)
-            .replaceFirst(Pattern.quote(Settings.PREFIX), "").split("\\s+", 2)[0].toLowerCase());
-
-        if (command == null)
-            return false;
-
-        return command.getCategory() == CommandCategory.valueOf(categoryName.toUpperCase());
-    }
-
     /**
      * This handles the guild leave/ join events to deferments if the channel is empty
      *
@@ -563,20 +600,28 @@ public class BotListener extends ListenerAdapter {
     private void channelCheckThing(Guild g, @NotNull VoiceChannel vc) {
 
         if (vc.getMembers().stream().filter(m -> !m.getUser().isBot()).count() < 1) {
-            GuildMusicManager manager = variables.getAudioUtils().getMusicManager(g);
-            manager.player.stopTrack();
-            manager.player.setPaused(false);
-            manager.scheduler.queue.clear();
+            GuildMusicManager manager = variables.getAudioUtils().getMusicManager(g, false);
+
+            if (manager != null) {
+                manager.cancelLoads();
+                manager.player.stopTrack();
+                manager.player.setPaused(false);
+
+                synchronized (manager.scheduler.queue) {
+                    manager.scheduler.queue.clear();
+                }
+
+                sendMsg(g.getTextChannelById(manager.latestChannel), "Leaving voice channel because all the members have left it.");
+            }
+
             MusicCommand.cooldowns.put(g.getIdLong(), 12600);
 
             if (g.getAudioManager().getConnectionListener() != null)
                 g.getAudioManager().setConnectionListener(null);
 
-            sendMsg(g.getTextChannelById(manager.latestChannel), "Leaving voice channel because all the members have left it.");
-
             if (LavalinkManager.ins.isConnected(g)) {
                 LavalinkManager.ins.closeConnection(g);
-                variables.getAudioUtils().getMusicManagers().remove(g.getIdLong());
+                variables.getAudioUtils().removeMusicManager(g.getIdLong());
             }
         }
     }
@@ -612,15 +657,6 @@ public class BotListener extends ListenerAdapter {
             .replaceAll("\\{\\{EVENT_TYPE}}", event instanceof GuildMemberJoinEvent ? "joined" : "left");
     }
 
-    @SuppressWarnings("ConstantConditions")
-    private boolean isCategory(@NotNull String name) {
-        try {
-            return CommandCategory.valueOf(name.toUpperCase()) != null;
-        } catch (IllegalArgumentException ignored) {
-            return false;
-        }
-    }
-
     private void killAllShards(@NotNull ShardManager manager) {
         manager.shutdown();
         /*manager.getShards().forEach(jda -> {
@@ -629,47 +665,6 @@ public class BotListener extends ListenerAdapter {
         });*/
     }
 
-    private boolean canRunCommands(String rw, GuildSettings settings, @NotNull GuildMessageReceivedEvent event) {
-
-        String topic = event.getChannel().getTopic();
-
-        if (topic == null || topic.isEmpty()) {
-            return true;
-        }
-
-        if (topic.contains("-commands"))
-            return false;
-
-        String[] blocked = topic.split("-");
-
-        for (String s : blocked) {
-            if (s.startsWith("!")) {
-                s = s.split("!")[1];
-
-                if (isCategory(s.toUpperCase()) && !hasCorrectCategory(rw, s)) {
-                    return false;
-                }
-
-                /*if (shouldBlockCommand(settings, rw, s))
-                    return false;
-
-                return true;*/
-                return !shouldBlockCommand(settings, rw, s);
-            }
-
-            if (isCategory(s.toUpperCase()) && hasCorrectCategory(rw, s)) {
-                return false;
-            }
-
-            if (shouldBlockCommand(settings, rw, s)) {
-                return false;
-            }
-
-        }
-
-        return true;
-    }
-
     private boolean doAutoModChecks(@NotNull GuildMessageReceivedEvent event, GuildSettings settings, String rw) {
         Guild guild = event.getGuild();
         if (guild.getSelfMember().hasPermission(Permission.MESSAGE_MANAGE)
@@ -681,10 +676,9 @@ public class BotListener extends ListenerAdapter {
                     //Get the invite Id from the message
                     String inviteID = matcher.group(matcher.groupCount());
 
-                    //Prohibiting failure because the bot is currently banned from the other guild.
-                    guild.getInvites().queue((invites) -> {
-                        //Check if the invite is for this guild, if it is not delete the message
-                        if (invites.stream().noneMatch((invite) -> invite.getCode().equals(inviteID))) {
+                    //Check if the invite is for this guild, if it is not delete the message
+                    inviteCache.isOwnInvite(guild, inviteID, (isOwnInvite) -> {
+                        if (!isOwnInvite) {
                             event.getMessage().delete().reason("Contained unauthorized invite.").queue(it ->
                                 sendMsg(event, event.getAuthor().getAsMention() +
                                     ", please don't post invite links here.", m -> m.delete().queueAfter(4, TimeUnit.SECONDS))
@@ -725,15 +719,10 @@ public class BotListener extends ListenerAdapter {
     }
 
     private void handlePatronRemoval(long userId) {
-        // Remove the user from the patrons list
-        Command.patrons.remove(userId);
-
-        // Remove the user from the one guild patrons
-        Command.oneGuildPatrons.remove(userId);
+        // Remove all the perks of the user
+        Command.patronEntitlements.removeAll(userId);
         GuildUtils.removeOneGuildPatron(userId, database);
-
-        // TODO: Handle full guild case
-        // But hey, who cares right now
+        commandManager.commandThrottle.removeUser(userId);
     }
 
     private void handleNewOneGuildPatron(long userId) {
@@ -750,7 +739,7 @@ public class BotListener extends ListenerAdapter {
                 while (resultSet.next()) {
                     long guildId = Long.parseLong(resultSet.getString("guild_id"));
 
-                    Command.oneGuildPatrons.put(userId, guildId);
+                    Command.patronEntitlements.setOneGuildPatron(userId, guildId);
                 }
 
             } catch (SQLException e) {
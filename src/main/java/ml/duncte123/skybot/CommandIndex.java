@@ -0,0 +1,38 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot;
+
+import ml.duncte123.skybot.objects.command.ICommand;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+/**
+ * The list of commands that is made at compile time by the processor module
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public interface CommandIndex {
+
+    String GENERATED_CLASS = "ml.duncte123.skybot.GeneratedCommandIndex";
+
+    /**
+     * @return the constructors of all the commands
+     */
+    List<Supplier<ICommand>> getCommands();
+}
@@ -19,9 +19,13 @@
 package ml.duncte123.skybot;
 
 import com.jagrosh.jagtag.Parser;
+import gnu.trove.map.TLongLongMap;
+import gnu.trove.map.hash.TLongLongHashMap;
 import kotlin.Triple;
 import ml.duncte123.skybot.connections.database.DBManager;
 import ml.duncte123.skybot.exceptions.DoomedException;
+import ml.duncte123.skybot.metrics.MetricsRegistry;
+import ml.duncte123.skybot.metrics.TimerFamily;
 import ml.duncte123.skybot.objects.command.CommandCategory;
 import ml.duncte123.skybot.objects.command.CommandContext;
 import ml.duncte123.skybot.objects.command.ICommand;
@@ -30,9 +34,11 @@ import ml.duncte123.skybot.objects.command.custom.CustomCommandImpl;
 import ml.duncte123.skybot.utils.CustomCommandUtils;
 import ml.duncte123.skybot.utils.GuildSettingsUtils;
 import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
-import org.apache.commons.lang3.time.DateUtils;
 import org.reflections.Reflections;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
+import java.lang.reflect.Modifier;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
@@ -40,8 +46,9 @@ import java.sql.SQLException;
 import java.util.*;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import java.util.stream.Collectors;
@@ -53,14 +60,31 @@ import static ml.duncte123.skybot.unstable.utils.ComparatingUtils.execCheck;
 @Author(nickname = "duncte123", author = "Duncan Sterken")
 public class CommandManager {
 
-    public final ExecutorService commandThread = Executors.newCachedThreadPool(t -> new Thread(t, "Command-execute-thread"));
+    private static final Logger logger = LoggerFactory.getLogger(CommandManager.class);
     private static final Pattern COMMAND_PATTERN = Pattern.compile("([^\"]\\S*|\".+?\")\\s*");
+    /**
+     * We tell a user that they have too many commands waiting at most once in this time
+     */
+    private static final long REJECT_WARN_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+    public final CommandScheduler commandScheduler = new CommandScheduler();
+    public final CommandThrottle commandThrottle = new CommandThrottle();
+    private final TimerFamily commandTimers = MetricsRegistry.ins.timers("skybot_command_duration_seconds",
+        "Time it takes to run a command, custom commands share one label", "command");
     /**
      * This stores all our commands
      */
     private final Set<ICommand> commands = ConcurrentHashMap.newKeySet();
     private final List<ICommand> commandsSorted = new ArrayList<>();
+    /**
+     * These index the commands by name and alias so we don't have to loop over all the commands
+     */
+    private final Map<String, ICommand> commandsByName = new ConcurrentHashMap<>();
+    private final Map<String, ICommand> commandsByAlias = new ConcurrentHashMap<>();
     private final Set<CustomCommand> customCommands = ConcurrentHashMap.newKeySet();
+    /**
+     * The last time that a user was told that the scheduler rejected their command
+     */
+    private final TLongLongMap rejectWarnings = new TLongLongHashMap();
     private final DBManager database;
 
     private final Variables variables;
@@ -72,11 +96,15 @@ public class CommandManager {
         this.variables = variables;
         this.database = variables.getDatabase();
 
-        //Get reflections for this project
-        registerCommandsFromReflection(new Reflections("ml.duncte123.skybot.commands"));
-//        registerCommandsFromReflection(new Reflections("ml.duncte123.skybot.unstable.commands"));
+        final long start = System.currentTimeMillis();
+
+        if (!registerCommandsFromIndex()) {
+            // Builds without the annotation processor (like some IDE setups) don't have the index
+            logger.warn("No generated command index found, scanning the classpath for commands");
+            registerCommandsFromReflection(new Reflections("ml.duncte123.skybot.commands"));
+        }
 
-        loadCustomCommands();
+        logger.info("Loaded {} commands in {}ms", commands.size(), System.currentTimeMillis() - start);
     }
 
     /**
@@ -117,13 +145,27 @@ public class CommandManager {
      * @return a possible null command for the name
      */
     public ICommand getCommand(String name) {
-        Optional<ICommand> cmd = commands.stream().filter(c -> c.getName().equals(name)).findFirst();
+        ICommand cmd = commandsByName.get(name);
 
-        if (!cmd.isPresent()) {
-            cmd = commands.stream().filter(c -> Arrays.asList(c.getAliases()).contains(name)).findFirst();
+        if (cmd == null) {
+            cmd = commandsByAlias.get(name);
         }
 
-        return cmd.orElse(null);
+        return cmd;
+    }
+
+    /**
+     * Gets the category of a command without looking up the command itself
+     *
+     * @param invoke
+     *         the name or alias of the command
+     *
+     * @return the category or null if there is no command for this invoke
+     */
+    public CommandCategory getCategory(String invoke) {
+        ICommand cmd = getCommand(invoke);
+
+        return cmd == null ? null : cmd.getCategory();
     }
 
     /*public List<ICommand> getCommands(CommandCategory category) {
@@ -266,6 +308,12 @@ public class CommandManager {
         }
         this.commands.add(command);
 
+        this.commandsByName.put(command.getName(), command);
+
+        for (String alias : command.getAliases()) {
+            this.commandsByAlias.putIfAbsent(alias, command);
+        }
+
         return true;
     }
 
@@ -277,23 +325,38 @@ public class CommandManager {
      */
     public void runCommand(GuildMessageReceivedEvent event) {
         String customPrefix = GuildSettingsUtils.getGuild(event.getGuild(), variables).getCustomPrefix();
-        final String[] split = event.getMessage().getContentRaw().replaceFirst(
+        final List<String> split = parseCommand(event.getMessage().getContentRaw(), customPrefix);
+
+        dispatchCommand(split.get(0), split.subList(1, split.size()), event);
+    }
+
+    /**
+     * Removes the prefix from a message and splits it into the invoke and the arguments
+     *
+     * @param raw
+     *         the raw content of the message
+     * @param customPrefix
+     *         the prefix of the guild
+     *
+     * @return a list with the invoke first, followed by the arguments
+     */
+    public static List<String> parseCommand(String raw, String customPrefix) {
+        final String[] split = raw.replaceFirst(
             "(?i)" + Pattern.quote(Settings.PREFIX) + "|" + Pattern.quote(Settings.OTHER_PREFIX) + "|" +
                 Pattern.quote(customPrefix),
             "").split("\\s+", 2);
-        final String invoke = split[0].toLowerCase();
 
-        List<String> args = new ArrayList<>();
+        List<String> result = new ArrayList<>();
+        result.add(split[0].toLowerCase());
 
         if (split.length > 1) {
-            String raw = split[1];
-            Matcher m = COMMAND_PATTERN.matcher(raw);
+            Matcher m = COMMAND_PATTERN.matcher(split[1]);
             while (m.find()) {
-                args.add(m.group(1)); // Add .replace("\"", "") to remove surrounding quotes.
+                result.add(m.group(1)); // Add .replace("\"", "") to remove surrounding quotes.
             }
         }
 
-        dispatchCommand(invoke, args, event);
+        return result;
     }
 
     public void dispatchCommand(String invoke, List<String> args, GuildMessageReceivedEvent event) {
@@ -310,7 +373,22 @@ public class CommandManager {
             return;
         }
 
-        commandThread.submit(() -> {
+        final CommandThrottle.Result throttle = commandThrottle.tryAcquire(cmd, event.getAuthor(), event.getGuild());
+
+        if (throttle != CommandThrottle.Result.ALLOWED) {
+            if (throttle == CommandThrottle.Result.THROTTLED) {
+                sendMsg(event, "You are using commands too fast, please slow down a bit");
+            }
+
+            return;
+        }
+
+        final CommandScheduler.Priority priority = cmd.isCustom() ?
+            CommandScheduler.Priority.NORMAL : CommandScheduler.Priority.forCategory(cmd.getCategory());
+
+        final boolean accepted = commandScheduler.submit(event.getGuild().getIdLong(), event.getAuthor().getIdLong(), priority, () -> {
+            final long start = System.nanoTime();
+
             try {
 
                 if (!cmd.isCustom()) {
@@ -361,32 +439,92 @@ public class CommandManager {
 
             } catch (Throwable ex) {
                 execCheck(ex);
+            } finally {
+                commandTimers.get(cmd.isCustom() ? "custom" : cmd.getName()).record(System.nanoTime() - start);
             }
         });
+
+        if (!accepted) {
+            // The command never ran so it should not count against the limits
+            commandThrottle.refund(cmd, event.getAuthor(), event.getGuild());
+
+            if (shouldWarnRejected(event.getAuthor().getIdLong())) {
+                sendMsg(event, "Woah there, you are running too many commands at once. Please wait for them to finish");
+            }
+        }
+    }
+
+    /**
+     * Checks if we should tell the user about their rejected command, spamming commands should not make us spam back
+     */
+    private boolean shouldWarnRejected(long userId) {
+        final long now = System.currentTimeMillis();
+
+        synchronized (rejectWarnings) {
+            if (now - rejectWarnings.get(userId) < REJECT_WARN_INTERVAL) {
+                return false;
+            }
+
+            rejectWarnings.put(userId, now);
+
+            // The old warnings don't matter anymore
+            if (rejectWarnings.size() > 1000) {
+                rejectWarnings.retainEntries((id, warned) -> now - warned < REJECT_WARN_INTERVAL);
+            }
+
+            return true;
+        }
+    }
+
+    /**
+     * Registers the commands from the index that the processor module made at compile time
+     *
+     * @return false if the index does not exist
+     */
+    private boolean registerCommandsFromIndex() {
+        final CommandIndex index;
+
+        try {
+            index = (CommandIndex) Class.forName(CommandIndex.GENERATED_CLASS).getDeclaredConstructor().newInstance();
+        } catch (ReflectiveOperationException e) {
+            return false;
+        }
+
+        for (Supplier<ICommand> constructor : index.getCommands()) {
+            try {
+                this.addCommand(constructor.get());
+            } catch (Exception e) {
+                logger.error("Could not create a command", e);
+            }
+        }
+
+        return true;
     }
 
     private void registerCommandsFromReflection(Reflections reflections) {
         //Loop over them commands
         for (Class<? extends ICommand> cmd : reflections.getSubTypesOf(ICommand.class)) {
+            if (Modifier.isAbstract(cmd.getModifiers()) || cmd.isInterface()) {
+                continue;
+            }
+
             try {
                 ICommand command = cmd.getDeclaredConstructor().newInstance();
-//                System.out.println(command.getName());
                 //Add the command
                 this.addCommand(command);
-            } catch (Exception ignored) {
+            } catch (Exception e) {
+                logger.error("Could not create command {}", cmd.getName(), e);
             }
         }
     }
 
-    private void loadCustomCommands() {
-        database.run(() -> {
-
-            try {
-                // Sleep for database safety
-                Thread.sleep(DateUtils.MILLIS_PER_SECOND * 2);
-            } catch (InterruptedException ignored) {
-            }
-
+    /**
+     * Loads the custom commands from the database, this is called on startup once the database is reachable
+     *
+     * @return a future that completes when the custom commands are loaded
+     */
+    public Future<?> loadCustomCommands() {
+        return database.run(() -> {
             try (Connection con = database.getConnManager().getConnection()) {
                 ResultSet res = con.createStatement().executeQuery("SELECT invoke, message, guildId FROM customCommands");
                 while (res.next()) {
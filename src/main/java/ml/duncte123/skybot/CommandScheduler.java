@@ -0,0 +1,311 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot;
+
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import ml.duncte123.skybot.objects.command.CommandCategory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Runs the commands on a fixed amount of threads
+ * <p>
+ * Every guild and user can only run a couple of commands at the same time and can only have a few commands waiting,
+ * this makes sure that one guild spamming slow commands can't take all the threads. Moderation and music commands
+ * are picked before the other commands, unless a command in a lower lane has been waiting for too long
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class CommandScheduler {
+
+    private static final Logger logger = LoggerFactory.getLogger(CommandScheduler.class);
+    private static final int THREADS = 16;
+    private static final int MAX_RUNNING_PER_GUILD = 4;
+    private static final int MAX_RUNNING_PER_USER = 2;
+    private static final int MAX_QUEUED_PER_GUILD = 20;
+    private static final int MAX_QUEUED_PER_USER = 5;
+    private static final int MAX_QUEUED = 1000;
+    /**
+     * Lanes that have a command waiting for longer than this are picked first, so busy high lanes can't starve them
+     */
+    private static final long MAX_WAIT_NANOS = TimeUnit.SECONDS.toNanos(2);
+
+    private final Object lock = new Object();
+    private final List<Deque<Task>> lanes = new ArrayList<>();
+    private final TLongIntMap runningPerGuild = new TLongIntHashMap();
+    private final TLongIntMap runningPerUser = new TLongIntHashMap();
+    private final TLongIntMap queuedPerGuild = new TLongIntHashMap();
+    private final TLongIntMap queuedPerUser = new TLongIntHashMap();
+    private final List<Thread> threads = new ArrayList<>();
+    private final LongAdder executed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder totalQueueNanos = new LongAdder();
+    private volatile long maxQueueNanos = 0L;
+    private int queued = 0;
+    private int running = 0;
+    private boolean shutdown = false;
+
+    CommandScheduler() {
+        for (Priority ignored : Priority.values()) {
+            lanes.add(new ArrayDeque<>());
+        }
+
+        for (int i = 0; i < THREADS; i++) {
+            Thread thread = new Thread(this::runWorker, "Command-execute-thread-" + i);
+
+            threads.add(thread);
+            thread.start();
+        }
+    }
+
+    /**
+     * Adds a command to the queue
+     *
+     * @param guildId
+     *         the guild that the command was ran in
+     * @param userId
+     *         the user that ran the command
+     * @param priority
+     *         the lane to put the command in
+     * @param runnable
+     *         the command
+     *
+     * @return false if the command was rejected because the guild or user has too many commands waiting
+     */
+    public boolean submit(long guildId, long userId, Priority priority, Runnable runnable) {
+        synchronized (lock) {
+            if (shutdown || queued >= MAX_QUEUED || queuedPerGuild.get(guildId) >= MAX_QUEUED_PER_GUILD
+                || queuedPerUser.get(userId) >= MAX_QUEUED_PER_USER) {
+                rejected.increment();
+                return false;
+            }
+
+            lanes.get(priority.ordinal()).add(new Task(guildId, userId, runnable));
+            queuedPerGuild.adjustOrPutValue(guildId, 1, 1);
+            queuedPerUser.adjustOrPutValue(userId, 1, 1);
+            queued++;
+
+            lock.notify();
+        }
+
+        return true;
+    }
+
+    public void shutdown() {
+        synchronized (lock) {
+            shutdown = true;
+            lock.notifyAll();
+        }
+    }
+
+    public int getQueued() {
+        synchronized (lock) {
+            return queued;
+        }
+    }
+
+    /**
+     * @return the amount of commands that are running right now
+     */
+    public int getRunning() {
+        synchronized (lock) {
+            return running;
+        }
+    }
+
+    public long getExecuted() {
+        return executed.sum();
+    }
+
+    public long getRejected() {
+        return rejected.sum();
+    }
+
+    /**
+     * @return the average time that commands waited in the queue in milliseconds
+     */
+    public double getAverageQueueTime() {
+        final long count = executed.sum();
+
+        return count == 0 ? 0 : TimeUnit.NANOSECONDS.toMicros(totalQueueNanos.sum()) / 1000D / count;
+    }
+
+    public long getMaxQueueTime() {
+        return TimeUnit.NANOSECONDS.toMillis(maxQueueNanos);
+    }
+
+    private void runWorker() {
+        while (true) {
+            final Task task;
+
+            synchronized (lock) {
+                Task next;
+
+                while ((next = pollRunnable()) == null) {
+                    if (shutdown) {
+                        return;
+                    }
+
+                    try {
+                        lock.wait();
+                    } catch (InterruptedException e) {
+                        return;
+                    }
+                }
+
+                task = next;
+            }
+
+            final long waited = System.nanoTime() - task.queuedAt;
+
+            totalQueueNanos.add(waited);
+
+            if (waited > maxQueueNanos) {
+                maxQueueNanos = waited;
+            }
+
+            try {
+                task.runnable.run();
+            } catch (Throwable thr) {
+                logger.error("Error while running command", thr);
+            } finally {
+                executed.increment();
+
+                synchronized (lock) {
+                    running--;
+                    decrement(runningPerGuild, task.guildId);
+                    decrement(runningPerUser, task.userId);
+                    // The guild or user might have commands waiting that can run now
+                    lock.notifyAll();
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the first command, highest priority first, that does not go over the limits of its guild and user.
+     * Must be called while holding the lock
+     */
+    private Task pollRunnable() {
+        final long now = System.nanoTime();
+
+        // The lanes are in the order that the commands came in, so the first command is the one that waited longest
+        for (Deque<Task> lane : lanes) {
+            final Task oldest = lane.peekFirst();
+
+            if (oldest != null && now - oldest.queuedAt > MAX_WAIT_NANOS) {
+                final Task task = pollLane(lane);
+
+                if (task != null) {
+                    return task;
+                }
+            }
+        }
+
+        for (Deque<Task> lane : lanes) {
+            final Task task = pollLane(lane);
+
+            if (task != null) {
+                return task;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Takes the first command from the lane that can run.
+     * <p>
+     * Only guilds and users that are at their running limit can block a command and there can only be a few of those
+     * at the same time, so this skips at most (THREADS / MAX_RUNNING_PER_GUILD) * MAX_QUEUED_PER_GUILD +
+     * (THREADS / MAX_RUNNING_PER_USER) * MAX_QUEUED_PER_USER commands instead of the whole queue
+     */
+    private Task pollLane(Deque<Task> lane) {
+        final Iterator<Task> iterator = lane.iterator();
+
+        while (iterator.hasNext()) {
+            final Task task = iterator.next();
+
+            if (runningPerGuild.get(task.guildId) >= MAX_RUNNING_PER_GUILD ||
+                runningPerUser.get(task.userId) >= MAX_RUNNING_PER_USER) {
+                continue;
+            }
+
+            iterator.remove();
+            queued--;
+            running++;
+            decrement(queuedPerGuild, task.guildId);
+            decrement(queuedPerUser, task.userId);
+            runningPerGuild.adjustOrPutValue(task.guildId, 1, 1);
+            runningPerUser.adjustOrPutValue(task.userId, 1, 1);
+
+            return task;
+        }
+
+        return null;
+    }
+
+    private static void decrement(TLongIntMap map, long key) {
+        if (map.adjustOrPutValue(key, -1, 0) <= 0) {
+            map.remove(key);
+        }
+    }
+
+    public enum Priority {
+        HIGH,
+        NORMAL,
+        LOW;
+
+        public static Priority forCategory(CommandCategory category) {
+            switch (category) {
+                case MOD_ADMIN:
+                case MUSIC:
+                    return HIGH;
+                case FUN:
+                case ANIMALS:
+                case WEEB:
+                case NSFW:
+                    return LOW;
+                default:
+                    return NORMAL;
+            }
+        }
+    }
+
+    private static class Task {
+        private final long guildId;
+        private final long userId;
+        private final Runnable runnable;
+        private final long queuedAt = System.nanoTime();
+
+        private Task(long guildId, long userId, Runnable runnable) {
+            this.guildId = guildId;
+            this.userId = userId;
+            this.runnable = runnable;
+        }
+    }
+}
@@ -0,0 +1,311 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot;
+
+import ml.duncte123.skybot.objects.command.CommandCategory;
+import ml.duncte123.skybot.objects.command.ICommand;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.User;
+
+import java.util.EnumMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+import static ml.duncte123.skybot.objects.command.Command.patronEntitlements;
+
+/**
+ * Token buckets that limit how fast users and guilds can run commands
+ * <p>
+ * Every user has a bucket for every command category and every guild has one bucket, a command takes
+ * {@link ICommand#getRateLimitCost()} tokens from both. Patrons get bigger buckets that refill faster, the size of a
+ * guild bucket only depends on the perks of the guild and is changed when those change
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class CommandThrottle {
+
+    private static final int USER_CAPACITY = 8;
+    private static final int USER_REFILL_PER_MINUTE = 20;
+    private static final int GUILD_CAPACITY = 40;
+    private static final int GUILD_REFILL_PER_MINUTE = 120;
+    private static final int PATRON_MULTIPLIER = 2;
+    /**
+     * We tell the user that they are being throttled at most once in this time
+     */
+    private static final long WARN_INTERVAL = TimeUnit.SECONDS.toMillis(10);
+
+    private final Map<CommandCategory, Map<Long, Bucket>> userBuckets = new EnumMap<>(CommandCategory.class);
+    private final Map<Long, Bucket> guildBuckets = new ConcurrentHashMap<>();
+    private final Map<CommandCategory, LongAdder> throttledPerCategory = new EnumMap<>(CommandCategory.class);
+    private final LongAdder allowed = new LongAdder();
+    private final LongAdder throttledUsers = new LongAdder();
+    private final LongAdder throttledGuilds = new LongAdder();
+
+    CommandThrottle() {
+        for (CommandCategory category : CommandCategory.values()) {
+            userBuckets.put(category, new ConcurrentHashMap<>());
+            throttledPerCategory.put(category, new LongAdder());
+        }
+    }
+
+    /**
+     * Takes the tokens for a command from the buckets of the user and the guild
+     *
+     * @param command
+     *         the command that is being ran
+     * @param user
+     *         the user that runs the command
+     * @param guild
+     *         the guild that the command is ran in
+     *
+     * @return the result, {@link Result#THROTTLED} means that the user should be told about it
+     */
+    public Result tryAcquire(ICommand command, User user, Guild guild) {
+        final CommandCategory category = getCategory(command);
+        final int cost = command.getRateLimitCost();
+        final long now = System.currentTimeMillis();
+
+        final Bucket userBucket = userBuckets.get(category).computeIfAbsent(user.getIdLong(), (id) -> {
+            final int multiplier = patronEntitlements.isPatron(user) ? PATRON_MULTIPLIER : 1;
+
+            return new Bucket(USER_CAPACITY * multiplier, USER_REFILL_PER_MINUTE * multiplier, now, multiplier > 1);
+        });
+
+        if (!userBucket.tryTake(cost, now)) {
+            throttledUsers.increment();
+            throttledPerCategory.get(category).increment();
+
+            return userBucket.shouldWarn(now) ? Result.THROTTLED : Result.THROTTLED_SILENT;
+        }
+
+        final Bucket guildBucket = getGuildBucket(guild.getIdLong(), now);
+
+        if (!guildBucket.tryTake(cost, now)) {
+            // The command did not run so the user should not pay for it
+            userBucket.giveBack(cost);
+            throttledGuilds.increment();
+            throttledPerCategory.get(category).increment();
+
+            return guildBucket.shouldWarn(now) ? Result.THROTTLED : Result.THROTTLED_SILENT;
+        }
+
+        allowed.increment();
+
+        return Result.ALLOWED;
+    }
+
+    /**
+     * Gives the tokens back to the user and the guild when a command was allowed but did not run
+     *
+     * @param command
+     *         the command that was allowed
+     * @param user
+     *         the user that ran the command
+     * @param guild
+     *         the guild that the command was ran in
+     */
+    public void refund(ICommand command, User user, Guild guild) {
+        final int cost = command.getRateLimitCost();
+        final Bucket userBucket = userBuckets.get(getCategory(command)).get(user.getIdLong());
+        final Bucket guildBucket = guildBuckets.get(guild.getIdLong());
+
+        // The buckets may have been removed in the meantime, a new bucket is full anyway
+        if (userBucket != null) {
+            userBucket.giveBack(cost);
+        }
+
+        if (guildBucket != null) {
+            guildBucket.giveBack(cost);
+        }
+
+        allowed.decrement();
+    }
+
+    /**
+     * Gets the bucket of a guild, a new bucket is made when the guild got or lost its patron perks
+     */
+    private Bucket getGuildBucket(long guildId, long now) {
+        final boolean patron = patronEntitlements.hasGuildPerks(guildId);
+        final Bucket bucket = guildBuckets.get(guildId);
+
+        if (bucket != null && bucket.patron == patron) {
+            return bucket;
+        }
+
+        return guildBuckets.compute(guildId, (id, current) -> {
+            if (current != null && current.patron == patron) {
+                return current;
+            }
+
+            final int multiplier = patron ? PATRON_MULTIPLIER : 1;
+
+            return new Bucket(GUILD_CAPACITY * multiplier, GUILD_REFILL_PER_MINUTE * multiplier, now, patron);
+        });
+    }
+
+    /**
+     * Removes the buckets that are full again, they would be the same as a new bucket
+     */
+    public void removeFull() {
+        final long now = System.currentTimeMillis();
+
+        for (Map<Long, Bucket> buckets : userBuckets.values()) {
+            buckets.values().removeIf((bucket) -> bucket.isFull(now));
+        }
+
+        guildBuckets.values().removeIf((bucket) -> bucket.isFull(now));
+    }
+
+    /**
+     * Removes the buckets of a user so their patron status is picked up again
+     */
+    public void removeUser(long userId) {
+        for (Map<Long, Bucket> buckets : userBuckets.values()) {
+            buckets.remove(userId);
+        }
+    }
+
+    public void removeGuild(long guildId) {
+        guildBuckets.remove(guildId);
+    }
+
+    public long getAllowed() {
+        return allowed.sum();
+    }
+
+    public long getThrottledUsers() {
+        return throttledUsers.sum();
+    }
+
+    public long getThrottledGuilds() {
+        return throttledGuilds.sum();
+    }
+
+    public long getThrottled(CommandCategory category) {
+        return throttledPerCategory.get(category).sum();
+    }
+
+    private static CommandCategory getCategory(ICommand command) {
+        final CommandCategory category = command.getCategory();
+
+        // Custom commands don't have a category
+        return category == null ? CommandCategory.UNLISTED : category;
+    }
+
+    public enum Result {
+        ALLOWED,
+        THROTTLED,
+        THROTTLED_SILENT
+    }
+
+    /**
+     * A token bucket that keeps the tokens and the last refill time in one long so it can be updated without locks.
+     * The upper bits are the time since {@link #EPOCH} in milliseconds and the lower bits are the tokens in
+     * thousandths
+     */
+    private static class Bucket {
+        private static final long EPOCH = System.currentTimeMillis();
+        private static final int TOKEN_BITS = 20;
+        private static final long TOKEN_MASK = (1L << TOKEN_BITS) - 1;
+        private static final long MILLI = 1000L;
+
+        private final AtomicLong state;
+        private final long capacity;
+        private final long refillPerMinute;
+        /**
+         * If the bucket was made with the patron perks
+         */
+        private final boolean patron;
+        private volatile long lastWarned = 0L;
+
+        private Bucket(int capacity, int refillPerMinute, long now, boolean patron) {
+            this.capacity = capacity * MILLI;
+            this.refillPerMinute = refillPerMinute * MILLI;
+            this.patron = patron;
+            this.state = new AtomicLong(pack(now, this.capacity));
+        }
+
+        private boolean tryTake(int cost, long now) {
+            final long costMilli = cost * MILLI;
+
+            while (true) {
+                final long current = state.get();
+                final long refilled = refill(current, now);
+
+                if ((refilled & TOKEN_MASK) < costMilli) {
+                    return false;
+                }
+
+                if (state.compareAndSet(current, refilled - costMilli)) {
+                    return true;
+                }
+            }
+        }
+
+        private void giveBack(int cost) {
+            final long costMilli = cost * MILLI;
+
+            while (true) {
+                final long current = state.get();
+                final long tokens = Math.min(capacity, (current & TOKEN_MASK) + costMilli);
+
+                if (state.compareAndSet(current, (current & ~TOKEN_MASK) | tokens)) {
+                    return;
+                }
+            }
+        }
+
+        private boolean isFull(long now) {
+            return (refill(state.get(), now) & TOKEN_MASK) >= capacity;
+        }
+
+        private boolean shouldWarn(long now) {
+            if (now - lastWarned < WARN_INTERVAL) {
+                return false;
+            }
+
+            lastWarned = now;
+
+            return true;
+        }
+
+        /**
+         * Adds the tokens for the time that passed, the time only moves forward as far as the tokens that were added
+         * so we don't lose the part of a token that was not complete yet
+         */
+        private long refill(long current, long now) {
+            final long last = (current >>> TOKEN_BITS) + EPOCH;
+            final long tokens = current & TOKEN_MASK;
+            final long elapsed = Math.max(0, now - last);
+            final long added = elapsed * refillPerMinute / TimeUnit.MINUTES.toMillis(1);
+
+            if (tokens + added >= capacity) {
+                return pack(now, capacity);
+            }
+
+            return pack(last + added * TimeUnit.MINUTES.toMillis(1) / refillPerMinute, tokens + added);
+        }
+
+        private static long pack(long now, long tokens) {
+            return (Math.max(0, now - EPOCH) << TOKEN_BITS) | tokens;
+        }
+    }
+}
@@ -21,19 +21,43 @@ package ml.duncte123.skybot;
 import fredboat.audio.player.LavalinkManager;
 import me.duncte123.botcommons.text.TextColor;
 import ml.duncte123.skybot.commands.mod.DeHoistListener;
+import ml.duncte123.skybot.metrics.MetricsRegistry;
+import ml.duncte123.skybot.metrics.MetricsWriter;
 import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.ChannelType;
+import net.dv8tion.jda.core.entities.Guild;
 import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.events.channel.category.GenericCategoryEvent;
+import net.dv8tion.jda.core.events.channel.text.GenericTextChannelEvent;
+import net.dv8tion.jda.core.events.channel.voice.GenericVoiceChannelEvent;
+import net.dv8tion.jda.core.events.emote.GenericEmoteEvent;
+import net.dv8tion.jda.core.events.guild.GenericGuildEvent;
+import net.dv8tion.jda.core.events.guild.voice.GenericGuildVoiceEvent;
+import net.dv8tion.jda.core.events.message.GenericMessageEvent;
+import net.dv8tion.jda.core.events.role.GenericRoleEvent;
+import net.dv8tion.jda.core.events.user.GenericUserEvent;
+import net.dv8tion.jda.core.events.user.UserTypingEvent;
+import net.dv8tion.jda.core.events.user.update.UserUpdateGameEvent;
+import net.dv8tion.jda.core.events.user.update.UserUpdateOnlineStatusEvent;
 import net.dv8tion.jda.core.hooks.EventListener;
 import net.dv8tion.jda.core.hooks.IEventManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
 
 /**
  * A single event listener container
+ * <p>
+ * Events are handed to a pool of worker lanes so slow listeners don't block the websocket of the shard, all events
+ * of a guild go to the same lane so they are still handled in order. The websocket thread never waits for a lane,
+ * when a lane is full the {@link Overflow overflow policy} of the event decides what happens with it
  */
 @Authors(authors = {
     @Author(nickname = "Sanduhr32", author = "Maurice R S"),
@@ -46,8 +70,25 @@ public class EventManager
     public static int restartingShard = -32; // -32 = none, -1 = all, id = id;
     public static boolean shouldFakeBlock;
     private static final Logger logger = LoggerFactory.getLogger(EventManager.class);
+    /**
+     * The amount of events that can wait in a lane before the overflow policies kick in
+     */
+    private static final int LANE_CAPACITY = 10_000;
     private final ReactionHandler reactionHandler = new ReactionHandler();
     private final List<EventListener> listeners = new ArrayList<>();
+    /**
+     * These listeners are called on the websocket thread, lavalink needs the voice events right away
+     */
+    private final List<EventListener> directListeners = new ArrayList<>();
+    private final Map<EventListener, ListenerStats> listenerStats = new LinkedHashMap<>();
+    private final List<Lane> lanes = new ArrayList<>();
+    private final LongAdder droppedEvents = new LongAdder();
+    private final LongAdder spilledEvents = new LongAdder();
+    /**
+     * Events that were put in a lane and are not done yet, this goes up before the event is in the lane so there is
+     * no moment where an event is not counted
+     */
+    private final AtomicInteger inFlightEvents = new AtomicInteger();
 
     EventManager(Variables variables) {
         BotListener botListener = new BotListener(variables);
@@ -55,10 +96,33 @@ public class EventManager
         this.listeners.add(botListener);
         this.listeners.add(deHoistListener);
         this.listeners.add(reactionHandler);
+        this.listeners.add(variables.getVoiceCounter());
 
         if (LavalinkManager.ins.isEnabled()) {
-            this.listeners.add(LavalinkManager.ins.getLavalink());
+            this.directListeners.add(LavalinkManager.ins.getLavalink());
+        }
+
+        for (EventListener listener : this.listeners) {
+            this.listenerStats.put(listener, new ListenerStats(listener.getClass().getSimpleName()));
         }
+
+        final int laneCount = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        for (int i = 0; i < laneCount; i++) {
+            Lane lane = new Lane();
+            Thread thread = new Thread(() -> runLane(lane), "Event-Thread-" + i);
+
+            thread.setDaemon(true);
+            thread.start();
+            this.lanes.add(lane);
+        }
+
+        MetricsRegistry.ins.gauge("skybot_events_queued", "Events waiting in the event lanes", this::getQueuedEvents);
+        MetricsRegistry.ins.counter("skybot_events_dropped_total", "Events that were dropped or coalesced because the lane was full",
+            this::getDroppedEvents);
+        MetricsRegistry.ins.counter("skybot_events_spilled_total", "Events that were queued while the lane was full",
+            this::getSpilledEvents);
+        MetricsRegistry.ins.register("skybot_listener_duration_seconds", this::collectListenerStats);
     }
 
 
@@ -85,10 +149,11 @@ public class EventManager
                     return;
             }
 
-            for (EventListener listener : getRegisteredListenersClass()) {
+            for (EventListener listener : this.directListeners) {
                 listener.onEvent(event);
             }
 
+            dispatch(event);
         } catch (Throwable thr) {
             logger.error("Error while handling event " + event.getClass().getName() + "; " + thr.getLocalizedMessage(), thr);
         }
@@ -108,8 +173,255 @@ public class EventManager
         return this.reactionHandler;
     }
 
-    private List<EventListener> getRegisteredListenersClass() {
-        return this.listeners;
+    /**
+     * @return the timings of all our listeners
+     */
+    public Collection<ListenerStats> getListenerStats() {
+        return this.listenerStats.values();
+    }
+
+    /**
+     * @return the amount of events that were dropped because the lane was full
+     */
+    public long getDroppedEvents() {
+        return this.droppedEvents.sum();
+    }
+
+    /**
+     * @return the amount of events that were put in a lane while it was over its capacity
+     */
+    public long getSpilledEvents() {
+        return this.spilledEvents.sum();
+    }
+
+    /**
+     * @return the amount of events that are waiting in all the lanes
+     */
+    public int getQueuedEvents() {
+        int queued = 0;
+
+        for (Lane lane : this.lanes) {
+            queued += lane.queue.size();
+        }
+
+        return queued;
+    }
+
+    /**
+     * @return the amount of events that are waiting in a lane or are being handled by the listeners
+     */
+    public int getInFlightEvents() {
+        return this.inFlightEvents.get();
+    }
+
+    /**
+     * Writes the listener stats as a prometheus histogram, the stats are already kept without allocating so we
+     * just read them here
+     */
+    private void collectListenerStats(MetricsWriter writer) {
+        final String name = "skybot_listener_duration_seconds";
+
+        writer.header(name, "Time it takes for a listener to handle an event", "histogram");
+
+        for (ListenerStats stats : this.listenerStats.values()) {
+            final long[] counts = stats.getCounts();
+            long total = 0;
+
+            for (int i = 0; i < counts.length; i++) {
+                total += counts[i];
+                final String bound = i < ListenerStats.BUCKETS.length ?
+                    String.valueOf(ListenerStats.BUCKETS[i] / 1000.0) : "+Inf";
+
+                writer.sample(name + "_bucket", "listener", stats.getName(), "le", bound, total);
+            }
+
+            writer.sample(name + "_sum", "listener", stats.getName(), stats.getTotalNanos() / 1_000_000_000.0);
+            writer.sample(name + "_count", "listener", stats.getName(), total);
+        }
+    }
+
+    private void dispatch(Event event) {
+        final long guildId = getGuildId(event);
+        // Events without a guild (ready, shutdown, private messages) all go to the first lane so they stay in order
+        final int index = guildId == -1L ? 0 : (int) ((guildId >>> 22) % this.lanes.size());
+        final Lane lane = this.lanes.get(index);
+
+        if (lane.queue.size() >= LANE_CAPACITY) {
+            switch (Overflow.forEvent(event)) {
+                case DROP:
+                    this.droppedEvents.increment();
+                    return;
+                case COALESCE:
+                    // One voice event per guild is enough, the listeners read the voice states from the cache
+                    if (!lane.waitingVoice.add(guildId)) {
+                        this.droppedEvents.increment();
+                        return;
+                    }
+                    break;
+                default:
+                    this.spilledEvents.increment();
+                    break;
+            }
+        }
+
+        this.inFlightEvents.incrementAndGet();
+        lane.queue.add(event);
+    }
+
+    private void runLane(Lane lane) {
+        while (true) {
+            final Event event;
+
+            try {
+                event = lane.queue.take();
+            } catch (InterruptedException e) {
+                return;
+            }
+
+            if (event instanceof GenericGuildVoiceEvent) {
+                lane.waitingVoice.remove(((GenericGuildVoiceEvent) event).getGuild().getIdLong());
+            }
+
+            for (EventListener listener : this.listeners) {
+                final long start = System.nanoTime();
+
+                try {
+                    listener.onEvent(event);
+                } catch (Throwable thr) {
+                    logger.error("Error while handling event " + event.getClass().getName() + "; " + thr.getLocalizedMessage(), thr);
+                }
+
+                this.listenerStats.get(listener).record(System.nanoTime() - start);
+            }
+
+            this.inFlightEvents.decrementAndGet();
+        }
+    }
+
+    private static long getGuildId(Event event) {
+        Guild guild = null;
+
+        if (event instanceof GenericGuildEvent) {
+            guild = ((GenericGuildEvent) event).getGuild();
+        } else if (event instanceof GenericMessageEvent) {
+            GenericMessageEvent messageEvent = (GenericMessageEvent) event;
+
+            if (messageEvent.isFromType(ChannelType.TEXT)) {
+                guild = messageEvent.getGuild();
+            }
+        } else if (event instanceof GenericTextChannelEvent) {
+            guild = ((GenericTextChannelEvent) event).getGuild();
+        } else if (event instanceof GenericVoiceChannelEvent) {
+            guild = ((GenericVoiceChannelEvent) event).getGuild();
+        } else if (event instanceof GenericCategoryEvent) {
+            guild = ((GenericCategoryEvent) event).getGuild();
+        } else if (event instanceof GenericRoleEvent) {
+            guild = ((GenericRoleEvent) event).getGuild();
+        } else if (event instanceof GenericEmoteEvent) {
+            guild = ((GenericEmoteEvent) event).getGuild();
+        } else if (event instanceof GenericUserEvent) {
+            // User updates don't belong to a guild, spread them out by the user id
+            return ((GenericUserEvent) event).getUser().getIdLong();
+        }
+
+        return guild == null ? -1L : guild.getIdLong();
+    }
+
+    /**
+     * What happens with an event when its lane is full
+     */
+    enum Overflow {
+        /**
+         * The event is thrown away, we can live without messages, typing and presence updates
+         */
+        DROP,
+        /**
+         * Only one event per guild is kept in the lane, used for voice state updates
+         */
+        COALESCE,
+        /**
+         * The event goes in the lane anyway, member, role and guild updates should never be lost
+         */
+        SPILL;
+
+        static Overflow forEvent(Event event) {
+            if (event instanceof GenericMessageEvent || event instanceof UserTypingEvent ||
+                event instanceof UserUpdateOnlineStatusEvent || event instanceof UserUpdateGameEvent) {
+                return DROP;
+            }
+
+            if (event instanceof GenericGuildVoiceEvent) {
+                return COALESCE;
+            }
+
+            return SPILL;
+        }
     }
 
+    /**
+     * A worker lane, the queue itself has no limit so the websocket thread never has to wait for it
+     */
+    private static class Lane {
+        private final BlockingQueue<Event> queue = new LinkedBlockingQueue<>();
+        /**
+         * The guilds that have a voice event waiting in this lane while it was full
+         */
+        private final Set<Long> waitingVoice = ConcurrentHashMap.newKeySet();
+    }
+
+    /**
+     * Keeps a simple histogram of how long a listener takes to handle an event
+     */
+    public static class ListenerStats {
+        /**
+         * The upper bounds of the buckets in milliseconds, the last bucket holds everything that is slower
+         */
+        private static final long[] BUCKETS = {1, 5, 10, 50, 100, 500, 1000};
+
+        private final String name;
+        private final LongAdder[] counts = new LongAdder[BUCKETS.length + 1];
+        private final LongAdder totalNanos = new LongAdder();
+
+        private ListenerStats(String name) {
+            this.name = name;
+
+            for (int i = 0; i < this.counts.length; i++) {
+                this.counts[i] = new LongAdder();
+            }
+        }
+
+        private void record(long nanos) {
+            final long millis = TimeUnit.NANOSECONDS.toMillis(nanos);
+            int bucket = 0;
+
+            while (bucket < BUCKETS.length && millis >= BUCKETS[bucket]) {
+                bucket++;
+            }
+
+            this.counts[bucket].increment();
+            this.totalNanos.add(nanos);
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public long[] getBucketBounds() {
+            return BUCKETS.clone();
+        }
+
+        public long[] getCounts() {
+            final long[] result = new long[this.counts.length];
+
+            for (int i = 0; i < result.length; i++) {
+                result[i] = this.counts[i].sum();
+            }
+
+            return result;
+        }
+
+        public long getTotalNanos() {
+            return this.totalNanos.sum();
+        }
+    }
 }
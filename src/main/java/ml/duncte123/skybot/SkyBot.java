@@ -25,6 +25,8 @@ import me.duncte123.botcommons.messaging.EmbedUtils;
 import me.duncte123.botcommons.text.TextColor;
 import me.duncte123.botcommons.web.WebUtils;
 import ml.duncte123.skybot.connections.database.DBManager;
+import ml.duncte123.skybot.metrics.BotMetrics;
+import ml.duncte123.skybot.metrics.MetricsRegistry;
 import ml.duncte123.skybot.objects.config.DunctebotConfig;
 import ml.duncte123.skybot.unstable.utils.ComparatingUtils;
 import ml.duncte123.skybot.utils.GuildSettingsUtils;
@@ -38,16 +40,18 @@ import net.dv8tion.jda.core.entities.Game.GameType;
 import net.dv8tion.jda.core.requests.RestAction;
 import net.dv8tion.jda.core.utils.cache.CacheFlag;
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.lang3.time.DateUtils;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import spark.Spark;
 
 import java.io.File;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
 import java.sql.Connection;
+import java.sql.SQLException;
 import java.time.Instant;
 import java.util.EnumSet;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -97,41 +101,31 @@ public final class SkyBot {
         RestAction.DEFAULT_FAILURE = ComparatingUtils::execCheck;
         RestAction.setPassContext(false);
 
-        if (variables.isSql()) { //Don't try to connect if we don't want to
-            if (!database.getConnManager().hasSettings()) {
-                logger.error("Can't load database settings. ABORTING!!!!!");
-                System.exit(-2);
-            }
-
-            try (Connection conn = database.getConnection()) {
-
-                if (conn.isClosed() && variables.isSql()) {
-                    logger.error("Can't connect to database. ABORTING!!!!!");
-                    System.exit(-3);
-                }
-
-                logger.info(TextColor.GREEN + "Successful connection to the database" + TextColor.RESET);
-            }
-
-        } else {
-            int startIn = 5;
-            logger.warn("Using SQLite as the database");
-            logger.warn("Please note that is is not recommended and can break some features.");
-            logger.warn("Please report bugs on GitHub (https://github.com/duncte123/SkyBot/issues)");
-            Thread.sleep(DateUtils.MILLIS_PER_SECOND * startIn);
-        }
+        StartupPipeline pipeline = new StartupPipeline();
 
-        //2 seconds safe sleep for database
-        Thread.sleep(DateUtils.MILLIS_PER_SECOND * 2);
+        // Everything that reads from the database waits for this instead of sleeping
+        CompletableFuture<Void> databaseReady = pipeline.stage("database", () -> {
+            checkDatabase(variables, logger);
+            return null;
+        });
 
-        //Load the settings before loading the bot
-        GuildSettingsUtils.loadAllSettings(variables);
+        CompletableFuture<?> guildSettings = pipeline.stage("guild settings",
+            () -> GuildSettingsUtils.loadGuildSettings(database, variables.getGuildSettings()).get(), databaseReady);
+        CompletableFuture<?> embedColors = pipeline.stage("embed colors",
+            () -> GuildSettingsUtils.loadEmbedColors(database).get(), databaseReady);
+        CompletableFuture<?> customCommands = pipeline.stage("custom commands",
+            () -> commandManager.loadCustomCommands().get(), databaseReady);
 
-        //Set the token to a string
-        String token = config.discord.token;
+        // The event manager needs lavalink to be started
+        CompletableFuture<Void> lavalink = pipeline.stage("lavalink", () -> {
+            LavalinkManager.ins.start(config, variables.getAudioUtils());
+            return null;
+        });
 
-        //But this time we are going to shard it
-        int totalShards = config.discord.totalShards;
+        CompletableFuture<Void> helpEmbeds = pipeline.stage("help embeds", () -> {
+            HelpEmbeds.init(commandManager);
+            return null;
+        });
 
         //Set the game from the config
         int gameId = config.discord.game.type;
@@ -145,29 +139,65 @@ public final class SkyBot {
             streamUrl
         );
 
-        logger.info(commandManager.getCommands().size() + " commands loaded.");
-        LavalinkManager.ins.start(config, variables.getAudioUtils());
-
+        //Set up sharding for the bot, the settings have to be loaded before the shards get any events
+        CompletableFuture<ShardManager> shards = pipeline.stage("shard manager", () -> {
+            EventManager eventManager = new EventManager(variables);
+
+            return new DefaultShardManagerBuilder()
+                .setEventManagerProvider((id) -> eventManager)
+                .setBulkDeleteSplittingEnabled(false)
+                .setDisabledCacheFlags(EnumSet.of(CacheFlag.GAME))
+                .setShardsTotal(config.discord.totalShards)
+                .setGameProvider(this.gameProvider)
+                .setToken(config.discord.token)
+                .build();
+        }, guildSettings, embedColors, customCommands, lavalink);
+
+        CompletableFuture<Void> web = pipeline.stage("web server", () -> {
+            BotMetrics.register(variables, shards.get());
+
+            if (!config.discord.local) {
+                new WebRouter(shards.get(), variables);
+            } else {
+                // The rest of the site is disabled when running locally, the metrics are still useful there
+                Spark.port(2000);
+                Spark.get("/metrics", (request, response) -> {
+                    response.type(MetricsRegistry.CONTENT_TYPE);
+                    return MetricsRegistry.ins.scrape();
+                });
+            }
+            return null;
+        }, shards);
 
-        //Set up sharding for the bot
-        EventManager eventManager = new EventManager(variables);
-        this.shardManager = new DefaultShardManagerBuilder()
-            .setEventManagerProvider((id) -> eventManager)
-            .setBulkDeleteSplittingEnabled(false)
-            .setDisabledCacheFlags(EnumSet.of(CacheFlag.GAME))
-            .setShardsTotal(totalShards)
-            .setGameProvider(this.gameProvider)
-            .setToken(token)
-            .build();
+        pipeline.finish(helpEmbeds, web);
 
+        this.shardManager = shards.get();
         this.startGameTimer();
+    }
+
+    private static void checkDatabase(Variables variables, Logger logger) throws SQLException {
+        DBManager database = variables.getDatabase();
+
+        if (!variables.isSql()) {
+            logger.warn("Using SQLite as the database");
+            logger.warn("Please note that is is not recommended and can break some features.");
+            logger.warn("Please report bugs on GitHub (https://github.com/duncte123/SkyBot/issues)");
+            return;
+        }
+
+        if (!database.getConnManager().hasSettings()) {
+            logger.error("Can't load database settings. ABORTING!!!!!");
+            System.exit(-2);
+        }
+
+        try (Connection conn = database.getConnection()) {
 
-        //Load all the commands for the help embed last
-        HelpEmbeds.init(commandManager);
+            if (conn.isClosed()) {
+                logger.error("Can't connect to database. ABORTING!!!!!");
+                System.exit(-3);
+            }
 
-        if (!config.discord.local) {
-            // init web server
-            new WebRouter(shardManager, variables);
+            logger.info(TextColor.GREEN + "Successful connection to the database" + TextColor.RESET);
         }
     }
 
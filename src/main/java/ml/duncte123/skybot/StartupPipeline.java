@@ -0,0 +1,107 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Runs the startup stages of the bot, stages that don't depend on each other run at the same time.
+ * A stage starts as soon as the stages that it depends on are done
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+class StartupPipeline {
+
+    private static final Logger logger = LoggerFactory.getLogger(StartupPipeline.class);
+
+    private final long start = System.currentTimeMillis();
+    private final List<String> timings = new ArrayList<>();
+    private final ExecutorService executor;
+
+    StartupPipeline() {
+        final AtomicInteger threadNumber = new AtomicInteger();
+
+        this.executor = Executors.newFixedThreadPool(4,
+            (r) -> new Thread(r, "Startup-Thread-" + threadNumber.getAndIncrement()));
+    }
+
+    /**
+     * Adds a stage to the pipeline
+     *
+     * @param name
+     *         the name that is used in the timings
+     * @param stage
+     *         the code for the stage
+     * @param dependencies
+     *         the stages that need to finish before this stage can start
+     *
+     * @return the future of the stage, this can be used as a dependency for other stages
+     */
+    <T> CompletableFuture<T> stage(String name, Callable<T> stage, CompletableFuture<?>... dependencies) {
+        return CompletableFuture.allOf(dependencies).thenApplyAsync((ignored) -> {
+            final long stageStart = System.currentTimeMillis();
+
+            try {
+                final T result = stage.call();
+
+                addTiming(name, stageStart);
+
+                return result;
+            } catch (Exception e) {
+                logger.error("Startup stage {} failed", name);
+                throw new CompletionException(e);
+            }
+        }, executor);
+    }
+
+    /**
+     * Waits for the last stages and logs the timings, the pipeline can't be used after this
+     *
+     * @param stages
+     *         the stages to wait for, the stages that they depend on are done as well
+     */
+    void finish(CompletableFuture<?>... stages) throws Exception {
+        try {
+            CompletableFuture.allOf(stages).get();
+        } catch (ExecutionException e) {
+            final Throwable cause = e.getCause();
+
+            throw cause instanceof Exception ? (Exception) cause : e;
+        } finally {
+            executor.shutdown();
+
+            synchronized (timings) {
+                logger.info("Startup took {}ms: {}", System.currentTimeMillis() - start, String.join(", ", timings));
+            }
+        }
+    }
+
+    private void addTiming(String name, long stageStart) {
+        final long end = System.currentTimeMillis();
+
+        synchronized (timings) {
+            timings.add(String.format("%s %dms (at %dms)", name, end - stageStart, end - start));
+        }
+    }
+}
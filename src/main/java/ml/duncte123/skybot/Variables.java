@@ -26,12 +26,16 @@ import gnu.trove.map.hash.TLongObjectHashMap;
 import me.duncte123.weebJava.WeebApiBuilder;
 import me.duncte123.weebJava.models.WeebApi;
 import me.duncte123.weebJava.types.TokenType;
+import ml.duncte123.skybot.audio.RadioStreamRegistry;
+import ml.duncte123.skybot.audio.VoiceConnectionCounter;
 import ml.duncte123.skybot.connections.database.DBManager;
 import ml.duncte123.skybot.objects.apis.BlargBot;
 import ml.duncte123.skybot.objects.apis.alexflipnote.Alexflipnote;
 import ml.duncte123.skybot.objects.config.DunctebotConfig;
 import ml.duncte123.skybot.objects.guild.GuildSettings;
 import ml.duncte123.skybot.utils.AudioUtils;
+import ml.duncte123.skybot.utils.WarningLedger;
+import ml.duncte123.skybot.web.DashboardCache;
 
 import java.io.File;
 import java.io.IOException;
@@ -40,14 +44,18 @@ import java.io.IOException;
 public class Variables {
 
     private final AudioUtils audioUtils;
+    private final RadioStreamRegistry radioStreams;
     private final Alexflipnote alexflipnote;
     private final String googleBaseUrl;
     private final WeebApi weebApi;
     private final boolean isSql;
     private final DBManager database;
+    private final WarningLedger warningLedger;
     private final CommandManager commandManager;
     private final BlargBot blargBot;
+    private final DashboardCache dashboardCache;
     private final TLongObjectMap<GuildSettings> guildSettings;
+    private final VoiceConnectionCounter voiceCounter;
     private DunctebotConfig config;
 
 
@@ -67,6 +75,7 @@ public class Variables {
         Settings.developers.addAll(config.discord.constantSuperUserIds);
 
         this.audioUtils = new AudioUtils(config.apis, this);
+        this.radioStreams = new RadioStreamRegistry();
         this.googleBaseUrl = "https://www.googleapis.com/customsearch/v1?q=%s&cx=012048784535646064391:v-fxkttbw54" +
             "&hl=en&searchType=image&key=" + config.apis.googl + "&safe=off";
         this.weebApi = new WeebApiBuilder(TokenType.WOLKETOKENS)
@@ -75,10 +84,13 @@ public class Variables {
             .build();
         this.isSql = config.use_database;
         this.database = new DBManager(isSql, config.sql);
+        this.warningLedger = new WarningLedger(database);
         this.commandManager = new CommandManager(this);
         this.blargBot = new BlargBot(config.apis.blargbot);
         this.guildSettings = new TLongObjectHashMap<>();
         this.alexflipnote = new Alexflipnote();
+        this.dashboardCache = new DashboardCache();
+        this.voiceCounter = new VoiceConnectionCounter();
     }
 
     public BlargBot getBlargBot() {
@@ -97,6 +109,10 @@ public class Variables {
         return database;
     }
 
+    public WarningLedger getWarningLedger() {
+        return warningLedger;
+    }
+
     public TLongObjectMap<GuildSettings> getGuildSettings() {
         return guildSettings;
     }
@@ -120,4 +136,16 @@ public class Variables {
     public AudioUtils getAudioUtils() {
         return audioUtils;
     }
+
+    public DashboardCache getDashboardCache() {
+        return dashboardCache;
+    }
+
+    public VoiceConnectionCounter getVoiceCounter() {
+        return voiceCounter;
+    }
+
+    public RadioStreamRegistry getRadioStreams() {
+        return radioStreams;
+    }
 }
@@ -18,28 +18,53 @@
 
 package ml.duncte123.skybot.audio;
 
-import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrame;
-import lavalink.client.player.IPlayer;
-import lavalink.client.player.LavaplayerPlayerWrapper;
+import com.sedmelluq.discord.lavaplayer.format.StandardAudioDataFormats;
+import com.sedmelluq.discord.lavaplayer.track.playback.AudioFrameProvider;
+import com.sedmelluq.discord.lavaplayer.track.playback.MutableAudioFrame;
 import ml.duncte123.skybot.Author;
 import net.dv8tion.jda.core.audio.AudioSendHandler;
 
+import java.nio.ByteBuffer;
 
+
+/**
+ * Sends the audio of a local lavaplayer player, this is not used when lavalink is enabled
+ * <p>
+ * The frames are copied into one buffer that is kept for the whole life of the player instead of getting a new frame
+ * from lavaplayer every 20ms. JDA 3 needs an array with the exact length of the frame, so we keep the arrays of the
+ * last few lengths around. Opus frames change length all the time, frames with a new length still get a new array
+ */
 @Author(nickname = "duncte123", author = "Duncan Sterken")
 public class AudioPlayerSenderHandler implements AudioSendHandler {
 
+    /**
+     * How many frame lengths we keep an array for
+     */
+    private static final int CACHED_LENGTHS = 8;
     /**
      * This is our audio player
      */
-    private final IPlayer audioPlayer;
-
+    private final AudioFrameProvider audioPlayer;
+    /**
+     * Lavaplayer writes every frame into this
+     */
+    private final MutableAudioFrame frame = new MutableAudioFrame();
+    /**
+     * True when canProvide got a frame that was not sent yet
+     */
+    private boolean hasFrame = false;
     /**
-     * I don't know what this does but it seems important
+     * The arrays of the last lengths that we sent, this stays small because every player keeps it as long as it lives
      */
-    private AudioFrame lastFrame;
+    private final byte[][] arrays = new byte[CACHED_LENGTHS][];
+    /**
+     * The slot in {@link #arrays} that is replaced by the next new length
+     */
+    private int nextSlot = 0;
 
-    AudioPlayerSenderHandler(IPlayer audioPlayer) {
+    public AudioPlayerSenderHandler(AudioFrameProvider audioPlayer) {
         this.audioPlayer = audioPlayer;
+        this.frame.setBuffer(ByteBuffer.allocate(StandardAudioDataFormats.DISCORD_OPUS.maximumChunkSize()));
     }
 
     /**
@@ -49,11 +74,11 @@ public class AudioPlayerSenderHandler implements AudioSendHandler {
      */
     @Override
     public boolean canProvide() {
-        LavaplayerPlayerWrapper lavaplayerPlayer = (LavaplayerPlayerWrapper) audioPlayer;
-        if (lastFrame == null) {
-            lastFrame = lavaplayerPlayer.provide();
+        if (!hasFrame) {
+            hasFrame = audioPlayer.provide(frame);
         }
-        return lastFrame != null;
+
+        return hasFrame;
     }
 
     /**
@@ -63,16 +88,37 @@ public class AudioPlayerSenderHandler implements AudioSendHandler {
      */
     @Override
     public byte[] provide20MsAudio() {
-        LavaplayerPlayerWrapper lavaplayerPlayer = (LavaplayerPlayerWrapper) audioPlayer;
-        if (lastFrame == null) {
-            lastFrame = lavaplayerPlayer.provide();
+        if (!hasFrame && !audioPlayer.provide(frame)) {
+            return null;
         }
 
-        byte[] data = lastFrame != null ? lastFrame.getData() : null;
-        lastFrame = null;
+        hasFrame = false;
+
+        final byte[] data = getArray(frame.getDataLength());
+
+        frame.getData(data, 0);
+
         return data;
     }
 
+    /**
+     * Gets an array with the length, JDA is done with the arrays that we gave it before when it asks for the next frame
+     */
+    private byte[] getArray(int length) {
+        for (byte[] array : arrays) {
+            if (array != null && array.length == length) {
+                return array;
+            }
+        }
+
+        final byte[] array = new byte[length];
+
+        arrays[nextSlot] = array;
+        nextSlot = (nextSlot + 1) % CACHED_LENGTHS;
+
+        return array;
+    }
+
     /**
      * "Checks" if this audio is opus
      *
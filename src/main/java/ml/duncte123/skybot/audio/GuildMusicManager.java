@@ -18,8 +18,10 @@
 
 package ml.duncte123.skybot.audio;
 
+import com.sedmelluq.discord.lavaplayer.player.AudioPlayer;
 import fredboat.audio.player.LavalinkManager;
 import lavalink.client.player.IPlayer;
+import lavalink.client.player.LavaplayerPlayerWrapper;
 import ml.duncte123.skybot.Author;
 import ml.duncte123.skybot.SkyBot;
 import ml.duncte123.skybot.Variables;
@@ -28,9 +30,19 @@ import ml.duncte123.skybot.utils.GuildSettingsUtils;
 import net.dv8tion.jda.core.entities.Guild;
 import net.dv8tion.jda.core.entities.TextChannel;
 
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
 @Author(nickname = "duncte123", author = "Duncan Sterken")
 public class GuildMusicManager {
 
+    /**
+     * The maximum amount of loads that a guild can have running at the same time
+     */
+    private static final int MAX_CONCURRENT_LOADS = 3;
+
     /**
      * This is the text channel were we will announce our songs
      */
@@ -44,10 +56,21 @@ public class GuildMusicManager {
      */
     public final TrackScheduler scheduler;
     private final GuildSettings settings;
+    private final long guildId;
     /**
-     * This is what actually sends the audio
+     * This is what actually sends the audio, null when lavalink sends it for us
      */
     private final AudioPlayerSenderHandler sendHandler;
+    /**
+     * The last time that this manager was requested by something that wants to use it
+     */
+    private volatile long lastActive = System.currentTimeMillis();
+    /**
+     * Goes up every time that the loads are cancelled, results from older loads will be thrown away
+     */
+    private final AtomicInteger loadGeneration = new AtomicInteger();
+    private final AtomicInteger runningLoads = new AtomicInteger();
+    private final Set<Future<?>> pendingLoads = ConcurrentHashMap.newKeySet();
 
     /**
      * Constructor
@@ -56,9 +79,19 @@ public class GuildMusicManager {
      *         The guild that we want the manager for
      */
     public GuildMusicManager(Guild g, Variables variables) {
-        player = LavalinkManager.ins.createPlayer(g.getIdLong());
+        this.guildId = g.getIdLong();
+
+        if (LavalinkManager.ins.isEnabled()) {
+            player = LavalinkManager.ins.createPlayer(g.getIdLong());
+            sendHandler = null;
+        } else {
+            // The send handler reads from the lavaplayer player directly, the wrapper can only give out new frames
+            AudioPlayer audioPlayer = variables.getAudioUtils().getPlayerManager().createPlayer();
+            player = new LavaplayerPlayerWrapper(audioPlayer);
+            sendHandler = new AudioPlayerSenderHandler(audioPlayer);
+        }
+
         scheduler = new TrackScheduler(player, variables, this);
-        sendHandler = new AudioPlayerSenderHandler(player);
         player.addListener(scheduler);
         this.settings = GuildSettingsUtils.getGuild(g, variables);
     }
@@ -72,6 +105,106 @@ public class GuildMusicManager {
         return sendHandler;
     }
 
+    /**
+     * Marks this manager as being in use so it does not get cleaned up
+     */
+    public void touch() {
+        this.lastActive = System.currentTimeMillis();
+    }
+
+    public long getLastActive() {
+        return lastActive;
+    }
+
+    /**
+     * Checks if this manager has nothing to do
+     *
+     * @return true if nothing is playing and the queue is empty
+     */
+    public boolean isIdle() {
+        synchronized (scheduler.queue) {
+            return player.getPlayingTrack() == null && scheduler.queue.isEmpty();
+        }
+    }
+
+    /**
+     * Tries to reserve a slot for loading tracks
+     *
+     * @return false if this guild is already loading too many things
+     */
+    public boolean tryStartLoad() {
+        int current;
+
+        do {
+            current = runningLoads.get();
+
+            if (current >= MAX_CONCURRENT_LOADS) {
+                return false;
+            }
+        } while (!runningLoads.compareAndSet(current, current + 1));
+
+        return true;
+    }
+
+    /**
+     * Frees up the slot that was reserved with {@link #tryStartLoad()}
+     *
+     * @param generation
+     *         the {@link #getLoadGeneration() generation} that the load was started in
+     */
+    public void finishLoad(int generation) {
+        // Cancelling resets the counter so old loads should not touch it anymore
+        if (generation == loadGeneration.get()) {
+            runningLoads.updateAndGet((i) -> Math.max(0, i - 1));
+        }
+    }
+
+    public int getLoadGeneration() {
+        return loadGeneration.get();
+    }
+
+    public boolean isLoadCancelled(int generation) {
+        return generation != loadGeneration.get();
+    }
+
+    public void addPendingLoad(Future<?> future) {
+        pendingLoads.add(future);
+    }
+
+    public void removePendingLoad(Future<?> future) {
+        pendingLoads.remove(future);
+    }
+
+    /**
+     * Cancels all the tracks and playlists that are still loading for this guild
+     */
+    public void cancelLoads() {
+        loadGeneration.incrementAndGet();
+        runningLoads.set(0);
+        pendingLoads.forEach((future) -> future.cancel(true));
+        pendingLoads.clear();
+    }
+
+    /**
+     * Stops the player and detaches our scheduler from it, when using lavalink the link is destroyed as well so it
+     * does not keep the player around
+     */
+    public void destroy() {
+        cancelLoads();
+
+        synchronized (scheduler.queue) {
+            scheduler.queue.clear();
+        }
+
+        player.removeListener(scheduler);
+
+        if (player.getPlayingTrack() != null) {
+            player.stopTrack();
+        }
+
+        LavalinkManager.ins.destroyLink(guildId);
+    }
+
     boolean isAnnounceTracks() {
         return settings.isAnnounceTracks();
     }
@@ -0,0 +1,335 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.audio;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrackInfo;
+import me.duncte123.botcommons.web.WebUtils;
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.objects.ILoveStream;
+import ml.duncte123.skybot.objects.RadioNowPlaying;
+import ml.duncte123.skybot.objects.RadioStream;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.json.JSONTokener;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * Holds all the radio streams that we know about and caches what they are playing
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class RadioStreamRegistry {
+
+    private static final Logger logger = LoggerFactory.getLogger(RadioStreamRegistry.class);
+    private static final String ILOVE_PLAYLIST_URL = "https://www.iloveradio.de/typo3conf/ext/ep_channel/Scripts/playlist.php";
+    private static final Pattern STREAM_TITLE_PATTERN = Pattern.compile("StreamTitle='(.*?)';");
+    /**
+     * We only look up what a station is playing if someone listened to it in this time
+     */
+    private static final long ACTIVE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * How long the first lookup for a station waits for the song
+     */
+    private static final long FIRST_LOOKUP_TIMEOUT = TimeUnit.SECONDS.toMillis(3);
+
+    private final List<RadioStream> streams;
+    private final Map<String, RadioStream> streamsByUrl = new HashMap<>();
+    private final Map<String, RadioStream> streamsByName = new HashMap<>();
+    private final Map<String, RadioNowPlaying> nowPlaying = new ConcurrentHashMap<>();
+    private final Map<String, Long> lastRequested = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor((r) -> {
+        final Thread thread = new Thread(r, "Radio-Metadata-Thread");
+
+        thread.setDaemon(true);
+
+        return thread;
+    });
+
+    public RadioStreamRegistry() {
+        this.streams = Collections.unmodifiableList(loadStations());
+
+        for (RadioStream stream : streams) {
+            streamsByUrl.put(stream.getUrl(), stream);
+            streamsByName.put(stream.getName(), stream);
+        }
+
+        service.scheduleWithFixedDelay(this::updateNowPlaying, 30, 30, TimeUnit.SECONDS);
+    }
+
+    /**
+     * @return all the streams in the order that they are listed in the config
+     */
+    public List<RadioStream> getStreams() {
+        return streams;
+    }
+
+    @Nullable
+    public RadioStream getByUrl(String url) {
+        return streamsByUrl.get(url);
+    }
+
+    @Nullable
+    public RadioStream getByName(String name) {
+        return streamsByName.get(name);
+    }
+
+    /**
+     * Gets the name that we should show for a track, streams that we know get their station name
+     *
+     * @param info
+     *         the info of the track
+     *
+     * @return the station name or the title of the track
+     */
+    @NotNull
+    public String getDisplayName(AudioTrackInfo info) {
+        if (!info.isStream) {
+            return info.title;
+        }
+
+        RadioStream stream = getByUrl(info.uri);
+
+        return stream == null ? info.title : stream.getName();
+    }
+
+    /**
+     * Returns the last known song that a station is playing, only the first lookup for a station goes to the network
+     * and waits at most {@link #FIRST_LOOKUP_TIMEOUT} for it, after that the poller keeps the song up to date
+     *
+     * @param stream
+     *         the station to get the song for
+     *
+     * @return the song or null if we don't know it (yet)
+     */
+    @Nullable
+    public RadioNowPlaying getNowPlaying(@NotNull RadioStream stream) {
+        final String url = stream.getUrl();
+
+        if (lastRequested.put(url, System.currentTimeMillis()) == null && !nowPlaying.containsKey(url)) {
+            try {
+                service.submit(() -> fetchNowPlaying(Collections.singletonList(stream)))
+                    .get(FIRST_LOOKUP_TIMEOUT, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            } catch (TimeoutException | ExecutionException | RejectedExecutionException e) {
+                logger.debug("Could not get the now playing data for {} in time", stream.getName(), e);
+            }
+        }
+
+        return nowPlaying.get(url);
+    }
+
+    public void shutdown() {
+        service.shutdown();
+    }
+
+    private void updateNowPlaying() {
+        final long activeSince = System.currentTimeMillis() - ACTIVE_TIMEOUT;
+        final List<RadioStream> active = new ArrayList<>();
+
+        lastRequested.forEach((url, time) -> {
+            if (time < activeSince) {
+                lastRequested.remove(url);
+                nowPlaying.remove(url);
+                return;
+            }
+
+            RadioStream stream = getByUrl(url);
+
+            if (stream != null) {
+                active.add(stream);
+            }
+        });
+
+        fetchNowPlaying(active);
+    }
+
+    private void fetchNowPlaying(List<RadioStream> streams) {
+        JSONObject iloveJson = null;
+
+        for (RadioStream stream : streams) {
+            try {
+                final RadioNowPlaying song;
+
+                if (stream instanceof ILoveStream) {
+                    // One request gives us the data for all the ilove channels
+                    if (iloveJson == null) {
+                        iloveJson = WebUtils.ins.getJSONObject(ILOVE_PLAYLIST_URL).execute();
+                    }
+
+                    song = getILoveNowPlaying((ILoveStream) stream, iloveJson);
+                } else {
+                    song = getIcyNowPlaying(stream);
+                }
+
+                if (song != null) {
+                    nowPlaying.put(stream.getUrl(), song);
+                }
+            } catch (Exception e) {
+                logger.debug("Could not get the now playing data for {}", stream.getName(), e);
+            }
+        }
+    }
+
+    @Nullable
+    private RadioNowPlaying getILoveNowPlaying(ILoveStream stream, JSONObject json) {
+        JSONObject channelData = json.optJSONObject("channel-" + stream.getNpChannel());
+
+        if (channelData == null) {
+            return null;
+        }
+
+        return new RadioNowPlaying(
+            channelData.getString("title"),
+            channelData.optString("artist", null),
+            "https://www.iloveradio.de" + channelData.getString("cover"),
+            channelData.optString("color", null)
+        );
+    }
+
+    /**
+     * Reads the first ICY metadata block from the stream, this tells us what is playing on most shoutcast/icecast
+     * streams
+     */
+    @Nullable
+    private RadioNowPlaying getIcyNowPlaying(RadioStream stream) throws IOException {
+        HttpURLConnection connection = (HttpURLConnection) new URL(stream.getUrl()).openConnection();
+
+        connection.setRequestProperty("Icy-MetaData", "1");
+        connection.setConnectTimeout(5000);
+        connection.setReadTimeout(5000);
+
+        try {
+            int metaInt = connection.getHeaderFieldInt("icy-metaint", -1);
+
+            if (metaInt <= 0) {
+                return null;
+            }
+
+            try (InputStream in = connection.getInputStream()) {
+                DataInputStream data = new DataInputStream(in);
+
+                if (!skipFully(data, metaInt)) {
+                    return null;
+                }
+
+                int length = data.read() * 16;
+
+                if (length <= 0) {
+                    return null;
+                }
+
+                byte[] metadata = new byte[length];
+                data.readFully(metadata);
+
+                Matcher matcher = STREAM_TITLE_PATTERN.matcher(new String(metadata, StandardCharsets.UTF_8));
+
+                if (!matcher.find() || matcher.group(1).isEmpty()) {
+                    return null;
+                }
+
+                String[] parts = matcher.group(1).split(" - ", 2);
+
+                return parts.length == 2 ?
+                    new RadioNowPlaying(parts[1], parts[0], null, null) :
+                    new RadioNowPlaying(parts[0], null, null, null);
+            }
+        } finally {
+            connection.disconnect();
+        }
+    }
+
+    /**
+     * Skips the audio in front of the metadata, a network stream often skips less than we ask for
+     *
+     * @return false if the stream ended first
+     */
+    private static boolean skipFully(DataInputStream data, int count) throws IOException {
+        int remaining = count;
+
+        while (remaining > 0) {
+            int skipped = data.skipBytes(remaining);
+
+            if (skipped <= 0) {
+                // skipBytes returns 0 at the end of the stream but also when nothing is buffered yet
+                if (data.read() == -1) {
+                    return false;
+                }
+
+                skipped = 1;
+            }
+
+            remaining -= skipped;
+        }
+
+        return true;
+    }
+
+    private List<RadioStream> loadStations() {
+        final List<RadioStream> stations = new ArrayList<>();
+
+        try (InputStream in = RadioStreamRegistry.class.getResourceAsStream("/radio_streams.json")) {
+            JSONArray array = new JSONArray(new JSONTokener(in));
+
+            for (int i = 0; i < array.length(); i++) {
+                JSONObject station = array.getJSONObject(i);
+                String name = station.getString("name");
+                boolean isPublic = station.optBoolean("public", true);
+
+                if ("ilove".equals(station.optString("type"))) {
+                    int channel = station.getInt("channel");
+
+                    stations.add(new ILoveStream(
+                        name,
+                        channel,
+                        station.optInt("npChannel", channel),
+                        station.optBoolean("internal", true),
+                        isPublic
+                    ));
+                } else {
+                    stations.add(new RadioStream(
+                        name,
+                        station.getString("url"),
+                        station.optString("website", null),
+                        isPublic
+                    ));
+                }
+            }
+        } catch (Exception e) {
+            logger.error("Could not load the radio streams", e);
+        }
+
+        logger.info("Loaded {} radio streams", stations.size());
+
+        return stations;
+    }
+}
@@ -29,8 +29,8 @@ import me.duncte123.botcommons.messaging.MessageUtils;
 import me.duncte123.botcommons.text.TextColor;
 import ml.duncte123.skybot.Author;
 import ml.duncte123.skybot.Variables;
-import ml.duncte123.skybot.commands.music.RadioCommand;
 import ml.duncte123.skybot.objects.ConsoleUser;
+import ml.duncte123.skybot.objects.RadioNowPlaying;
 import ml.duncte123.skybot.objects.RadioStream;
 import ml.duncte123.skybot.objects.TrackUserData;
 import ml.duncte123.skybot.unstable.utils.ComparatingUtils;
@@ -48,6 +48,9 @@ import static ml.duncte123.skybot.SkyBot.getInstance;
 @Author(nickname = "duncte123", author = "Duncan Sterken")
 public class TrackScheduler extends AudioEventAdapterWrapped {
 
+    /**
+     * Everything that touches the queue has to hold its lock, the player threads change it as well
+     */
     public final Queue<AudioTrack> queue;
     private static final Logger logger = LoggerFactory.getLogger(TrackScheduler.class);
     private final IPlayer player;
@@ -77,10 +80,12 @@ public class TrackScheduler extends AudioEventAdapterWrapped {
      *         The {@link AudioTrack AudioTrack} to queue
      */
     public void queue(AudioTrack track) {
-        if (player.getPlayingTrack() != null) {
-            queue.offer(track);
-        } else {
-            player.playTrack(track);
+        synchronized (queue) {
+            if (player.getPlayingTrack() != null) {
+                queue.offer(track);
+            } else {
+                player.playTrack(track);
+            }
         }
     }
 
@@ -88,19 +93,136 @@ public class TrackScheduler extends AudioEventAdapterWrapped {
      * Starts the next track
      */
     public void nextTrack() {
+        final AudioTrack nextTrack;
 
-        if (queue.peek() == null) return;
+        synchronized (queue) {
+            nextTrack = queue.poll();
+        }
 
-        AudioTrack nextTrack = queue.poll();
+        if (nextTrack == null) return;
 
-        if (nextTrack != null) {
-            player.playTrack(nextTrack);
-            announceNextTrack(nextTrack);
-            return;
+        player.playTrack(nextTrack);
+        announceNextTrack(nextTrack);
+    }
+
+    /**
+     * Skips multiple tracks in one go, only the track that we land on will be started. When the queue is empty the
+     * current track keeps playing, when we skip past the end of the queue the last track is started
+     *
+     * @param count
+     *         The amount of tracks to skip, 1 skips the current track
+     *
+     * @return The amount of tracks that have been removed from the queue
+     */
+    public int skipTracks(int count) {
+        int removed;
+
+        synchronized (queue) {
+            List<AudioTrack> list = getQueueAsList();
+            List<AudioTrack> skipped = list.subList(0, Math.max(0, Math.min(count - 1, list.size() - 1)));
+            removed = skipped.size();
+
+            if (repeatPlayList) {
+                // Everything that we skip goes back to the end of the playlist
+                List<AudioTrack> toRepeat = new ArrayList<>(skipped);
+                AudioTrack playing = player.getPlayingTrack();
+                skipped.clear();
+
+                if (playing != null) {
+                    queue.offer(cloneTrack(playing));
+                }
+
+                toRepeat.forEach(queue::offer);
+            } else {
+                skipped.clear();
+            }
+
+            // There is nothing to skip to, just like before we skipped in bulk the current track keeps playing
+            if (queue.isEmpty()) {
+                return removed;
+            }
         }
 
-        if (player.getPlayingTrack() != null) {
-            player.stopTrack();
+        nextTrack();
+
+        return removed;
+    }
+
+    /**
+     * Skips to a track in the queue
+     *
+     * @param index
+     *         The index of the track in the queue, 0 is the next track
+     *
+     * @return The amount of tracks that have been removed from the queue
+     */
+    public int skipTo(int index) {
+        return skipTracks(index + 1);
+    }
+
+    /**
+     * Removes a range of tracks from the queue
+     *
+     * @param from
+     *         The index of the first track to remove (inclusive)
+     * @param to
+     *         The index of the last track to remove (exclusive)
+     *
+     * @return The amount of tracks that have been removed
+     */
+    public int removeRange(int from, int to) {
+        synchronized (queue) {
+            List<AudioTrack> list = getQueueAsList();
+            int start = Math.max(0, from);
+            int end = Math.min(to, list.size());
+
+            if (start >= end) {
+                return 0;
+            }
+
+            list.subList(start, end).clear();
+
+            return end - start;
+        }
+    }
+
+    /**
+     * Moves a track to a different position in the queue
+     *
+     * @param from
+     *         The current index of the track
+     * @param to
+     *         The index that the track should be moved to
+     *
+     * @return true if the track was moved
+     */
+    public boolean move(int from, int to) {
+        synchronized (queue) {
+            List<AudioTrack> list = getQueueAsList();
+
+            if (from < 0 || to < 0 || from >= list.size() || to >= list.size()) {
+                return false;
+            }
+
+            list.add(to, list.remove(from));
+
+            return true;
+        }
+    }
+
+    /**
+     * Removes all the tracks from the queue that are in there more than once, the first one will be kept
+     *
+     * @return The amount of tracks that have been removed
+     */
+    public int removeDuplicates() {
+        synchronized (queue) {
+            Set<String> seen = new HashSet<>();
+            int sizeBefore = queue.size();
+
+            queue.removeIf((track) -> !seen.add(track.getIdentifier()));
+
+            return sizeBefore - queue.size();
         }
     }
 
@@ -134,15 +256,13 @@ public class TrackScheduler extends AudioEventAdapterWrapped {
             logger.debug("a playlist.....");
             nextTrack();
             //Offer it to the queue to prevent the player from playing it
-            AudioTrack clone = lastTrack.makeClone();
-            clone.setUserData(lastTrack.getUserData());
-            queue.offer(clone);
+            synchronized (queue) {
+                queue.offer(cloneTrack(lastTrack));
+            }
             return;
         }
 
-        AudioTrack clone = lastTrack.makeClone();
-        clone.setUserData(lastTrack.getUserData());
-        this.player.playTrack(clone);
+        this.player.playTrack(cloneTrack(lastTrack));
         announceNextTrack(lastTrack, true);
 
     }
@@ -189,7 +309,19 @@ public class TrackScheduler extends AudioEventAdapterWrapped {
      * Shuffles the player
      */
     public void shuffle() {
-        Collections.shuffle((List<?>) queue);
+        synchronized (queue) {
+            Collections.shuffle(getQueueAsList());
+        }
+    }
+
+    private List<AudioTrack> getQueueAsList() {
+        return (List<AudioTrack>) queue;
+    }
+
+    private AudioTrack cloneTrack(AudioTrack track) {
+        AudioTrack clone = track.makeClone();
+        clone.setUserData(track.getUserData());
+        return clone;
     }
 
     private void announceNextTrack(AudioTrack track) {
@@ -198,13 +330,14 @@ public class TrackScheduler extends AudioEventAdapterWrapped {
 
     private void announceNextTrack(AudioTrack track, boolean repeated) {
         if (guildMusicManager.isAnnounceTracks()) {
-            String title = track.getInfo().title;
+            RadioStreamRegistry radioStreams = variables.getRadioStreams();
+            String title = radioStreams.getDisplayName(track.getInfo());
             TrackUserData userData = (TrackUserData) track.getUserData();
             if (track.getInfo().isStream) {
-                Optional<RadioStream> stream = ((RadioCommand) variables.getCommandManager().getCommand("radio"))
-                    .getRadioStreams().stream().filter(s -> s.getUrl().equals(track.getInfo().uri)).findFirst();
-                if (stream.isPresent())
-                    title = stream.get().getName();
+                RadioStream stream = radioStreams.getByUrl(track.getInfo().uri);
+                RadioNowPlaying song = stream == null ? null : radioStreams.getNowPlaying(stream);
+                if (song != null)
+                    title += " (" + song + ")";
             }
             User user = userData != null ? getInstance().getShardManager().getUserById(userData.getUserId()) : new ConsoleUser();
             final String message = String.format("Now playing: %s %s%nRequester: %#s", title, (repeated ? "(repeated)" : ""), user);
@@ -0,0 +1,248 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.audio;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import ml.duncte123.skybot.Author;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.VoiceChannel;
+import net.dv8tion.jda.core.events.ReadyEvent;
+import net.dv8tion.jda.core.events.ReconnectedEvent;
+import net.dv8tion.jda.core.events.guild.GuildAvailableEvent;
+import net.dv8tion.jda.core.events.guild.GuildLeaveEvent;
+import net.dv8tion.jda.core.events.guild.GuildUnavailableEvent;
+import net.dv8tion.jda.core.events.guild.voice.GuildVoiceDeafenEvent;
+import net.dv8tion.jda.core.events.guild.voice.GuildVoiceJoinEvent;
+import net.dv8tion.jda.core.events.guild.voice.GuildVoiceLeaveEvent;
+import net.dv8tion.jda.core.events.guild.voice.GuildVoiceMoveEvent;
+import net.dv8tion.jda.core.hooks.ListenerAdapter;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Counts the voice channels that we are connected to and the users that are listening in them
+ * <p>
+ * The counts are kept up to date from the voice events so the stats commands don't have to go over every voice
+ * channel of every shard. Lavalink connections show up as voice updates of our own member, so they are counted the
+ * same way. The counts per shard grow when we see a new shard id, so this works with the shard total that discord
+ * gives us
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class VoiceConnectionCounter extends ListenerAdapter {
+
+    private final TLongObjectMap<GuildVoice> guilds = new TLongObjectHashMap<>();
+    private final AtomicInteger totalConnected = new AtomicInteger();
+    private final AtomicInteger totalListeners = new AtomicInteger();
+    /**
+     * The counts per shard, these are only touched while holding the lock on {@link #guilds}
+     */
+    private int[] connected = new int[1];
+    private int[] listeners = new int[1];
+
+    public int getConnectedChannels(int shardId) {
+        synchronized (this.guilds) {
+            return shardId >= 0 && shardId < this.connected.length ? this.connected[shardId] : 0;
+        }
+    }
+
+    public int getListeners(int shardId) {
+        synchronized (this.guilds) {
+            return shardId >= 0 && shardId < this.listeners.length ? this.listeners[shardId] : 0;
+        }
+    }
+
+    public int getConnectedChannels() {
+        return this.totalConnected.get();
+    }
+
+    public int getListeners() {
+        return this.totalListeners.get();
+    }
+
+    @Override
+    public void onReady(ReadyEvent event) {
+        recountShard(event.getJDA());
+    }
+
+    @Override
+    public void onReconnect(ReconnectedEvent event) {
+        // The cache is built again without voice events, so we can't trust the old counts
+        recountShard(event.getJDA());
+    }
+
+    @Override
+    public void onGuildAvailable(GuildAvailableEvent event) {
+        refresh(event.getGuild());
+    }
+
+    @Override
+    public void onGuildUnavailable(GuildUnavailableEvent event) {
+        remove(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onGuildLeave(GuildLeaveEvent event) {
+        remove(event.getGuild().getIdLong());
+    }
+
+    @Override
+    public void onGuildVoiceJoin(GuildVoiceJoinEvent event) {
+        update(event.getGuild(), event.getMember(), event.getChannelJoined(), null);
+    }
+
+    @Override
+    public void onGuildVoiceLeave(GuildVoiceLeaveEvent event) {
+        update(event.getGuild(), event.getMember(), event.getChannelLeft(), null);
+    }
+
+    @Override
+    public void onGuildVoiceMove(GuildVoiceMoveEvent event) {
+        update(event.getGuild(), event.getMember(), event.getChannelLeft(), event.getChannelJoined());
+    }
+
+    @Override
+    public void onGuildVoiceDeafen(GuildVoiceDeafenEvent event) {
+        update(event.getGuild(), event.getMember(), event.getVoiceState().getChannel(), null);
+    }
+
+    private void update(Guild guild, Member member, VoiceChannel channel, VoiceChannel otherChannel) {
+        if (!member.equals(guild.getSelfMember())) {
+            final GuildVoice voice;
+
+            synchronized (this.guilds) {
+                voice = this.guilds.get(guild.getIdLong());
+            }
+
+            // Most voice events happen in guilds where we are not connected, those don't change anything
+            if (voice == null || !(isChannel(channel, voice.channelId) || isChannel(otherChannel, voice.channelId))) {
+                return;
+            }
+        }
+
+        refresh(guild);
+    }
+
+    /**
+     * Counts the listeners of the channel that we are in, this only goes over the members of one channel
+     */
+    private void refresh(Guild guild) {
+        final VoiceChannel channel = guild.getSelfMember().getVoiceState().getChannel();
+        final GuildVoice voice = channel == null ? null :
+            new GuildVoice(getShardId(guild.getJDA()), channel.getIdLong(), countListeners(channel));
+
+        synchronized (this.guilds) {
+            final GuildVoice old = voice == null ?
+                this.guilds.remove(guild.getIdLong()) :
+                this.guilds.put(guild.getIdLong(), voice);
+
+            if (old != null) {
+                add(old.shardId, -1, -old.listeners);
+            }
+
+            if (voice != null) {
+                add(voice.shardId, 1, voice.listeners);
+            }
+        }
+    }
+
+    private void remove(long guildId) {
+        synchronized (this.guilds) {
+            final GuildVoice old = this.guilds.remove(guildId);
+
+            if (old != null) {
+                add(old.shardId, -1, -old.listeners);
+            }
+        }
+    }
+
+    private void recountShard(JDA shard) {
+        final int shardId = getShardId(shard);
+
+        synchronized (this.guilds) {
+            this.guilds.retainEntries((guildId, voice) -> {
+                if (voice.shardId == shardId) {
+                    add(shardId, -1, -voice.listeners);
+                    return false;
+                }
+
+                return true;
+            });
+        }
+
+        for (Guild guild : shard.getGuildCache()) {
+            if (guild.getSelfMember().getVoiceState().inVoiceChannel()) {
+                refresh(guild);
+            }
+        }
+    }
+
+    /**
+     * Must be called while holding the lock on {@link #guilds}
+     */
+    private void add(int shardId, int connectedDelta, int listenersDelta) {
+        if (shardId >= this.connected.length) {
+            this.connected = Arrays.copyOf(this.connected, shardId + 1);
+            this.listeners = Arrays.copyOf(this.listeners, shardId + 1);
+        }
+
+        this.connected[shardId] += connectedDelta;
+        this.listeners[shardId] += listenersDelta;
+        this.totalConnected.addAndGet(connectedDelta);
+        this.totalListeners.addAndGet(listenersDelta);
+    }
+
+    private static int countListeners(VoiceChannel channel) {
+        int count = 0;
+
+        for (Member member : channel.getMembers()) {
+            if (!member.getUser().isBot() && !member.getVoiceState().isDeafened()) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    private static boolean isChannel(VoiceChannel channel, long channelId) {
+        return channel != null && channel.getIdLong() == channelId;
+    }
+
+    private static int getShardId(JDA shard) {
+        final JDA.ShardInfo info = shard.getShardInfo();
+
+        return info == null ? 0 : info.getShardId();
+    }
+
+    private static class GuildVoice {
+        private final int shardId;
+        private final long channelId;
+        private final int listeners;
+
+        private GuildVoice(int shardId, long channelId, int listeners) {
+            this.shardId = shardId;
+            this.channelId = channelId;
+            this.listeners = listeners;
+        }
+    }
+}
@@ -21,6 +21,7 @@ package ml.duncte123.skybot.commands.essentials;
 import me.duncte123.botcommons.messaging.MessageUtils;
 import ml.duncte123.skybot.Author;
 import ml.duncte123.skybot.Authors;
+import ml.duncte123.skybot.audio.VoiceConnectionCounter;
 import ml.duncte123.skybot.objects.command.Command;
 import ml.duncte123.skybot.objects.command.CommandCategory;
 import ml.duncte123.skybot.objects.command.CommandContext;
@@ -60,6 +61,7 @@ public class ShardInfoCommand extends Command {
 
         List<List<String>> table = new ArrayList<>();
         ShardManager shardManager = ctx.getJDA().asBot().getShardManager();
+        VoiceConnectionCounter voiceCounter = ctx.getVoiceCounter();
         List<JDA> shards = new ArrayList<>(shardManager.getShards());
         Collections.reverse(shards);
 
@@ -73,26 +75,19 @@ public class ShardInfoCommand extends Command {
             row.add(String.valueOf(shard.getPing()));
             row.add(String.valueOf(shard.getGuilds().size()));
 
-            String listening = shard.getVoiceChannelCache().stream().filter(vc -> vc.getMembers().contains(vc.getGuild()
-                .getSelfMember())).count() + " / " +
-                shard.getVoiceChannelCache().stream().filter(vc ->
-                    vc.getMembers().contains(vc.getGuild().getSelfMember()))
-                    .mapToLong(it ->
-                        it.getMembers().stream().filter(itt ->
-                            !itt.getUser().isBot() && !itt.getVoiceState().isDeafened()).count()
-                    ).sum();
+            final int shardId = shard.getShardInfo().getShardId();
 
-            row.add(listening);
+            row.add(voiceCounter.getConnectedChannels(shardId) + " / " + voiceCounter.getListeners(shardId));
             table.add(row);
 
             if (table.size() == 20) {
-                MessageUtils.sendMsg(event, makeAsciiTable(headers, table, shardManager));
+                MessageUtils.sendMsg(event, makeAsciiTable(headers, table, shardManager, voiceCounter));
                 table = new ArrayList<>();
             }
         }
 
         if (!table.isEmpty()) {
-            MessageUtils.sendMsg(event, makeAsciiTable(headers, table, shardManager));
+            MessageUtils.sendMsg(event, makeAsciiTable(headers, table, shardManager, voiceCounter));
         }
     }
 
@@ -115,7 +110,8 @@ public class ShardInfoCommand extends Command {
      * These 2 functions have been inspired from FlareBot
      * https://github.com/FlareBot/FlareBot/blob/master/src/main/java/stream/flarebot/flarebot/util/ShardUtils.java
      */
-    private String makeAsciiTable(List<String> headers, List<List<String>> table, ShardManager shardManager) {
+    private String makeAsciiTable(List<String> headers, List<List<String>> table, ShardManager shardManager,
+                                  VoiceConnectionCounter voiceCounter) {
         StringBuilder sb = new StringBuilder();
         int padding = 1;
         int[] widths = new int[headers.size()];
@@ -155,18 +151,8 @@ public class ShardInfoCommand extends Command {
         String avgPing = new DecimalFormat("###").format(shardManager.getAveragePing());
         String guilds = String.valueOf(shardManager.getGuildCache().size());
 
-        long connectedVC = shardCache.stream().mapToLong(shard ->
-            shard.getVoiceChannelCache().stream().filter(vc -> vc.getMembers().contains(vc.getGuild().getSelfMember())).count()
-        ).sum();
-
-        long listeningVC = shardCache.stream().mapToLong(shard ->
-            shard.getVoiceChannelCache().stream().filter(vc ->
-                vc.getMembers().contains(vc.getGuild().getSelfMember()))
-                .mapToLong(it ->
-                    it.getMembers().stream().filter(itt ->
-                        !itt.getUser().isBot() && !itt.getVoiceState().isDeafened()).count()
-                ).sum()
-        ).sum();
+        int connectedVC = voiceCounter.getConnectedChannels();
+        int listeningVC = voiceCounter.getListeners();
 
         sb.append(String.format(formatLine.toString(), "Sum/Avg", connectedShards, avgPing, guilds, connectedVC + " / " + listeningVC));
         sb.append(appendSeparatorLine("╚", "╩", "╝", padding, widths));
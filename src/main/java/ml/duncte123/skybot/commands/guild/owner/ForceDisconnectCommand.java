@@ -44,8 +44,13 @@ public class ForceDisconnectCommand extends MusicCommand {
         Guild g = event.getGuild();
         GuildMusicManager manager = getMusicManager(g, ctx.getAudioUtils());
 
+        manager.cancelLoads();
         manager.player.stopTrack();
-        manager.scheduler.queue.clear();
+
+        synchronized (manager.scheduler.queue) {
+            manager.scheduler.queue.clear();
+        }
+
         getLavalinkManager().closeConnection(g);
 
         sendMsg(event, "Successfully send the disconnect signal to the server");
@@ -38,6 +38,11 @@ import static me.duncte123.botcommons.messaging.MessageUtils.sendMsg;
 @Author(nickname = "duncte123", author = "Duncan Sterken")
 public abstract class ImageCommandBase extends Command {
 
+    ImageCommandBase() {
+        // All of these go to the blargbot api
+        this.rateLimitCost = 3;
+    }
+
     boolean canSendFile(GuildMessageReceivedEvent event) {
         if (event.getGuild().getSelfMember().hasPermission(event.getChannel(), Permission.MESSAGE_ATTACH_FILES)) {
             return true;
@@ -32,10 +32,7 @@ import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
 import org.apache.commons.lang3.StringUtils;
 import org.jetbrains.annotations.NotNull;
 
-import java.util.Arrays;
-import java.util.List;
 import java.util.regex.Pattern;
-import java.util.stream.Collectors;
 
 import static me.duncte123.botcommons.messaging.MessageUtils.sendEmbed;
 import static me.duncte123.botcommons.messaging.MessageUtils.sendMsg;
@@ -57,8 +54,10 @@ public class HelpCommand extends Command {
                     Pattern.quote(Settings.OTHER_PREFIX) + "|" +
                     Pattern.quote(ctx.getGuildSettings().getCustomPrefix()) + ")", "");
 
-            if (isCategory(toSearch)) {
-                sendCategoryHelp(event, ctx.getGuild().getSettings().getCustomPrefix(), toSearch.toUpperCase());
+            CommandCategory category = HelpEmbeds.getCategory(toSearch);
+
+            if (category != null) {
+                sendEmbed(event, HelpEmbeds.generateCommandEmbed(ctx.getGuildSettings().getCustomPrefix(), category));
                 return;
             }
 
@@ -84,21 +83,6 @@ public class HelpCommand extends Command {
         return new String[]{"commands"};
     }
 
-    @SuppressWarnings("ConstantConditions")
-    private boolean isCategory(String name) {
-        try {
-            List<CommandCategory> categoryList = Arrays.stream(CommandCategory.values()).filter(it -> it.getSearch()
-                .equals(name.toLowerCase())).collect(Collectors.toList());
-            if (!categoryList.isEmpty()) {
-                return true;
-            }
-
-            return CommandCategory.valueOf(name.toUpperCase()) != null;
-        } catch (IllegalArgumentException ignored) {
-            return false;
-        }
-    }
-
     private void sendHelp(GuildMessageReceivedEvent event, MessageEmbed embed) {
         event.getAuthor().openPrivateChannel().queue(
             pc -> pc.sendMessage(embed).queue(
@@ -113,43 +97,14 @@ public class HelpCommand extends Command {
     }
 
     private void sendCommandHelp(GuildMessageReceivedEvent event, String toSearch, CommandManager manager) {
-        for (ICommand cmd : manager.getCommands()) {
-            if (cmd.getName().equals(toSearch)) {
-                sendMsg(event, "Command help for `" +
-                    cmd.getName() + "` :\n" + cmd.help(cmd.getName()) +
-                    (cmd.getAliases().length > 0 ? "\nAliases: " + StringUtils.join(cmd.getAliases(), ", ") : ""));
-                return;
-            } else {
-                for (String alias : cmd.getAliases()) {
-                    if (alias.equals(toSearch)) {
-                        sendMsg(event, "Command help for `" + cmd.getName() + "` :\n" +
-                            cmd.help(alias) + (cmd.getAliases().length > 0 ? "\nAliases: "
-                            + StringUtils.join(cmd.getAliases(), ", ") : ""));
-                        return;
-                    }
-
-                }
+        ICommand cmd = manager.getCommand(toSearch);
 
-            }
+        if (cmd == null) {
+            sendMsg(event, "That command could not be found, try `" + PREFIX + "help` for a list of commands");
+            return;
         }
 
-        sendMsg(event, "That command could not be found, try `" + PREFIX + "help` for a list of commands");
-    }
-
-    private void sendCategoryHelp(GuildMessageReceivedEvent event, String prefix, String toSearch) {
-        CommandCategory cat = getCategory(toSearch);
-        MessageEmbed embed = HelpEmbeds.generateCommandEmbed(prefix, cat);
-        sendEmbed(event, embed);
-    }
-
-    private CommandCategory getCategory(String search) {
-
-        try {
-            return CommandCategory.valueOf(search.toUpperCase());
-        } catch (IllegalArgumentException ignored) {
-            List<CommandCategory> categoryList = Arrays.stream(CommandCategory.values()).filter(it -> it.getSearch()
-                .equals(search.toLowerCase())).collect(Collectors.toList());
-            return categoryList.get(0);
-        }
+        sendMsg(event, "Command help for `" + cmd.getName() + "` :\n" + cmd.help(toSearch) +
+            (cmd.getAliases().length > 0 ? "\nAliases: " + StringUtils.join(cmd.getAliases(), ", ") : ""));
     }
 }
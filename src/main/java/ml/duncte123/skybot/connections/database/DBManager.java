@@ -19,6 +19,8 @@
 package ml.duncte123.skybot.connections.database;
 
 import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.metrics.MetricsRegistry;
+import ml.duncte123.skybot.metrics.Timer;
 import ml.duncte123.skybot.objects.config.DunctebotConfig;
 
 import java.io.File;
@@ -33,6 +35,8 @@ public class DBManager {
 
     private final DBConnectionManager connManager;
     private final ExecutorService service = Executors.newCachedThreadPool(r -> new Thread(r, "SQL-thread"));
+    private final Timer taskTimer = MetricsRegistry.ins.timer("skybot_database_task_duration_seconds",
+        "Time it takes to run a task on the database threads");
     /**
      * This is the database name
      */
@@ -88,11 +92,27 @@ public class DBManager {
     }
 
     public <T> Future<T> run(Callable<T> c) {
-        return service.submit(c);
+        return service.submit(() -> {
+            final long start = System.nanoTime();
+
+            try {
+                return c.call();
+            } finally {
+                taskTimer.record(System.nanoTime() - start);
+            }
+        });
     }
 
     public Future<?> run(Runnable r) {
-        return service.submit(r);
+        return service.submit(() -> {
+            final long start = System.nanoTime();
+
+            try {
+                r.run();
+            } finally {
+                taskTimer.record(System.nanoTime() - start);
+            }
+        });
     }
 
     public ExecutorService getService() {
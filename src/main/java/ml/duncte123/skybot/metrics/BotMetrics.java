@@ -0,0 +1,225 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.metrics;
+
+import fredboat.audio.player.LavalinkManager;
+import gnu.trove.map.TLongObjectMap;
+import lavalink.client.io.LavalinkSocket;
+import lavalink.client.io.RemoteStats;
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.CommandScheduler;
+import ml.duncte123.skybot.CommandThrottle;
+import ml.duncte123.skybot.Variables;
+import ml.duncte123.skybot.audio.GuildMusicManager;
+import ml.duncte123.skybot.audio.VoiceConnectionCounter;
+import ml.duncte123.skybot.objects.command.CommandCategory;
+import net.dv8tion.jda.bot.sharding.ShardManager;
+import net.dv8tion.jda.core.JDA;
+import okhttp3.Response;
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryMXBean;
+import java.lang.management.ThreadMXBean;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Registers the metrics that are read from the state of the bot when the metrics are scraped
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class BotMetrics {
+
+    /**
+     * How long the apis that we call take to respond, labeled with the name of the api
+     */
+    public static final TimerFamily API_LATENCY = MetricsRegistry.ins.timers("skybot_api_request_duration_seconds",
+        "Time between sending a request to an upstream api and getting the response", "api");
+
+    private static final String[] LAVALINK_NAMES = {
+        "skybot_lavalink_players",
+        "skybot_lavalink_playing_players",
+        "skybot_lavalink_system_load",
+        "skybot_lavalink_load",
+        "skybot_lavalink_memory_used_bytes",
+        "skybot_lavalink_frames_sent_per_minute",
+        "skybot_lavalink_frames_nulled_per_minute",
+        "skybot_lavalink_frames_deficit_per_minute",
+    };
+    private static final String[] LAVALINK_HELP = {
+        "Players on the lavalink node",
+        "Players on the lavalink node that are playing a track",
+        "System cpu load of the lavalink node",
+        "Cpu load of the lavalink process",
+        "Memory used by the lavalink node",
+        "Average audio frames sent per minute by the lavalink node",
+        "Average audio frames nulled per minute by the lavalink node",
+        "Average audio frames missing per minute on the lavalink node",
+    };
+    private static final List<ToDoubleFunction<RemoteStats>> LAVALINK_VALUES = List.of(
+        RemoteStats::getPlayers,
+        RemoteStats::getPlayingPlayers,
+        RemoteStats::getSystemLoad,
+        RemoteStats::getLavalinkLoad,
+        RemoteStats::getMemUsed,
+        RemoteStats::getAvgFramesSentPerMinute,
+        RemoteStats::getAvgFramesNulledPerMinute,
+        RemoteStats::getAvgFramesDeficitPerMinute
+    );
+
+    private BotMetrics() {
+    }
+
+    /**
+     * Records how long a request to an upstream api took, okhttp keeps the times on the response so we don't have
+     * to wrap the request
+     *
+     * @param api
+     *         the name of the api
+     * @param response
+     *         the response from the api
+     */
+    public static void recordApiLatency(String api, Response response) {
+        API_LATENCY.get(api).record(response.receivedResponseAtMillis() - response.sentRequestAtMillis(), TimeUnit.MILLISECONDS);
+    }
+
+    public static void register(Variables variables, ShardManager shardManager) {
+        final MetricsRegistry registry = MetricsRegistry.ins;
+
+        registerShards(registry, shardManager);
+        registerCommands(registry, variables);
+        registerAudio(registry, variables);
+        registerDatabase(registry, variables);
+        registerJvm(registry);
+
+        if (LavalinkManager.ins.isEnabled()) {
+            registry.register("skybot_lavalink", BotMetrics::collectLavalink);
+        }
+    }
+
+    private static void registerShards(MetricsRegistry registry, ShardManager shardManager) {
+        registry.gauge("skybot_guilds", "Guilds that the bot is in",
+            () -> shardManager.getGuildCache().size());
+        registry.gauge("skybot_shards_connected", "Shards that are connected to discord",
+            () -> shardManager.getShards().stream().filter((jda) -> jda.getStatus() == JDA.Status.CONNECTED).count());
+        registry.register("skybot_shard_ping_seconds", (writer) -> {
+            writer.header("skybot_shard_ping_seconds", "Heartbeat ping of a shard", "gauge");
+
+            for (JDA shard : shardManager.getShards()) {
+                writer.sample("skybot_shard_ping_seconds", "shard",
+                    String.valueOf(shard.getShardInfo().getShardId()), shard.getPing() / 1000.0);
+            }
+        });
+    }
+
+    private static void registerCommands(MetricsRegistry registry, Variables variables) {
+        final CommandScheduler scheduler = variables.getCommandManager().commandScheduler;
+        final CommandThrottle throttle = variables.getCommandManager().commandThrottle;
+
+        registry.gauge("skybot_command_queued", "Commands waiting for a worker thread", scheduler::getQueued);
+        registry.counter("skybot_command_executed_total", "Commands that were run by the scheduler", scheduler::getExecuted);
+        registry.counter("skybot_command_rejected_total", "Commands that were rejected because the queue was full", scheduler::getRejected);
+        registry.gauge("skybot_command_queue_time_average_seconds", "Average time that a command waits for a worker",
+            () -> scheduler.getAverageQueueTime() / 1000.0);
+        registry.gauge("skybot_command_queue_time_max_seconds", "Longest time that a command waited for a worker",
+            () -> scheduler.getMaxQueueTime() / 1000.0);
+
+        registry.counter("skybot_command_allowed_total", "Commands that passed the rate limit", throttle::getAllowed);
+        registry.counter("skybot_command_throttled_users_total", "Commands that hit the rate limit of a user", throttle::getThrottledUsers);
+        registry.counter("skybot_command_throttled_guilds_total", "Commands that hit the rate limit of a guild", throttle::getThrottledGuilds);
+        registry.register("skybot_command_throttled_total", (writer) -> {
+            writer.header("skybot_command_throttled_total", "Commands that hit a rate limit by category", "counter");
+
+            for (CommandCategory category : CommandCategory.values()) {
+                writer.sample("skybot_command_throttled_total", "category", category.name().toLowerCase(),
+                    throttle.getThrottled(category));
+            }
+        });
+    }
+
+    private static void registerAudio(MetricsRegistry registry, Variables variables) {
+        final TLongObjectMap<GuildMusicManager> musicManagers = variables.getAudioUtils().getMusicManagers();
+
+        final VoiceConnectionCounter voiceCounter = variables.getVoiceCounter();
+
+        registry.gauge("skybot_audio_players", "Music players that are loaded", musicManagers::size);
+        registry.gauge("skybot_voice_connected", "Voice channels that we are connected to", voiceCounter::getConnectedChannels);
+        registry.gauge("skybot_voice_listeners", "Users that are listening in our voice channels", voiceCounter::getListeners);
+        registry.gauge("skybot_audio_players_playing", "Music players that are playing a track", () -> {
+            final int[] playing = {0};
+
+            synchronized (musicManagers) {
+                musicManagers.forEachValue((mng) -> {
+                    if (mng.player.getPlayingTrack() != null && !mng.player.isPaused()) {
+                        playing[0]++;
+                    }
+
+                    return true;
+                });
+            }
+
+            return playing[0];
+        });
+    }
+
+    private static void registerDatabase(MetricsRegistry registry, Variables variables) {
+        final ExecutorService service = variables.getDatabase().getService();
+
+        if (service instanceof ThreadPoolExecutor) {
+            final ThreadPoolExecutor executor = (ThreadPoolExecutor) service;
+
+            registry.gauge("skybot_database_threads_active", "Database threads that are running a task", executor::getActiveCount);
+            registry.gauge("skybot_database_queued", "Database tasks waiting for a thread", () -> executor.getQueue().size());
+        }
+    }
+
+    private static void registerJvm(MetricsRegistry registry) {
+        final MemoryMXBean memory = ManagementFactory.getMemoryMXBean();
+        final ThreadMXBean threads = ManagementFactory.getThreadMXBean();
+
+        registry.gauge("skybot_jvm_heap_used_bytes", "Heap memory that is in use", () -> memory.getHeapMemoryUsage().getUsed());
+        registry.gauge("skybot_jvm_threads", "Threads that are alive", threads::getThreadCount);
+    }
+
+    private static void collectLavalink(MetricsWriter writer) {
+        final List<LavalinkSocket> nodes = LavalinkManager.ins.getLavalink().getNodes();
+
+        writer.header("skybot_lavalink_available", "If the lavalink node is connected", "gauge");
+
+        for (LavalinkSocket node : nodes) {
+            writer.sample("skybot_lavalink_available", "node", node.getName(), node.isAvailable() ? 1 : 0);
+        }
+
+        for (int i = 0; i < LAVALINK_NAMES.length; i++) {
+            writer.header(LAVALINK_NAMES[i], LAVALINK_HELP[i], "gauge");
+
+            for (LavalinkSocket node : nodes) {
+                final RemoteStats stats = node.getStats();
+
+                // Nodes don't have stats until they sent the first ones
+                if (stats != null) {
+                    writer.sample(LAVALINK_NAMES[i], "node", node.getName(), LAVALINK_VALUES.get(i).applyAsDouble(stats));
+                }
+            }
+        }
+    }
+}
@@ -16,21 +16,23 @@
  * along with this program.  If not, see <http://www.gnu.org/licenses/>.
  */
 
-package ml.duncte123.skybot.web.controllers.crons
 
-import ml.duncte123.skybot.Author
-import ml.duncte123.skybot.connections.database.DBManager
+package ml.duncte123.skybot.metrics;
 
-@Author(nickname = "duncte123", author = "Duncan Sterken")
-object CronJobs {
-
-    fun clearExpiredWarns(database: DBManager): Any {
+import ml.duncte123.skybot.Author;
 
-        database.connManager.use {
-            it.connection.createStatement()
-                .execute("DELETE FROM `warnings` WHERE (CURDATE() >= DATE_ADD(expire_date, INTERVAL 5 DAY))")
-        }
+/**
+ * Writes one or more samples to the metrics page when it is requested
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+@FunctionalInterface
+public interface Collector {
 
-        return "Ok"
-    }
+    /**
+     * Writes the samples of this collector, this is only called when the metrics are scraped
+     *
+     * @param writer
+     *         the writer to write the samples to
+     */
+    void collect(MetricsWriter writer);
 }
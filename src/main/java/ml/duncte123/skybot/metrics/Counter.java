@@ -0,0 +1,58 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.metrics;
+
+import ml.duncte123.skybot.Author;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A value that only goes up
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class Counter implements Collector {
+
+    private final String name;
+    private final String help;
+    private final LongAdder value = new LongAdder();
+
+    Counter(String name, String help) {
+        this.name = name;
+        this.help = help;
+    }
+
+    public void inc() {
+        this.value.increment();
+    }
+
+    public void inc(long amount) {
+        this.value.add(amount);
+    }
+
+    public long get() {
+        return this.value.sum();
+    }
+
+    @Override
+    public void collect(MetricsWriter writer) {
+        writer.header(this.name, this.help, "counter");
+        writer.sample(this.name, get());
+    }
+}
@@ -0,0 +1,141 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.metrics;
+
+import ml.duncte123.skybot.Author;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Holds all the metrics of the bot and turns them into the prometheus text format for the /metrics route
+ * <p>
+ * Counters and timers are looked up once and kept in a field, recording a value on them does not allocate. Gauges
+ * are read from a supplier when the metrics are scraped so they cost nothing in between
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class MetricsRegistry {
+
+    public static final MetricsRegistry ins = new MetricsRegistry();
+    public static final String CONTENT_TYPE = "text/plain; version=0.0.4; charset=utf-8";
+    private static final Logger logger = LoggerFactory.getLogger(MetricsRegistry.class);
+
+    private final Map<String, Collector> collectors = new LinkedHashMap<>();
+
+    private MetricsRegistry() {
+    }
+
+    public Counter counter(String name, String help) {
+        return getOrRegister(name, Counter.class, () -> new Counter(name, help));
+    }
+
+    /**
+     * Registers a counter that is kept somewhere else, like the amount of commands that the scheduler ran
+     */
+    public void counter(String name, String help, LongSupplier supplier) {
+        register(name, (writer) -> {
+            writer.header(name, help, "counter");
+            writer.sample(name, supplier.getAsLong());
+        });
+    }
+
+    public void gauge(String name, String help, DoubleSupplier supplier) {
+        register(name, (writer) -> {
+            writer.header(name, help, "gauge");
+            writer.sample(name, supplier.getAsDouble());
+        });
+    }
+
+    public Timer timer(String name, String help) {
+        return getOrRegister(name, Timer.class, () -> new Timer(name, help, null, null));
+    }
+
+    public TimerFamily timers(String name, String help, String labelName) {
+        return getOrRegister(name, TimerFamily.class, () -> new TimerFamily(name, help, labelName));
+    }
+
+    /**
+     * Registers a collector, a collector that was registered with the same name before will be replaced
+     *
+     * @param name
+     *         the name of the metric that the collector writes
+     * @param collector
+     *         the collector that writes the samples
+     */
+    public void register(String name, Collector collector) {
+        synchronized (this.collectors) {
+            this.collectors.put(name, collector);
+        }
+    }
+
+    /**
+     * @return all the metrics in the prometheus text format
+     */
+    public String scrape() {
+        final List<Collector> toCollect;
+
+        synchronized (this.collectors) {
+            toCollect = new ArrayList<>(this.collectors.values());
+        }
+
+        final StringBuilder builder = new StringBuilder(8192);
+        final MetricsWriter writer = new MetricsWriter(builder);
+
+        for (Collector collector : toCollect) {
+            final int length = builder.length();
+
+            try {
+                collector.collect(writer);
+            } catch (Exception e) {
+                // Don't leave half a metric on the page
+                builder.setLength(length);
+                logger.error("Could not collect metrics", e);
+            }
+        }
+
+        return builder.toString();
+    }
+
+    private <T extends Collector> T getOrRegister(String name, Class<T> type, Supplier<T> creator) {
+        synchronized (this.collectors) {
+            final Collector existing = this.collectors.get(name);
+
+            if (existing == null) {
+                final T created = creator.get();
+                this.collectors.put(name, created);
+
+                return created;
+            }
+
+            if (!type.isInstance(existing)) {
+                throw new IllegalArgumentException("Metric " + name + " is already registered as a different type");
+            }
+
+            return type.cast(existing);
+        }
+    }
+}
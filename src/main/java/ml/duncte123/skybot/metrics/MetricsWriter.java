@@ -0,0 +1,116 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.metrics;
+
+import ml.duncte123.skybot.Author;
+
+/**
+ * Writes samples in the prometheus text format
+ * <p>
+ * https://prometheus.io/docs/instrumenting/exposition_formats/
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class MetricsWriter {
+
+    private final StringBuilder builder;
+
+    MetricsWriter(StringBuilder builder) {
+        this.builder = builder;
+    }
+
+    /**
+     * Writes the help and type lines, this has to be done once before the samples of a metric
+     */
+    public void header(String name, String help, String type) {
+        this.builder.append("# HELP ").append(name).append(' ');
+        escape(help, false);
+        this.builder.append("\n# TYPE ").append(name).append(' ').append(type).append('\n');
+    }
+
+    public void sample(String name, double value) {
+        sample(name, null, null, null, null, value);
+    }
+
+    public void sample(String name, String labelName, String labelValue, double value) {
+        sample(name, labelName, labelValue, null, null, value);
+    }
+
+    public void sample(String name, String labelName, String labelValue,
+                       String otherLabelName, String otherLabelValue, double value) {
+        this.builder.append(name);
+
+        if (labelName != null || otherLabelName != null) {
+            this.builder.append('{');
+
+            if (labelName != null) {
+                label(labelName, labelValue);
+            }
+
+            if (otherLabelName != null) {
+                if (labelName != null) {
+                    this.builder.append(',');
+                }
+
+                label(otherLabelName, otherLabelValue);
+            }
+
+            this.builder.append('}');
+        }
+
+        this.builder.append(' ');
+        value(value);
+        this.builder.append('\n');
+    }
+
+    private void label(String name, String value) {
+        this.builder.append(name).append("=\"");
+        escape(value, true);
+        this.builder.append('"');
+    }
+
+    private void value(double value) {
+        if (Double.isNaN(value)) {
+            this.builder.append("NaN");
+        } else if (Double.isInfinite(value)) {
+            this.builder.append(value > 0 ? "+Inf" : "-Inf");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            // Counters and gauges that hold whole numbers look nicer without the ".0"
+            this.builder.append((long) value);
+        } else {
+            this.builder.append(value);
+        }
+    }
+
+    private void escape(String text, boolean quotes) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c = text.charAt(i);
+
+            if (c == '\\') {
+                this.builder.append("\\\\");
+            } else if (c == '\n') {
+                this.builder.append("\\n");
+            } else if (c == '"' && quotes) {
+                this.builder.append("\\\"");
+            } else {
+                this.builder.append(c);
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.metrics;
+
+import ml.duncte123.skybot.Author;
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.Recorder;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Keeps track of how long something takes
+ * <p>
+ * Durations go into a HDR histogram with microsecond precision, recording them does not allocate anything. The count
+ * and sum are kept from the start of the bot while the quantiles only cover the time since the last scrape
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class Timer implements Collector {
+
+    private static final double[] QUANTILES = {0.5, 0.9, 0.99, 0.999};
+    private static final String[] QUANTILE_LABELS = {"0.5", "0.9", "0.99", "0.999"};
+
+    private final String name;
+    private final String help;
+    private final String labelName;
+    private final String labelValue;
+    private final Recorder recorder = new Recorder(2);
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNanos = new LongAdder();
+    private Histogram interval = null;
+
+    Timer(String name, String help, String labelName, String labelValue) {
+        this.name = name;
+        this.help = help;
+        this.labelName = labelName;
+        this.labelValue = labelValue;
+    }
+
+    /**
+     * Records a duration
+     *
+     * @param nanos
+     *         the duration in nanoseconds, use {@link System#nanoTime()} to measure it
+     */
+    public void record(long nanos) {
+        final long safeNanos = Math.max(0L, nanos);
+
+        this.recorder.recordValue(TimeUnit.NANOSECONDS.toMicros(safeNanos));
+        this.count.increment();
+        this.totalNanos.add(safeNanos);
+    }
+
+    public void record(long duration, TimeUnit unit) {
+        record(unit.toNanos(duration));
+    }
+
+    public long getCount() {
+        return this.count.sum();
+    }
+
+    @Override
+    public void collect(MetricsWriter writer) {
+        writer.header(this.name, this.help, "summary");
+        writeSamples(writer);
+    }
+
+    synchronized void writeSamples(MetricsWriter writer) {
+        this.interval = this.recorder.getIntervalHistogram(this.interval);
+        final boolean empty = this.interval.getTotalCount() == 0;
+
+        for (int i = 0; i < QUANTILES.length; i++) {
+            final double value = empty ? Double.NaN :
+                this.interval.getValueAtPercentile(QUANTILES[i] * 100) / 1_000_000.0;
+
+            writer.sample(this.name, this.labelName, this.labelValue, "quantile", QUANTILE_LABELS[i], value);
+        }
+
+        writer.sample(this.name + "_sum", this.labelName, this.labelValue, this.totalNanos.sum() / 1_000_000_000.0);
+        writer.sample(this.name + "_count", this.labelName, this.labelValue, this.count.sum());
+    }
+}
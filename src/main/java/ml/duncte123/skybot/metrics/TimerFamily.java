@@ -0,0 +1,71 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.metrics;
+
+import ml.duncte123.skybot.Author;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * A group of timers that share a name and are told apart by one label, like a timer per command
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class TimerFamily implements Collector {
+
+    private final String name;
+    private final String help;
+    private final String labelName;
+    private final Map<String, Timer> timers = new ConcurrentHashMap<>();
+
+    TimerFamily(String name, String help, String labelName) {
+        this.name = name;
+        this.help = help;
+        this.labelName = labelName;
+    }
+
+    /**
+     * Gets the timer for a label value, the timer is created the first time that the value is used
+     *
+     * @param labelValue
+     *         the value of the label
+     *
+     * @return the timer for the label value
+     */
+    public Timer get(String labelValue) {
+        // Plain get first so looking up an existing timer does not allocate the lambda
+        final Timer timer = this.timers.get(labelValue);
+
+        if (timer != null) {
+            return timer;
+        }
+
+        return this.timers.computeIfAbsent(labelValue, (value) -> new Timer(this.name, this.help, this.labelName, value));
+    }
+
+    @Override
+    public void collect(MetricsWriter writer) {
+        writer.header(this.name, this.help, "summary");
+
+        for (Timer timer : this.timers.values()) {
+            timer.writeSamples(writer);
+        }
+    }
+}
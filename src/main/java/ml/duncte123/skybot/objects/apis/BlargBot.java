@@ -23,6 +23,7 @@ import me.duncte123.botcommons.web.WebUtils;
 import me.duncte123.botcommons.web.WebUtils.EncodingType;
 import me.duncte123.weebJava.helpers.IOHelper;
 import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.metrics.BotMetrics;
 import okhttp3.RequestBody;
 import org.jetbrains.annotations.NotNull;
 import org.json.JSONObject;
@@ -74,7 +75,10 @@ public class BlargBot {
                 .post(RequestBody.create(EncodingType.APPLICATION_JSON.toMediaType(), body.toString()))
                 .addHeader("Authorization", token)
                 .build(),
-            IOHelper::read
+            (r) -> {
+                BotMetrics.recordApiLatency("blargbot", r);
+                return IOHelper.read(r);
+            }
         );
     }
 
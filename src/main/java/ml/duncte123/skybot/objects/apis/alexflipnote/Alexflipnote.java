@@ -25,6 +25,7 @@ import me.duncte123.botcommons.web.WebUtilsErrorUtils;
 import me.duncte123.weebJava.helpers.IOHelper;
 import me.duncte123.weebJava.helpers.QueryBuilder;
 import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.metrics.BotMetrics;
 import okhttp3.Request;
 import org.json.JSONObject;
 
@@ -40,6 +41,7 @@ public class Alexflipnote {
         return WebUtils.ins.prepareRaw(
             makeRequest("colour/random"),
             (r) -> {
+                BotMetrics.recordApiLatency("alexflipnote", r);
                 JSONObject jsonObject = WebUtilsErrorUtils.toJSONObject(r);
                 jsonObject.put("integer", jsonObject.getInt("int"));
                 return gson.fromJson(jsonObject.toString(), FlipnoteColourObj.class);
@@ -51,7 +53,10 @@ public class Alexflipnote {
         QueryBuilder builder = new QueryBuilder().append("text", text);
         return WebUtils.ins.prepareRaw(
             makeRequest("achievement" + builder.build()),
-            IOHelper::read
+            (r) -> {
+                BotMetrics.recordApiLatency("alexflipnote", r);
+                return IOHelper.read(r);
+            }
         );
     }
 
@@ -59,7 +64,10 @@ public class Alexflipnote {
         QueryBuilder builder = new QueryBuilder().append("top", input).append("bottom", correction);
         return WebUtils.ins.prepareRaw(
             makeRequest("didyoumean" + builder.build()),
-            IOHelper::read
+            (r) -> {
+                BotMetrics.recordApiLatency("alexflipnote", r);
+                return IOHelper.read(r);
+            }
         );
     }
 
@@ -43,7 +43,9 @@ import java.io.DataInput;
 import java.io.DataOutput;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Optional;
 import java.util.concurrent.*;
+import java.util.function.BooleanSupplier;
 import java.util.function.Consumer;
 import java.util.function.Function;
 import java.util.regex.Matcher;
@@ -140,19 +142,7 @@ public class SpotifyAudioSourceManager implements AudioSourceManager, HttpConfig
         }
 
         try {
-            final List<AudioTrack> playList = new ArrayList<>();
-
-            final Future<Album> albumFuture = spotifyApi.getAlbum(res.group(res.groupCount())).build().executeAsync();
-            final Album album = albumFuture.get();
-
-            for (TrackSimplified t : album.getTracks().getItems()) {
-                List<SearchResult> results = searchYoutube(album.getArtists()[0].getName() + " " + t.getName(),
-                    config.googl, 1L);
-
-                playList.addAll(doThingWithPlaylist(results));
-            }
-
-            return new BasicAudioPlaylist(album.getName(), playList, playList.get(0), false);
+            return toPlaylist(getAlbumSearch(res));
         } catch (Exception e) {
             //logger.error("Something went wrong!", e);
             throw new FriendlyException(e.getMessage(), Severity.FAULT, e);
@@ -167,39 +157,112 @@ public class SpotifyAudioSourceManager implements AudioSourceManager, HttpConfig
             return null;
         }
 
-        String playListId = res.group(res.groupCount());
-        String userId = res.group(res.groupCount() - 1);
-
         try {
-            final List<AudioTrack> finalPlaylist = new ArrayList<>();
+            return toPlaylist(getPlaylistSearch(res));
+        } catch (IllegalArgumentException ex) {
+            throw new FriendlyException("This playlist could not be loaded, make sure that it's public", Severity.COMMON, ex);
+        } catch (Exception e) {
+            //logger.error("Something went wrong!", e);
+            throw new FriendlyException(e.getMessage(), Severity.FAULT, e);
+        }
 
-            final Future<Playlist> playlistFuture;
+    }
 
-            if (userId != null) {
-                // Disable inspection because old playlists don't have unique ids
-                //noinspection deprecation
-                playlistFuture = spotifyApi.getPlaylist(userId, playListId).build().executeAsync();
-            } else {
-                playlistFuture = spotifyApi.getPlaylist(playListId).build().executeAsync();
-            }
+    /**
+     * Checks if we can load this identifier with {@link #loadPlaylistProgressive(String, Consumer, BooleanSupplier)}
+     *
+     * @param identifier
+     *         the url of the album or playlist
+     *
+     * @return true if the identifier is a spotify album or playlist and spotify is set up
+     */
+    public boolean isPlaylist(String identifier) {
+        return spotifyApi != null &&
+            (SPOTIFY_ALBUM_REGEX.matcher(identifier).matches() || getSpotifyPlaylistFromString(identifier).matches());
+    }
 
-            final Playlist spotifyPlaylist = playlistFuture.get();
+    /**
+     * Loads a spotify album or playlist one track at a time, every track is passed to the consumer as soon as we found
+     * it on youtube so the first track can start playing before the whole playlist is loaded.
+     * <p>
+     * NOTE: this method blocks until the entire playlist is loaded or cancelled
+     *
+     * @param identifier
+     *         the url of the album or playlist
+     * @param consumer
+     *         gets called with every track that we find, in the order of the playlist
+     * @param cancelled
+     *         gets checked before every track, loading stops when this returns true
+     *
+     * @return the name of the playlist
+     */
+    public String loadPlaylistProgressive(String identifier, Consumer<AudioTrack> consumer, BooleanSupplier cancelled) {
+        try {
+            Matcher album = SPOTIFY_ALBUM_REGEX.matcher(identifier);
+            Matcher playlist = getSpotifyPlaylistFromString(identifier);
+            PlaylistSearch search = album.matches() ? getAlbumSearch(album) : getPlaylistSearch(playlist);
 
-            for (PlaylistTrack playlistTrack : spotifyPlaylist.getTracks().getItems()) {
-                List<SearchResult> results = searchYoutube(playlistTrack.getTrack().getArtists()[0].getName()
-                    + " - " + playlistTrack.getTrack().getName(), config.googl, 1L);
+            for (String query : search.queries) {
+                if (cancelled.getAsBoolean()) {
+                    break;
+                }
 
-                finalPlaylist.addAll(doThingWithPlaylist(results));
+                searchTrack(query).ifPresent(consumer);
             }
 
-            return new BasicAudioPlaylist(spotifyPlaylist.getName(), finalPlaylist, finalPlaylist.get(0), false);
+            return search.name;
         } catch (IllegalArgumentException ex) {
             throw new FriendlyException("This playlist could not be loaded, make sure that it's public", Severity.COMMON, ex);
         } catch (Exception e) {
-            //logger.error("Something went wrong!", e);
             throw new FriendlyException(e.getMessage(), Severity.FAULT, e);
         }
+    }
+
+    private PlaylistSearch getAlbumSearch(Matcher res) throws Exception {
+        final Future<Album> albumFuture = spotifyApi.getAlbum(res.group(res.groupCount())).build().executeAsync();
+        final Album album = albumFuture.get();
+        final List<String> queries = new ArrayList<>();
+
+        for (TrackSimplified t : album.getTracks().getItems()) {
+            queries.add(album.getArtists()[0].getName() + " " + t.getName());
+        }
 
+        return new PlaylistSearch(album.getName(), queries);
+    }
+
+    private PlaylistSearch getPlaylistSearch(Matcher res) throws Exception {
+        String playListId = res.group(res.groupCount());
+        String userId = res.group(res.groupCount() - 1);
+
+        final Future<Playlist> playlistFuture;
+
+        if (userId != null) {
+            // Disable inspection because old playlists don't have unique ids
+            //noinspection deprecation
+            playlistFuture = spotifyApi.getPlaylist(userId, playListId).build().executeAsync();
+        } else {
+            playlistFuture = spotifyApi.getPlaylist(playListId).build().executeAsync();
+        }
+
+        final Playlist spotifyPlaylist = playlistFuture.get();
+        final List<String> queries = new ArrayList<>();
+
+        for (PlaylistTrack playlistTrack : spotifyPlaylist.getTracks().getItems()) {
+            queries.add(playlistTrack.getTrack().getArtists()[0].getName()
+                + " - " + playlistTrack.getTrack().getName());
+        }
+
+        return new PlaylistSearch(spotifyPlaylist.getName(), queries);
+    }
+
+    private AudioItem toPlaylist(PlaylistSearch search) throws Exception {
+        final List<AudioTrack> playList = new ArrayList<>();
+
+        for (String query : search.queries) {
+            searchTrack(query).ifPresent(playList::add);
+        }
+
+        return new BasicAudioPlaylist(search.name, playList, playList.get(0), false);
     }
 
     private AudioItem getSpotifyTrack(AudioReference reference) {
@@ -290,17 +353,19 @@ public class SpotifyAudioSourceManager implements AudioSourceManager, HttpConfig
         return SPOTIFY_SECOND_PLAYLIST_REGEX.matcher(input);
     }
 
-    private List<AudioTrack> doThingWithPlaylist(List<SearchResult> results) throws Exception {
-        List<AudioTrack> playList = new ArrayList<>();
+    private Optional<AudioTrack> searchTrack(String query) throws Exception {
+        List<SearchResult> results = searchYoutube(query, config.googl, 1L);
+
         if (!results.isEmpty()) {
             SearchResult video = results.get(0);
             ResourceId rId = video.getId();
             if (rId.getKind().equals("youtube#video")) {
                 Video v = getVideoById(video.getId().getVideoId(), config.googl);
-                playList.add(audioTrackFromVideo(v));
+                return Optional.of(audioTrackFromVideo(v));
             }
         }
-        return playList;
+
+        return Optional.empty();
     }
 
     private AudioTrack audioTrackFromVideo(Video v) {
@@ -328,4 +393,14 @@ public class SpotifyAudioSourceManager implements AudioSourceManager, HttpConfig
         }
         return duration;
     }
+
+    private static class PlaylistSearch {
+        private final String name;
+        private final List<String> queries;
+
+        private PlaylistSearch(String name, List<String> queries) {
+            this.name = name;
+            this.queries = queries;
+        }
+    }
 }
@@ -18,16 +18,12 @@
 
 package ml.duncte123.skybot.objects.command;
 
-import gnu.trove.map.TLongLongMap;
-import gnu.trove.map.hash.TLongLongHashMap;
-import gnu.trove.set.TLongSet;
-import gnu.trove.set.hash.TLongHashSet;
 import me.duncte123.botcommons.messaging.EmbedUtils;
 import ml.duncte123.skybot.Author;
 import ml.duncte123.skybot.Authors;
 import ml.duncte123.skybot.Settings;
+import ml.duncte123.skybot.utils.PatronEntitlements;
 import net.dv8tion.jda.core.entities.Guild;
-import net.dv8tion.jda.core.entities.Member;
 import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.entities.User;
 import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
@@ -37,6 +33,7 @@ import org.slf4j.LoggerFactory;
 
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
+import java.util.regex.Pattern;
 
 import static me.duncte123.botcommons.messaging.MessageUtils.sendEmbed;
 
@@ -48,14 +45,11 @@ import static me.duncte123.botcommons.messaging.MessageUtils.sendEmbed;
 })
 public abstract class Command implements ICommand {
 
-    public static final TLongSet patrons = new TLongHashSet();
-    public static final TLongSet guildPatrons = new TLongHashSet();
-    // Key: user_id Value: guild_id
-    public static final TLongLongMap oneGuildPatrons = new TLongLongHashMap();
     public static final long supportGuildId = 191245668617158656L;
     public static final long guildPatronsRole = 470581447196147733L;
     public static final long patronsRole = 402497345721466892L;
     public static final long oneGuildPatronsRole = 490859976475148298L;
+    public static final PatronEntitlements patronEntitlements = new PatronEntitlements();
     protected static final Logger logger = LoggerFactory.getLogger(Command.class);
     // The size should match the usage for stability but not more than 4.
     protected static final ScheduledExecutorService commandService = Executors.newScheduledThreadPool(10,
@@ -64,6 +58,11 @@ public abstract class Command implements ICommand {
      * This holds the prefix for us
      */
     protected static final String PREFIX = Settings.PREFIX;
+    /**
+     * These are used to turn the help into html for the website
+     */
+    private static final Pattern CODE_PATTERN = Pattern.compile("`(.*)`");
+    private static final Pattern BOLD_PATTERN = Pattern.compile("\\*\\*(.*)\\*\\*");
 
     /**
      * This holds the category
@@ -73,7 +72,11 @@ public abstract class Command implements ICommand {
      * This tells the bot to display the aliases of the command in the help command
      */
     protected boolean displayAliasesInHelp = false;
-    private String helpParsed = null;
+    /**
+     * How many tokens this command takes from the rate limit, commands that call slow apis should cost more
+     */
+    protected int rateLimitCost = 1;
+    private volatile String helpParsed = null;
 
     /**
      * Returns if the bot should take up the aliases in the help command
@@ -97,18 +100,21 @@ public abstract class Command implements ICommand {
      * @return true if the user is a patron
      */
     protected boolean isPatron(@NotNull User u, TextChannel tc) {
-        if (isDev(u) || patrons.contains(u.getIdLong())) {
+        if (isDev(u) || patronEntitlements.isPatron(u)) {
             return true;
         }
 
+        if (tc == null) {
+            return false;
+        }
+
         Guild supportGuild = u.getJDA().asBot().getShardManager().getGuildById(supportGuildId);
 
         if (supportGuild == null) {
             return false;
         }
 
-        Member m = supportGuild.getMember(u);
-        if (m == null) {
+        if (supportGuild.getMember(u) == null) {
             sendEmbed(tc, EmbedUtils.embedMessage("This command is a patron only command and is locked for you because you " +
                 "are not one of our patrons.\n" +
                 "To become a patron and have access to this command please [click this link](https://www.patreon.com/DuncteBot).\n" +
@@ -116,16 +122,11 @@ public abstract class Command implements ICommand {
             return false;
         }
 
-        if (!m.getRoles().contains(supportGuild.getRoleById(patronsRole))) {
-            sendEmbed(tc, EmbedUtils.embedMessage("This command is a patron only command and is locked for you because you " +
-                "are not one of our patrons.\n" +
-                "To become a patron and have access to this command please [click this link](https://www.patreon.com/DuncteBot)."));
-            return false;
-        }
+        sendEmbed(tc, EmbedUtils.embedMessage("This command is a patron only command and is locked for you because you " +
+            "are not one of our patrons.\n" +
+            "To become a patron and have access to this command please [click this link](https://www.patreon.com/DuncteBot)."));
 
-        patrons.add(u.getIdLong());
-
-        return true;
+        return false;
     }
 
     private boolean isPatron(@NotNull User u, TextChannel tc, boolean reply) {
@@ -134,30 +135,7 @@ public abstract class Command implements ICommand {
     }
 
     private boolean isGuildPatron(@NotNull User u, @NotNull Guild g) {
-
-        if (guildPatrons.contains(g.getIdLong()) || oneGuildPatrons.containsValue(g.getIdLong())) {
-            return true;
-        }
-
-        Guild supportGuild = u.getJDA().asBot().getShardManager().getGuildById(supportGuildId);
-
-        if (supportGuild == null) {
-            return false;
-        }
-
-        Member m = supportGuild.getMember(u);
-
-        if (m == null) {
-            return false;
-        }
-
-        if (!m.getRoles().contains(supportGuild.getRoleById(guildPatronsRole))) {
-            return false;
-        }
-
-        guildPatrons.add(g.getIdLong());
-
-        return true;
+        return patronEntitlements.isGuildPatron(u, g);
     }
 
     protected boolean isUserOrGuildPatron(@NotNull GuildMessageReceivedEvent event, boolean reply) {
@@ -183,6 +161,11 @@ public abstract class Command implements ICommand {
         return this.category;
     }
 
+    @Override
+    public int getRateLimitCost() {
+        return this.rateLimitCost;
+    }
+
     /**
      * This method is internally used to properly display the text on the webpages
      *
@@ -192,11 +175,10 @@ public abstract class Command implements ICommand {
     public String helpParsed() {
         if (helpParsed == null) {
             String s = help()
-                .replaceAll("<", "&lt;")
-                .replaceAll(">", "&gt;")
-                .replaceAll("`(.*)`", "<code>$1</code>")
-                .replaceAll("\\n", "<br />")
-                .replaceAll("\\*\\*(.*)\\*\\*", "<strong>$1</strong>");
+                .replace("<", "&lt;")
+                .replace(">", "&gt;");
+            s = CODE_PATTERN.matcher(s).replaceAll("<code>$1</code>").replace("\n", "<br />");
+            s = BOLD_PATTERN.matcher(s).replaceAll("<strong>$1</strong>");
             if (getAliases().length > 0 && shouldDisplayAliasesInHelp()) {
                 s += "<br />Aliases: " + PREFIX + String.join(", " + PREFIX, getAliases());
             }
@@ -20,6 +20,7 @@ package ml.duncte123.skybot.objects.command;
 
 import me.duncte123.weebJava.models.WeebApi;
 import ml.duncte123.skybot.*;
+import ml.duncte123.skybot.audio.VoiceConnectionCounter;
 import ml.duncte123.skybot.connections.database.DBManager;
 import ml.duncte123.skybot.entities.jda.DunctebotGuild;
 import ml.duncte123.skybot.objects.apis.BlargBot;
@@ -105,6 +106,10 @@ public class CommandContext {
         return this.variables.getAudioUtils();
     }
 
+    public VoiceConnectionCounter getVoiceCounter() {
+        return this.variables.getVoiceCounter();
+    }
+
     // --------------- Normal methods --------------- //
 
     public String getInvoke() {
@@ -40,6 +40,13 @@ public interface ICommand {
 
     CommandCategory getCategory();
 
+    /**
+     * @return how many tokens this command takes from the rate limit of the user and guild
+     */
+    default int getRateLimitCost() {
+        return 1;
+    }
+
     default boolean isCustom() {
         return false;
     }
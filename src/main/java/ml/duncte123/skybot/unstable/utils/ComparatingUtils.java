@@ -19,16 +19,14 @@
 package ml.duncte123.skybot.unstable.utils;
 
 import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.utils.ErrorReporter;
 
 @Author(nickname = "Sanduhr32", author = "Maurice R S")
 public class ComparatingUtils {
-    // Needs to be fixed
+    /**
+     * Hands the error to the {@link ErrorReporter}, this does not block the calling thread
+     */
     public static void execCheck(Throwable t) {
-        t.printStackTrace();
-        Throwable cause = t.getCause();
-        while (cause != null) {
-            cause.printStackTrace();
-            cause = cause.getCause();
-        }
+        ErrorReporter.ins.report(t);
     }
 }
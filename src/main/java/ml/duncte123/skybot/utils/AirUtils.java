@@ -177,11 +177,26 @@ public class AirUtils {
                 mng.player.stopTrack();
             }
         }
+        audioUtils.shutdown();
         database.getService().shutdown();
     }
 
+    /**
+     * This gets the channel from the channel cache by id
+     *
+     * @param channel
+     *         the channel id
+     * @param g
+     *         the guild to search in
+     *
+     * @return the channel or null if it does not exist anymore
+     */
     public static TextChannel getLogChannel(long channel, Guild g) {
-        return getLogChannel(String.valueOf(channel), g);
+        if (channel <= 0) {
+            return null;
+        }
+
+        return g.getTextChannelById(channel);
     }
 
     /**
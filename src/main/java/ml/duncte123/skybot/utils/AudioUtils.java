@@ -32,28 +32,43 @@ import com.sedmelluq.discord.lavaplayer.source.youtube.YoutubeAudioSourceManager
 import com.sedmelluq.discord.lavaplayer.tools.FriendlyException;
 import com.sedmelluq.discord.lavaplayer.track.AudioPlaylist;
 import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import com.sedmelluq.discord.lavaplayer.track.playback.NonAllocatingAudioFrameBuffer;
+import fredboat.audio.player.LavalinkManager;
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
 import gnu.trove.map.TLongObjectMap;
 import gnu.trove.map.hash.TLongObjectHashMap;
 import ml.duncte123.skybot.Author;
 import ml.duncte123.skybot.SinceSkybot;
+import ml.duncte123.skybot.SkyBot;
 import ml.duncte123.skybot.Variables;
 import ml.duncte123.skybot.audio.GuildMusicManager;
-import ml.duncte123.skybot.commands.music.RadioCommand;
-import ml.duncte123.skybot.objects.RadioStream;
 import ml.duncte123.skybot.objects.TrackUserData;
 import ml.duncte123.skybot.objects.audiomanagers.clypit.ClypitAudioSourceManager;
 import ml.duncte123.skybot.objects.audiomanagers.speech.SpeechAudioSourceManager;
 import ml.duncte123.skybot.objects.audiomanagers.spotify.SpotifyAudioSourceManager;
 import ml.duncte123.skybot.objects.command.CommandContext;
 import ml.duncte123.skybot.objects.config.DunctebotConfig;
+import net.dv8tion.jda.bot.sharding.ShardManager;
 import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Message;
 import net.dv8tion.jda.core.entities.TextChannel;
 import net.dv8tion.jda.core.entities.User;
 import org.apache.commons.lang3.exception.ExceptionUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.ArrayList;
+import java.util.Iterator;
 import java.util.List;
-import java.util.Optional;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.logging.Level;
 
 import static me.duncte123.botcommons.messaging.EmbedUtils.embedField;
@@ -62,6 +77,7 @@ import static me.duncte123.botcommons.messaging.MessageUtils.sendEmbed;
 @SinceSkybot(version = "3.5.1")
 @Author(nickname = "duncte123", author = "Duncan Sterken")
 public class AudioUtils {
+    private static final Logger logger = LoggerFactory.getLogger(AudioUtils.class);
     /**
      * This is the title that you see in the embeds from the player
      */
@@ -74,13 +90,27 @@ public class AudioUtils {
      * This will hold the manager for the audio player
      */
     private static AudioPlayerManager playerManager;
+    /**
+     * We keep this one around because spotify playlists are loaded outside of lavaplayer
+     */
+    private static SpotifyAudioSourceManager spotifyAudioSourceManager;
     /**
      * This is the default volume that the player will play at
      * I've set it to 100 to save some resources
      */
     private static final int DEFAULT_VOLUME = 100; //(0-150, where 100 is the default max volume)
+    /**
+     * How long a music manager can sit around without a connection or a queue before we throw it away
+     */
+    private static final long IDLE_TIMEOUT = TimeUnit.MINUTES.toMillis(10);
+    /**
+     * The loading message is edited at most once in this time so we don't hit the rate limits
+     */
+    private static final long PROGRESS_INTERVAL = TimeUnit.SECONDS.toMillis(5);
     private final DunctebotConfig.Apis config;
     private final Variables variables;
+    private final ExecutorService loadService = Executors.newFixedThreadPool(2,
+        (r) -> new Thread(r, "Playlist-Load-Thread"));
 
     /**
      * This will set everything up and get the player ready
@@ -97,11 +127,15 @@ public class AudioUtils {
         if (playerManager == null) {
             playerManager = new DefaultAudioPlayerManager();
             //playerManager.enableGcMonitoring();
+            // Frames are kept in one buffer per player, the send handler copies them out with a mutable frame
+            playerManager.getConfiguration().setFrameBufferFactory(NonAllocatingAudioFrameBuffer::new);
 
             // Disable cookies for youtube
             YoutubeAudioSourceManager youtubeAudioSourceManager = new YoutubeAudioSourceManager(true);
 
-            playerManager.registerSourceManager(new SpotifyAudioSourceManager(youtubeAudioSourceManager, config));
+            spotifyAudioSourceManager = new SpotifyAudioSourceManager(youtubeAudioSourceManager, config);
+
+            playerManager.registerSourceManager(spotifyAudioSourceManager);
             playerManager.registerSourceManager(new ClypitAudioSourceManager());
             playerManager.registerSourceManager(new SpeechAudioSourceManager("en-AU"));
 
@@ -122,6 +156,13 @@ public class AudioUtils {
         return playerManager;
     }
 
+    /**
+     * Stops the playlists that are still loading, this is called when the bot shuts down
+     */
+    public void shutdown() {
+        loadService.shutdownNow();
+    }
+
     /**
      * Loads a track and plays it if the bot isn't playing
      *
@@ -145,6 +186,63 @@ public class AudioUtils {
                             final boolean addPlayList,
                             final CommandContext ctx,
                             final boolean announce) {
+        if (!mng.tryStartLoad()) {
+            if (announce) {
+                sendEmbed(channel, embedField(embedTitle, "I'm still loading other tracks for this server, please wait for them to finish."));
+            }
+
+            return;
+        }
+
+        load(mng, channel, requester, trackUrlRaw, addPlayList, ctx, announce, mng.getLoadGeneration(), null);
+    }
+
+    /**
+     * Loads a list of tracks one after another so they end up in the queue in the same order
+     *
+     * @param mng
+     *         The {@link GuildMusicManager MusicManager} for the guild
+     * @param channel
+     *         The {@link TextChannel channel} to report the progress in
+     * @param requester
+     *         The user that requested the tracks
+     * @param urls
+     *         The urls of the tracks to load
+     */
+    public void loadAll(final GuildMusicManager mng, final TextChannel channel, User requester, final List<String> urls,
+                        final CommandContext ctx) {
+        if (!mng.tryStartLoad()) {
+            sendEmbed(channel, embedField(embedTitle, "I'm still loading other tracks for this server, please wait for them to finish."));
+            return;
+        }
+
+        final LoadProgress progress = new LoadProgress(channel, urls.size(),
+            "Loading **" + urls.size() + "** tracks, they will be added to the queue as soon as they are found.");
+
+        loadNext(mng, channel, requester, urls.iterator(), ctx, mng.getLoadGeneration(), progress);
+    }
+
+    private void loadNext(final GuildMusicManager mng, final TextChannel channel, User requester, final Iterator<String> urls,
+                          final CommandContext ctx, final int generation, final LoadProgress progress) {
+        if (mng.isLoadCancelled(generation)) {
+            return;
+        }
+
+        if (!urls.hasNext()) {
+            mng.finishLoad(generation);
+            sendEmbed(channel, embedField(embedTitle, "Added " + progress.getLoaded() + " requested tracks."));
+            return;
+        }
+
+        load(mng, channel, requester, urls.next(), false, ctx, false, generation, () -> {
+            progress.trackLoaded();
+            loadNext(mng, channel, requester, urls, ctx, generation, progress);
+        });
+    }
+
+    private void load(final GuildMusicManager mng, final TextChannel channel, User requester, final String trackUrlRaw,
+                      final boolean addPlayList, final CommandContext ctx, final boolean announce, final int generation,
+                      final Runnable next) {
         final String trackUrl;
 
         //Strip <>'s that prevent discord from embedding link resources
@@ -154,107 +252,268 @@ public class AudioUtils {
             trackUrl = trackUrlRaw;
         }
 
-        getPlayerManager().loadItemOrdered(mng, trackUrl, new AudioLoadResultHandler() {
-            @Override
-            public void trackLoaded(AudioTrack track) {
-                String title = track.getInfo().title;
-                if (track.getInfo().isStream) {
-                    Optional<RadioStream> stream = ((RadioCommand) ctx.getCommandManager().getCommand("radio"))
-                        .getRadioStreams().stream().filter(s -> s.getUrl().equals(track.getInfo().uri)).findFirst();
-                    if (stream.isPresent())
-                        title = stream.get().getName();
-                }
+        if (addPlayList && spotifyAudioSourceManager.isPlaylist(trackUrl)) {
+            loadSpotifyPlaylist(mng, channel, requester, trackUrl, announce, generation, next);
+            return;
+        }
 
-                track.setUserData(new TrackUserData(requester.getIdLong()));
+        final AtomicReference<Future<Void>> future = new AtomicReference<>();
+        final AtomicBoolean handled = new AtomicBoolean();
+        final AudioLoadResultHandler handler = new ResultHandler(mng, channel, requester, trackUrl, addPlayList, ctx, announce);
 
-                mng.scheduler.queue(track);
+        future.set(getPlayerManager().loadItemOrdered(mng, trackUrl, new AudioLoadResultHandler() {
+            @Override
+            public void trackLoaded(AudioTrack track) {
+                handle(() -> handler.trackLoaded(track));
+            }
 
-                if (announce) {
-                    String msg = "Adding to queue: " + title;
-                    if (mng.player.getPlayingTrack() == null) {
-                        msg += "\nand the Player has started playing;";
-                    }
+            @Override
+            public void playlistLoaded(AudioPlaylist playlist) {
+                handle(() -> handler.playlistLoaded(playlist));
+            }
 
-                    sendEmbed(channel, embedField(embedTitle, msg));
-                }
+            @Override
+            public void noMatches() {
+                handle(handler::noMatches);
             }
 
             @Override
-            public void playlistLoaded(AudioPlaylist playlist) {
-                AudioTrack firstTrack = playlist.getSelectedTrack();
-                List<AudioTrack> tracks = new ArrayList<>();
+            public void loadFailed(FriendlyException exception) {
+                handle(() -> handler.loadFailed(exception));
+            }
 
-                for (final AudioTrack track : playlist.getTracks()) {
-                    track.setUserData(new TrackUserData(requester.getIdLong()));
-                    tracks.add(track);
+            private void handle(Runnable result) {
+                handled.set(true);
+
+                if (future.get() != null) {
+                    mng.removePendingLoad(future.get());
                 }
 
-                if (tracks.isEmpty()) {
-                    sendEmbed(channel, embedField(embedTitle, "Error: This playlist is empty."));
+                // The loads got cancelled while this one was still running
+                if (mng.isLoadCancelled(generation)) {
                     return;
+                }
 
-                } else if (firstTrack == null) {
-                    firstTrack = playlist.getTracks().get(0);
+                try {
+                    result.run();
+                } finally {
+                    if (next == null) {
+                        mng.finishLoad(generation);
+                    } else {
+                        next.run();
+                    }
                 }
+            }
+        }));
 
-                if (addPlayList)
-                    tracks.forEach(mng.scheduler::queue);
-                else
-                    mng.scheduler.queue(firstTrack);
+        // The load is async, so the handler can run before the future is set. Whichever side comes last removes it
+        mng.addPendingLoad(future.get());
 
-                if (announce) {
-                    String msg;
+        if (handled.get()) {
+            mng.removePendingLoad(future.get());
+        }
+    }
 
-                    if (addPlayList) {
-                        msg = "Adding **" + playlist.getTracks().size() + "** tracks to queue from playlist: " + playlist.getName();
-                        if (mng.player.getPlayingTrack() == null) {
-                            msg += "\nand the Player has started playing;";
-                        }
-                    } else {
-                        String prefix = GuildSettingsUtils.getGuild(channel.getGuild(), ctx.getVariables()).getCustomPrefix();
-                        msg = "**Hint:** Use `" + prefix + "pplay <playlist link>` to add a playlist." +
-                            "\n\nAdding to queue " + firstTrack.getInfo().title + " (first track of playlist " + playlist.getName() + ")";
-                        if (mng.player.getPlayingTrack() == null) {
-                            msg += "\nand the Player has started playing;";
-                        }
+    /**
+     * Spotify playlists are resolved track by track, this plays the first track as soon as we find it and adds the
+     * rest of them in order while they come in
+     */
+    private void loadSpotifyPlaylist(final GuildMusicManager mng, final TextChannel channel, User requester,
+                                     final String trackUrl, final boolean announce, final int generation,
+                                     final Runnable next) {
+        final LoadProgress progress = announce ? new LoadProgress(channel, -1,
+            "Loading playlist, the first track will start playing as soon as it has been found.") : null;
+        final AtomicReference<FutureTask<Void>> task = new AtomicReference<>();
+
+        task.set(new FutureTask<>(() -> {
+            final AtomicInteger added = new AtomicInteger();
+
+            try {
+                final String name = spotifyAudioSourceManager.loadPlaylistProgressive(trackUrl, (track) -> {
+                    track.setUserData(new TrackUserData(requester.getIdLong()));
+                    mng.scheduler.queue(track);
+                    added.incrementAndGet();
+
+                    if (progress != null) {
+                        progress.trackLoaded();
                     }
-                    sendEmbed(channel, embedField(embedTitle, msg));
+                }, () -> mng.isLoadCancelled(generation) || Thread.currentThread().isInterrupted());
+
+                if (announce && !mng.isLoadCancelled(generation)) {
+                    sendEmbed(channel, embedField(embedTitle, "Added **" + added.get() + "** tracks to queue from playlist: " + name));
+                }
+            } catch (FriendlyException e) {
+                if (announce && !mng.isLoadCancelled(generation)) {
+                    sendEmbed(channel, embedField(embedTitle, "Could not load playlist: " + e.getMessage()));
+                }
+            } finally {
+                mng.removePendingLoad(task.get());
+
+                // Just like a normal load we hand over to the next load of a list instead of finishing
+                if (next == null) {
+                    mng.finishLoad(generation);
+                } else if (!mng.isLoadCancelled(generation)) {
+                    next.run();
                 }
             }
+        }, null));
 
+        // Added before the task runs so the finally above always removes it again
+        mng.addPendingLoad(task.get());
+        loadService.execute(task.get());
+    }
 
-            @Override
-            public void noMatches() {
-                if (announce)
-                    sendEmbed(channel, embedField(embedTitle, "Nothing found by _" + trackUrl + "_"));
+    /**
+     * Sends the loading message and edits it while the tracks come in, at most once every {@link #PROGRESS_INTERVAL}
+     */
+    private class LoadProgress {
+        private final int total;
+        private final AtomicReference<Message> message = new AtomicReference<>();
+        private final AtomicInteger loaded = new AtomicInteger();
+        private volatile long lastUpdate = System.currentTimeMillis();
+
+        private LoadProgress(TextChannel channel, int total, String text) {
+            this.total = total;
+
+            sendEmbed(channel, embedField(embedTitle, text), message::set);
+        }
+
+        private void trackLoaded() {
+            final int count = loaded.incrementAndGet();
+            final long now = System.currentTimeMillis();
+            final Message msg = message.get();
+
+            if (msg == null || now - lastUpdate < PROGRESS_INTERVAL) {
+                return;
             }
 
-            @Override
-            public void loadFailed(FriendlyException exception) {
-                if (!announce) {
-                    return;
-                }
+            lastUpdate = now;
 
-                if (exception.getMessage().endsWith("Playback on other websites has been disabled by the video owner.")) {
-                    sendEmbed(channel, embedField(embedTitle, "Could not play: " + trackUrl
-                        + "\nExternal playback of this video was blocked by YouTube."));
-                    return;
+            final String text = total > 0 ?
+                "Loading, **" + count + "** of **" + total + "** tracks done." :
+                "Loading, **" + count + "** tracks added so far.";
+
+            msg.editMessage(embedField(embedTitle, text).build()).queue(null, (t) -> {});
+        }
+
+        private int getLoaded() {
+            return loaded.get();
+        }
+    }
+
+    private class ResultHandler implements AudioLoadResultHandler {
+        private final GuildMusicManager mng;
+        private final TextChannel channel;
+        private final User requester;
+        private final String trackUrl;
+        private final boolean addPlayList;
+        private final CommandContext ctx;
+        private final boolean announce;
+
+        private ResultHandler(GuildMusicManager mng, TextChannel channel, User requester, String trackUrl,
+                              boolean addPlayList, CommandContext ctx, boolean announce) {
+            this.mng = mng;
+            this.channel = channel;
+            this.requester = requester;
+            this.trackUrl = trackUrl;
+            this.addPlayList = addPlayList;
+            this.ctx = ctx;
+            this.announce = announce;
+        }
+
+        @Override
+        public void trackLoaded(AudioTrack track) {
+            String title = variables.getRadioStreams().getDisplayName(track.getInfo());
+
+            track.setUserData(new TrackUserData(requester.getIdLong()));
+
+            mng.scheduler.queue(track);
+
+            if (announce) {
+                String msg = "Adding to queue: " + title;
+                if (mng.player.getPlayingTrack() == null) {
+                    msg += "\nand the Player has started playing;";
                 }
 
-                Throwable root = ExceptionUtils.getRootCause(exception);
+                sendEmbed(channel, embedField(embedTitle, msg));
+            }
+        }
 
-                if (root == null) {
-                    // It can return null so shush
-                    // noinspection UnusedAssignment
-                    root = exception;
-                    return;
+        @Override
+        public void playlistLoaded(AudioPlaylist playlist) {
+            AudioTrack firstTrack = playlist.getSelectedTrack();
+            List<AudioTrack> tracks = new ArrayList<>();
+
+            for (final AudioTrack track : playlist.getTracks()) {
+                track.setUserData(new TrackUserData(requester.getIdLong()));
+                tracks.add(track);
+            }
+
+            if (tracks.isEmpty()) {
+                sendEmbed(channel, embedField(embedTitle, "Error: This playlist is empty."));
+                return;
+
+            } else if (firstTrack == null) {
+                firstTrack = playlist.getTracks().get(0);
+            }
+
+            if (addPlayList)
+                tracks.forEach(mng.scheduler::queue);
+            else
+                mng.scheduler.queue(firstTrack);
+
+            if (announce) {
+                String msg;
+
+                if (addPlayList) {
+                    msg = "Adding **" + playlist.getTracks().size() + "** tracks to queue from playlist: " + playlist.getName();
+                    if (mng.player.getPlayingTrack() == null) {
+                        msg += "\nand the Player has started playing;";
+                    }
+                } else {
+                    String prefix = GuildSettingsUtils.getGuild(channel.getGuild(), ctx.getVariables()).getCustomPrefix();
+                    msg = "**Hint:** Use `" + prefix + "pplay <playlist link>` to add a playlist." +
+                        "\n\nAdding to queue " + firstTrack.getInfo().title + " (first track of playlist " + playlist.getName() + ")";
+                    if (mng.player.getPlayingTrack() == null) {
+                        msg += "\nand the Player has started playing;";
+                    }
                 }
+                sendEmbed(channel, embedField(embedTitle, msg));
+            }
+        }
 
-                sendEmbed(channel, embedField(embedTitle, "Could not play: " + root.getMessage()
-                    + "\nIf this happens often try another link or join our [support guild](https://discord.gg/NKM9Xtk) for more!"));
 
+        @Override
+        public void noMatches() {
+            if (announce)
+                sendEmbed(channel, embedField(embedTitle, "Nothing found by _" + trackUrl + "_"));
+        }
+
+        @Override
+        public void loadFailed(FriendlyException exception) {
+            if (!announce) {
+                return;
             }
-        });
+
+            if (exception.getMessage().endsWith("Playback on other websites has been disabled by the video owner.")) {
+                sendEmbed(channel, embedField(embedTitle, "Could not play: " + trackUrl
+                    + "\nExternal playback of this video was blocked by YouTube."));
+                return;
+            }
+
+            Throwable root = ExceptionUtils.getRootCause(exception);
+
+            if (root == null) {
+                // It can return null so shush
+                // noinspection UnusedAssignment
+                root = exception;
+                return;
+            }
+
+            sendEmbed(channel, embedField(embedTitle, "Could not play: " + root.getMessage()
+                + "\nIf this happens often try another link or join our [support guild](https://discord.gg/NKM9Xtk) for more!"));
+
+        }
     }
 
     /**
@@ -274,16 +533,34 @@ public class AudioUtils {
     public GuildMusicManager getMusicManager(Guild guild, boolean createIfNull) {
         long guildId = guild.getIdLong();
         GuildMusicManager mng = musicManagers.get(guildId);
-        if (mng == null) {
-            synchronized (musicManagers) {
-                mng = musicManagers.get(guildId);
-                if (mng == null && createIfNull) {
-                    mng = new GuildMusicManager(guild, variables);
-                    mng.player.setVolume(DEFAULT_VOLUME);
-                    musicManagers.put(guildId, mng);
-                }
+
+        if (mng != null) {
+            if (!createIfNull) {
+                return mng;
+            }
+
+            mng.touch();
+
+            // The manager could have been evicted before we touched it, then we make a new one below
+            if (musicManagers.get(guildId) == mng) {
+                return mng;
             }
         }
+
+        // Read-only lookups should never allocate a player
+        if (!createIfNull) {
+            return null;
+        }
+
+        synchronized (musicManagers) {
+            mng = musicManagers.get(guildId);
+            if (mng == null) {
+                mng = new GuildMusicManager(guild, variables);
+                mng.player.setVolume(DEFAULT_VOLUME);
+                musicManagers.put(guildId, mng);
+            }
+        }
+
         return mng;
     }
 
@@ -291,6 +568,88 @@ public class AudioUtils {
         return musicManagers;
     }
 
+    /**
+     * Removes the music manager for a guild and releases the player that it holds
+     *
+     * @param guildId
+     *         the id of the guild to remove the manager for
+     */
+    public void removeMusicManager(long guildId) {
+        GuildMusicManager mng;
+
+        synchronized (musicManagers) {
+            mng = musicManagers.remove(guildId);
+        }
+
+        if (mng != null) {
+            mng.destroy();
+        }
+    }
+
+    /**
+     * Throws away all the music managers that are not connected, have nothing queued and have not been used for
+     * {@link #IDLE_TIMEOUT} milliseconds
+     */
+    public void removeIdleManagers() {
+        final ShardManager shardManager = SkyBot.getInstance().getShardManager();
+        final long idleSince = System.currentTimeMillis() - IDLE_TIMEOUT;
+        final TLongList idle = new TLongArrayList();
+
+        synchronized (musicManagers) {
+            musicManagers.forEachEntry((guildId, mng) -> {
+                if (mng.getLastActive() > idleSince || !mng.isIdle()) {
+                    return true;
+                }
+
+                final Guild guild = shardManager.getGuildById(guildId);
+
+                // Guilds that we are no longer in can always be removed, asking lavalink would create a link
+                if (guild == null || !guild.getSelfMember().getVoiceState().inVoiceChannel()) {
+                    idle.add(guildId);
+                }
+
+                return true;
+            });
+        }
+
+        final int[] removed = {0};
+
+        idle.forEach((guildId) -> {
+            if (removeIfIdle(guildId, idleSince)) {
+                removed[0]++;
+            }
+
+            return true;
+        });
+
+        if (removed[0] > 0) {
+            logger.debug("Removed {} idle music managers, {} left", removed[0], musicManagers.size());
+        }
+    }
+
+    /**
+     * Removes the manager of a guild if it is still idle, it can be used again between finding it and removing it
+     *
+     * @return true if the manager was removed
+     */
+    private boolean removeIfIdle(long guildId, long idleSince) {
+        final GuildMusicManager mng;
+
+        synchronized (musicManagers) {
+            mng = musicManagers.get(guildId);
+
+            if (mng == null || mng.getLastActive() > idleSince || !mng.isIdle()) {
+                return false;
+            }
+
+            musicManagers.remove(guildId);
+        }
+
+        mng.destroy();
+
+        return true;
+    }
+
     /**
      * This will return the formatted timestamp for the current playing track
      *
@@ -0,0 +1,211 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.utils;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.CommandManager;
+import ml.duncte123.skybot.Settings;
+import ml.duncte123.skybot.objects.command.CommandCategory;
+import net.dv8tion.jda.core.entities.TextChannel;
+import org.jetbrains.annotations.NotNull;
+import org.jetbrains.annotations.Nullable;
+
+import java.util.Collections;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.Set;
+
+/**
+ * Compiles the command rules from channel topics and caches them per channel
+ * <p>
+ * Topic format: {@code -commands} blocks everything, {@code -name} blocks a command or category,
+ * {@code -!category} only allows that category and {@code -!command} blocks that command like {@code -command} does.
+ * Anything after the first {@code -!} is ignored
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class ChannelTopicRules {
+
+    private final TLongObjectMap<Rules> cache = new TLongObjectHashMap<>();
+    private final CommandManager commandManager;
+
+    public ChannelTopicRules(CommandManager commandManager) {
+        this.commandManager = commandManager;
+    }
+
+    /**
+     * Checks if a message is allowed to run a command in a channel
+     *
+     * @param channel
+     *         the channel that the message was sent in
+     * @param rw
+     *         the raw content of the message
+     * @param customPrefix
+     *         the custom prefix of the guild
+     *
+     * @return true if the command can run
+     */
+    public boolean canRunCommand(@NotNull TextChannel channel, @NotNull String rw, @NotNull String customPrefix) {
+        final String topic = channel.getTopic();
+
+        if (topic == null || topic.isEmpty()) {
+            return true;
+        }
+
+        final Rules rules = getRules(channel.getIdLong(), topic);
+
+        if (rules.blockAll) {
+            return false;
+        }
+
+        if (rules.isEmpty()) {
+            return true;
+        }
+
+        final String invoke = getInvoke(rw, customPrefix);
+        final CommandCategory category = commandManager.getCategory(invoke);
+
+        if (rules.deniedCommands.contains(invoke) || (category != null && rules.deniedCategories.contains(category))) {
+            return false;
+        }
+
+        return rules.allowedCategory == null || rules.allowedCategory == category;
+    }
+
+    /**
+     * Removes the compiled rules for a channel, the next message will compile them again
+     */
+    public void invalidate(long channelId) {
+        synchronized (cache) {
+            cache.remove(channelId);
+        }
+    }
+
+    private Rules getRules(long channelId, String topic) {
+        synchronized (cache) {
+            Rules rules = cache.get(channelId);
+
+            // We also recompile when the topic changed without us getting the update event
+            if (rules == null || !rules.topic.equals(topic)) {
+                rules = compile(topic);
+                cache.put(channelId, rules);
+            }
+
+            return rules;
+        }
+    }
+
+    @NotNull
+    private static Rules compile(@NotNull String topic) {
+        if (topic.contains("-commands")) {
+            return new Rules(topic, true, Collections.emptySet(), EnumSet.noneOf(CommandCategory.class), null);
+        }
+
+        final Set<String> deniedCommands = new HashSet<>();
+        final Set<CommandCategory> deniedCategories = EnumSet.noneOf(CommandCategory.class);
+        CommandCategory allowedCategory = null;
+
+        for (String s : topic.split("-")) {
+            if (s.startsWith("!")) {
+                String[] split = s.split("!");
+
+                if (split.length < 2) {
+                    continue;
+                }
+
+                allowedCategory = getCategory(split[1]);
+
+                // This has always blocked a plain command, topics out there depend on that
+                if (allowedCategory == null) {
+                    deniedCommands.add(split[1].toLowerCase());
+                }
+
+                break;
+            }
+
+            CommandCategory category = getCategory(s);
+
+            if (category != null) {
+                deniedCategories.add(category);
+            }
+
+            deniedCommands.add(s.toLowerCase());
+        }
+
+        return new Rules(topic, false, deniedCommands, deniedCategories, allowedCategory);
+    }
+
+    @Nullable
+    private static CommandCategory getCategory(@NotNull String name) {
+        try {
+            return CommandCategory.valueOf(name.toUpperCase());
+        } catch (IllegalArgumentException ignored) {
+            return null;
+        }
+    }
+
+    /**
+     * Gets the command name from a message without running any regexes, the same prefixes as the command manager
+     * are accepted
+     */
+    @NotNull
+    private static String getInvoke(@NotNull String rw, @NotNull String customPrefix) {
+        String content = rw;
+
+        if (content.regionMatches(true, 0, Settings.PREFIX, 0, Settings.PREFIX.length())) {
+            content = content.substring(Settings.PREFIX.length());
+        } else if (content.regionMatches(true, 0, Settings.OTHER_PREFIX, 0, Settings.OTHER_PREFIX.length())) {
+            content = content.substring(Settings.OTHER_PREFIX.length());
+        } else if (content.startsWith(customPrefix)) {
+            content = content.substring(customPrefix.length());
+        }
+
+        final int length = content.length();
+        int end = 0;
+
+        while (end < length && !Character.isWhitespace(content.charAt(end))) {
+            end++;
+        }
+
+        return content.substring(0, end).toLowerCase();
+    }
+
+    private static class Rules {
+        private final String topic;
+        private final boolean blockAll;
+        private final Set<String> deniedCommands;
+        private final Set<CommandCategory> deniedCategories;
+        private final CommandCategory allowedCategory;
+
+        private Rules(String topic, boolean blockAll, Set<String> deniedCommands, Set<CommandCategory> deniedCategories,
+                      CommandCategory allowedCategory) {
+            this.topic = topic;
+            this.blockAll = blockAll;
+            this.deniedCommands = deniedCommands;
+            this.deniedCategories = deniedCategories;
+            this.allowedCategory = allowedCategory;
+        }
+
+        private boolean isEmpty() {
+            return deniedCommands.isEmpty() && deniedCategories.isEmpty()
+                && allowedCategory == null;
+        }
+    }
+}
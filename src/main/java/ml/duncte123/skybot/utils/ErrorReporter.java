@@ -0,0 +1,293 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.utils;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.metrics.MetricsRegistry;
+import ml.duncte123.skybot.metrics.MetricsWriter;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Reports the errors that we don't handle anywhere else
+ * <p>
+ * Reporting only puts the error in a queue, a background thread groups the errors by their stack trace so an outage
+ * upstream does not print the same trace for every failing command. The full trace of an error is logged the first
+ * time it shows up in a window, after that it is only counted
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class ErrorReporter {
+
+    public static final ErrorReporter ins = new ErrorReporter();
+    private static final Logger logger = LoggerFactory.getLogger(ErrorReporter.class);
+    /**
+     * The max amount of errors that can wait for the reporter thread, the rest is dropped
+     */
+    private static final int QUEUE_CAPACITY = 10_000;
+    /**
+     * How many frames of every throwable are used for the fingerprint, the deeper frames are mostly the same
+     */
+    private static final int MAX_FRAMES = 12;
+    /**
+     * How many causes we follow for the fingerprint
+     */
+    private static final int MAX_CAUSES = 5;
+    private static final long WINDOW = TimeUnit.MINUTES.toMillis(1);
+    /**
+     * Errors that did not happen for this long are forgotten
+     */
+    private static final long MAX_IDLE = TimeUnit.HOURS.toMillis(1);
+    private static final int MAX_FINGERPRINTS = 1000;
+
+    private final BlockingQueue<Throwable> queue = new ArrayBlockingQueue<>(QUEUE_CAPACITY);
+    private final TLongObjectMap<ErrorSummary> errors = new TLongObjectHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder untracked = new LongAdder();
+    private long windowStart = System.currentTimeMillis();
+
+    private ErrorReporter() {
+        Thread thread = new Thread(this::run, "Error-Reporter-Thread");
+
+        thread.setDaemon(true);
+        thread.start();
+
+        MetricsRegistry.ins.register("skybot_errors_total", this::collectMetrics);
+        MetricsRegistry.ins.counter("skybot_errors_dropped_total", "Errors that were dropped because the queue was full",
+            this.dropped::sum);
+    }
+
+    /**
+     * Reports an error, this never blocks
+     *
+     * @param throwable
+     *         the error to report
+     */
+    public void report(Throwable throwable) {
+        if (!this.queue.offer(throwable)) {
+            this.dropped.increment();
+        }
+    }
+
+    /**
+     * @return a copy of the errors that happened in the last hour, the sample is the first error of the window
+     */
+    public List<ErrorSummary> getErrors() {
+        final List<ErrorSummary> result = new ArrayList<>();
+
+        synchronized (this.errors) {
+            this.errors.forEachValue((summary) -> {
+                result.add(summary.copy());
+                return true;
+            });
+        }
+
+        return result;
+    }
+
+    public long getDropped() {
+        return this.dropped.sum();
+    }
+
+    private void run() {
+        while (true) {
+            try {
+                final Throwable throwable = this.queue.poll(1, TimeUnit.SECONDS);
+
+                if (throwable != null) {
+                    handle(throwable);
+                }
+
+                if (System.currentTimeMillis() - this.windowStart >= WINDOW) {
+                    finishWindow();
+                }
+            } catch (InterruptedException e) {
+                return;
+            } catch (Throwable thr) {
+                // Never let the reporter die on us
+                logger.error("Could not report an error", thr);
+            }
+        }
+    }
+
+    private void handle(Throwable throwable) {
+        final long fingerprint = fingerprint(throwable);
+        final long now = System.currentTimeMillis();
+        final boolean firstInWindow;
+
+        synchronized (this.errors) {
+            ErrorSummary summary = this.errors.get(fingerprint);
+
+            if (summary == null) {
+                if (this.errors.size() >= MAX_FINGERPRINTS) {
+                    this.untracked.increment();
+                    logger.error("Unhandled error", throwable);
+                    return;
+                }
+
+                summary = new ErrorSummary(fingerprint, throwable.getClass().getName(), now);
+                this.errors.put(fingerprint, summary);
+            }
+
+            firstInWindow = summary.windowCount == 0;
+
+            if (firstInWindow) {
+                summary.sample = throwable;
+            }
+
+            summary.windowCount++;
+            summary.count++;
+            summary.lastSeen = now;
+        }
+
+        if (firstInWindow) {
+            logger.error("Unhandled error [{}]", Long.toHexString(fingerprint), throwable);
+        }
+    }
+
+    private void finishWindow() {
+        final long now = System.currentTimeMillis();
+
+        synchronized (this.errors) {
+            this.errors.retainEntries((fingerprint, summary) -> {
+                if (summary.windowCount > 1) {
+                    logger.error("Unhandled error [{}] ({}) happened {} more times in the last minute",
+                        Long.toHexString(fingerprint), summary.className, summary.windowCount - 1);
+                }
+
+                summary.lastWindowCount = summary.windowCount;
+                summary.windowCount = 0;
+
+                return now - summary.lastSeen < MAX_IDLE;
+            });
+        }
+
+        this.windowStart = now;
+    }
+
+    private void collectMetrics(MetricsWriter writer) {
+        writer.header("skybot_errors_total", "Unhandled errors grouped by their stack trace", "counter");
+
+        synchronized (this.errors) {
+            this.errors.forEachValue((summary) -> {
+                writer.sample("skybot_errors_total", "fingerprint", Long.toHexString(summary.fingerprint),
+                    "exception", summary.className, summary.count);
+                return true;
+            });
+        }
+
+        writer.sample("skybot_errors_total", "fingerprint", "untracked", "exception", "", this.untracked.sum());
+    }
+
+    /**
+     * Makes a hash out of the classes and the top frames of the throwable and its causes, the message is left out
+     * because it often contains ids
+     */
+    static long fingerprint(Throwable throwable) {
+        long hash = 1125899906842597L;
+        Throwable current = throwable;
+
+        for (int depth = 0; current != null && depth < MAX_CAUSES; depth++) {
+            hash = 31 * hash + current.getClass().getName().hashCode();
+
+            final StackTraceElement[] trace = current.getStackTrace();
+            final int frames = Math.min(trace.length, MAX_FRAMES);
+
+            for (int i = 0; i < frames; i++) {
+                hash = 31 * hash + trace[i].getClassName().hashCode();
+                hash = 31 * hash + trace[i].getMethodName().hashCode();
+                hash = 31 * hash + trace[i].getLineNumber();
+            }
+
+            current = current.getCause();
+        }
+
+        return hash;
+    }
+
+    public static class ErrorSummary {
+        private final long fingerprint;
+        private final String className;
+        private final long firstSeen;
+        private long lastSeen;
+        private long count = 0;
+        private int windowCount = 0;
+        private int lastWindowCount = 0;
+        private Throwable sample = null;
+
+        private ErrorSummary(long fingerprint, String className, long firstSeen) {
+            this.fingerprint = fingerprint;
+            this.className = className;
+            this.firstSeen = firstSeen;
+            this.lastSeen = firstSeen;
+        }
+
+        private ErrorSummary copy() {
+            final ErrorSummary copy = new ErrorSummary(this.fingerprint, this.className, this.firstSeen);
+
+            copy.lastSeen = this.lastSeen;
+            copy.count = this.count;
+            copy.windowCount = this.windowCount;
+            copy.lastWindowCount = this.lastWindowCount;
+            copy.sample = this.sample;
+
+            return copy;
+        }
+
+        public String getFingerprint() {
+            return Long.toHexString(this.fingerprint);
+        }
+
+        public String getClassName() {
+            return this.className;
+        }
+
+        public long getFirstSeen() {
+            return this.firstSeen;
+        }
+
+        public long getLastSeen() {
+            return this.lastSeen;
+        }
+
+        public long getCount() {
+            return this.count;
+        }
+
+        /**
+         * @return how often the error happened in the last full minute
+         */
+        public int getLastWindowCount() {
+            return this.lastWindowCount;
+        }
+
+        public Throwable getSample() {
+            return this.sample;
+        }
+    }
+}
@@ -0,0 +1,267 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.utils;
+
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import ml.duncte123.skybot.Author;
+import net.dv8tion.jda.bot.sharding.ShardManager;
+import net.dv8tion.jda.core.Permission;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Invite;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Keeps track of the invite codes that belong to a guild so the invite filter does not have to ask discord for every
+ * message that contains an invite
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class GuildInviteCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(GuildInviteCache.class);
+    /**
+     * How often the invites of a guild are refreshed in the background
+     */
+    private static final long REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(15);
+    /**
+     * Unknown invites can trigger a refresh, but never more than once in this time
+     */
+    private static final long MISS_REFRESH_INTERVAL = TimeUnit.MINUTES.toMillis(1);
+    /**
+     * Spreads out the background refreshes so we don't refresh all the guilds at the same time
+     */
+    private static final long MAX_JITTER = TimeUnit.MINUTES.toMillis(5);
+    /**
+     * Guilds that had no invites posted for this long will be removed from the cache
+     */
+    private static final long MAX_UNUSED = TimeUnit.HOURS.toMillis(1);
+
+    private final TLongObjectMap<GuildInvites> cache = new TLongObjectHashMap<>();
+
+    /**
+     * Checks if an invite code belongs to the guild, the callback is called right away when we know the answer
+     * and after the invites have been refreshed otherwise. When we can't get the invites the code is seen as one of
+     * the guild, we never want to delete the invites of the guild itself
+     *
+     * @param guild
+     *         the guild that the invite was posted in
+     * @param code
+     *         the invite code
+     * @param callback
+     *         gets called with true if the invite belongs to the guild
+     */
+    public void isOwnInvite(Guild guild, String code, Consumer<Boolean> callback) {
+        GuildInvites invites = getOrCreate(guild.getIdLong());
+        invites.lastUsed = System.currentTimeMillis();
+
+        if (invites.codes.contains(code)) {
+            callback.accept(true);
+            return;
+        }
+
+        // The invite might be new, look again if we did not do that recently or wait for the refresh that is running
+        if (invites.isRefreshing() || System.currentTimeMillis() - invites.lastRefresh > MISS_REFRESH_INTERVAL) {
+            refresh(guild, invites, (codes) -> callback.accept(codes == null || codes.contains(code)));
+            return;
+        }
+
+        // The last refresh failed so we don't know the invites of the guild
+        callback.accept(!invites.fetched);
+    }
+
+    /**
+     * Refreshes the invites that are due and removes the guilds that don't have invites posted anymore
+     */
+    public void refreshInvites(ShardManager shardManager) {
+        final long now = System.currentTimeMillis();
+        final TLongList toRemove = new TLongArrayList();
+
+        synchronized (cache) {
+            cache.forEachEntry((guildId, invites) -> {
+                if (now - invites.lastUsed > MAX_UNUSED) {
+                    toRemove.add(guildId);
+                    return true;
+                }
+
+                if (now - invites.lastRefresh < REFRESH_INTERVAL + invites.jitter) {
+                    return true;
+                }
+
+                Guild guild = shardManager.getGuildById(guildId);
+
+                // We can lose the permission after the guild was cached, the invites can't be read anymore then
+                if (guild == null || !canReadInvites(guild)) {
+                    toRemove.add(guildId);
+                    return true;
+                }
+
+                try {
+                    refresh(guild, invites, null);
+                } catch (Exception e) {
+                    // One guild should never stop the refreshes of the others
+                    logger.error("Could not refresh the invites of guild {}", guildId, e);
+                }
+
+                return true;
+            });
+
+            toRemove.forEach((guildId) -> {
+                cache.remove(guildId);
+                return true;
+            });
+        }
+    }
+
+    public void remove(long guildId) {
+        synchronized (cache) {
+            cache.remove(guildId);
+        }
+    }
+
+    private GuildInvites getOrCreate(long guildId) {
+        synchronized (cache) {
+            GuildInvites invites = cache.get(guildId);
+
+            if (invites == null) {
+                invites = new GuildInvites();
+                cache.put(guildId, invites);
+            }
+
+            return invites;
+        }
+    }
+
+    /**
+     * Gets the invites of the guild, the callback gets the invite codes or null when they could not be fetched
+     */
+    private void refresh(Guild guild, GuildInvites invites, Consumer<Set<String>> callback) {
+        // Only one request per guild at the same time, the others wait for that one to finish
+        synchronized (invites) {
+            if (callback != null) {
+                invites.waiting.add(callback);
+            }
+
+            if (invites.refreshing) {
+                return;
+            }
+
+            invites.refreshing = true;
+        }
+
+        invites.lastRefresh = System.currentTimeMillis();
+
+        // These throw right away when we don't have the permission, so check it before every request
+        if (!canReadInvites(guild)) {
+            finishRefresh(invites, null);
+            return;
+        }
+
+        try {
+            guild.getInvites().queue(
+                (list) -> {
+                    final Set<String> codes = new HashSet<>();
+
+                    for (Invite invite : list) {
+                        codes.add(invite.getCode());
+                    }
+
+                    if (!guild.getFeatures().contains("VANITY_URL")) {
+                        finishRefresh(invites, codes);
+                        return;
+                    }
+
+                    // Without the vanity code we would see the vanity invite as a foreign one
+                    try {
+                        guild.getVanityUrl().queue(
+                            (url) -> {
+                                codes.add(url.substring(url.lastIndexOf('/') + 1));
+                                finishRefresh(invites, codes);
+                            },
+                            (error) -> finishRefresh(invites, null)
+                        );
+                    } catch (Exception e) {
+                        finishRefresh(invites, null);
+                    }
+                },
+                (error) -> finishRefresh(invites, null)
+            );
+        } catch (Exception e) {
+            logger.error("Could not refresh the invites of guild {}", guild.getId(), e);
+            finishRefresh(invites, null);
+        }
+    }
+
+    private static boolean canReadInvites(Guild guild) {
+        return guild.getSelfMember().hasPermission(Permission.MANAGE_SERVER);
+    }
+
+    /**
+     * Stores the codes and calls everything that was waiting for them
+     *
+     * @param codes
+     *         the codes that were fetched or null if the refresh failed, the old codes are kept then
+     */
+    private static void finishRefresh(GuildInvites invites, Set<String> codes) {
+        final List<Consumer<Set<String>>> callbacks;
+
+        synchronized (invites) {
+            if (codes != null) {
+                invites.codes = Collections.unmodifiableSet(codes);
+            }
+
+            invites.fetched = codes != null;
+            invites.refreshing = false;
+            callbacks = new ArrayList<>(invites.waiting);
+            invites.waiting.clear();
+        }
+
+        for (Consumer<Set<String>> callback : callbacks) {
+            callback.accept(codes);
+        }
+    }
+
+    private static class GuildInvites {
+        private final long jitter = ThreadLocalRandom.current().nextLong(MAX_JITTER);
+        /**
+         * The callbacks that wait for the refresh that is running, guarded by this object
+         */
+        private final List<Consumer<Set<String>>> waiting = new ArrayList<>();
+        private boolean refreshing = false;
+        private volatile Set<String> codes = Collections.emptySet();
+        private volatile boolean fetched = false;
+        private volatile long lastRefresh = 0;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private synchronized boolean isRefreshing() {
+            return refreshing;
+        }
+    }
+}
@@ -33,6 +33,7 @@ import org.slf4j.LoggerFactory;
 
 import java.sql.*;
 import java.util.Arrays;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 @Authors(authors = {
@@ -44,17 +45,16 @@ public class GuildSettingsUtils {
     private static final Logger logger = LoggerFactory.getLogger(GuildSettingsUtils.class);
 
 
-    public static void loadAllSettings(Variables variables) {
-        loadGuildSettings(variables.getDatabase(), variables.getGuildSettings());
-        loadEmbedColors(variables.getDatabase());
-    }
-
-
-    private static void loadGuildSettings(DBManager database, TLongObjectMap<GuildSettings> guildSettings) {
+    /**
+     * Loads the settings of all the guilds, this is called on startup once the database is reachable
+     *
+     * @return a future that completes when the settings are loaded
+     */
+    public static Future<?> loadGuildSettings(DBManager database, TLongObjectMap<GuildSettings> guildSettings) {
         logger.debug("Loading Guild settings.");
 
         String dbName = database.getName();
-        database.run(() -> {
+        return database.run(() -> {
             try (Connection connection = database.getConnManager().getConnection()) {
                 Statement smt = connection.createStatement();
 
@@ -90,11 +90,11 @@ public class GuildSettingsUtils {
         });
     }
 
-    private static void loadEmbedColors(DBManager database) {
+    public static Future<?> loadEmbedColors(DBManager database) {
         logger.debug("Loading embed colors.");
         String dbName = database.getName();
 
-        database.run(() -> {
+        return database.run(() -> {
             try (Connection connection = database.getConnManager().getConnection()) {
                 Statement smt = connection.createStatement();
 
@@ -35,9 +35,7 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
-import java.util.Comparator;
 import java.util.Objects;
-import java.util.stream.Collectors;
 
 @Authors(authors = {
     @Author(nickname = "Sanduhr32", author = "Maurice R S"),
@@ -46,6 +44,7 @@ import java.util.stream.Collectors;
 public class GuildUtils {
 
     private static Logger logger = LoggerFactory.getLogger(GuildUtils.class);
+    public static final JoinOrderIndex joinOrderIndex = new JoinOrderIndex();
 
     /**
      * Returns an array with the member counts of the guild
@@ -172,8 +171,7 @@ public class GuildUtils {
     }
 
     public static int getMemberJoinPosition(Member member) {
-        return member.getGuild().getMemberCache().stream().sorted(Comparator.comparing(Member::getJoinDate))
-            .collect(Collectors.toList()).indexOf(member) + 1;
+        return joinOrderIndex.getJoinPosition(member);
     }
 
     public static void reloadOneGuildPatrons(@NotNull ShardManager manager, @NotNull DBManager database) {
@@ -196,11 +194,11 @@ public class GuildUtils {
                     Member memberInServer = supportGuild.getMemberById(userId);
 
                     if (memberInServer != null && memberInServer.getRoles().contains(oneGuildRole)) {
-                        Command.oneGuildPatrons.put(userId, guildId);
+                        Command.patronEntitlements.setOneGuildPatron(userId, guildId);
                     }
                 }
 
-                logger.info("Found {} one guild patrons", Command.oneGuildPatrons.keySet().size());
+                logger.info("Found {} one guild patrons", Command.patronEntitlements.getOneGuildPatronCount());
             } catch (SQLException e) {
                 e.printStackTrace();
             }
@@ -243,6 +241,8 @@ public class GuildUtils {
                 smt.setLong(3, guildId);
 
                 smt.executeUpdate();
+
+                Command.patronEntitlements.setOneGuildPatron(userId, guildId);
             } catch (SQLException e) {
                 e.printStackTrace();
             }
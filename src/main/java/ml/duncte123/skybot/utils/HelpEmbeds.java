@@ -21,177 +21,159 @@ package ml.duncte123.skybot.utils;
 import ml.duncte123.skybot.Author;
 import ml.duncte123.skybot.CommandManager;
 import ml.duncte123.skybot.Settings;
+import ml.duncte123.skybot.objects.command.Command;
 import ml.duncte123.skybot.objects.command.CommandCategory;
 import ml.duncte123.skybot.objects.command.ICommand;
 import net.dv8tion.jda.core.EmbedBuilder;
 import net.dv8tion.jda.core.entities.MessageEmbed;
 
-import java.util.ArrayList;
-import java.util.List;
+import java.util.*;
 
 import static me.duncte123.botcommons.messaging.EmbedUtils.defaultEmbed;
 
 @Author(nickname = "duncte123", author = "Duncan Sterken")
 public class HelpEmbeds {
 
-    /**
-     * These lists hold the commands for each category
-     */
-    private static List<String> mainCommands = new ArrayList<>();
-    private static List<String> animalCommands = new ArrayList<>();
-    private static List<String> funCommands = new ArrayList<>();
-    private static List<String> musicCommands = new ArrayList<>();
-    private static List<String> nerdCommands = new ArrayList<>();
-    private static List<String> modAdminCommands = new ArrayList<>();
-    private static List<String> patronCommands = new ArrayList<>();
-    private static List<String> weebCommands = new ArrayList<>();
-    private static List<String> NSFWCommands = new ArrayList<>();
     /**
      * This tells the fields to be inline or not
      */
     private static final boolean INLINE = true;
+    /**
+     * The order that the categories are shown in the full help embed
+     */
+    private static final CommandCategory[] HELP_ORDER = {
+        CommandCategory.MAIN,
+        CommandCategory.MUSIC,
+        CommandCategory.ANIMALS,
+        CommandCategory.WEEB,
+        CommandCategory.FUN,
+        CommandCategory.NERD_STUFF,
+        CommandCategory.MOD_ADMIN,
+        CommandCategory.PATRON,
+        CommandCategory.NSFW,
+    };
+    private static final MessageEmbed.Field OTHER_FIELD = new MessageEmbed.Field("Other suff",
+        "Support server: [https://discord.gg/NKM9Xtk](https://discord.gg/NKM9Xtk)\n" +
+            "Support development of this bot: [https://www.patreon.com/DuncteBot](https://www.patreon.com/DuncteBot)", false);
+    /**
+     * These hold the pre built fields for each category
+     */
+    private static final Map<CommandCategory, MessageEmbed.Field> categoryFields = new EnumMap<>(CommandCategory.class);
+    private static final Map<String, CommandCategory> categoriesByName = new HashMap<>();
+    private static List<MessageEmbed.Field> allFields = Collections.emptyList();
 
     /**
-     * This loads all the commands in the lists
+     * This builds the fields for all the categories, the embeds only need the prefix after this
      */
     public static void init(CommandManager manager) {
+        final Map<CommandCategory, List<String>> commands = new EnumMap<>(CommandCategory.class);
+
         for (ICommand c : manager.getCommands()) {
-            switch (c.getCategory()) {
-                case MAIN:
-                    mainCommands.add(c.getName());
-                    break;
-                case FUN:
-                    funCommands.add(c.getName());
-                    break;
-                case ANIMALS:
-                    animalCommands.add(c.getName());
-                    break;
-                case MUSIC:
-                    musicCommands.add(c.getName());
-                    break;
-                case MOD_ADMIN:
-                    modAdminCommands.add(c.getName());
-                    break;
-                case NERD_STUFF:
-                    nerdCommands.add(c.getName());
-                    break;
-                case PATRON:
-                    patronCommands.add(c.getName());
-                    break;
-                case WEEB:
-                    weebCommands.add(c.getName());
-                    break;
-                case NSFW:
-                    NSFWCommands.add(c.getName());
-                    break;
+            if (c.getCategory() == CommandCategory.UNLISTED) {
+                continue;
+            }
+
+            List<String> names = commands.computeIfAbsent(c.getCategory(), (k) -> new ArrayList<>());
+
+            names.add(c.getName());
+
+            if (c.shouldDisplayAliasesInHelp()) {
+                names.addAll(Arrays.asList(c.getAliases()));
+            }
+
+            // Build the html for the website now so the first visitor does not have to wait for it
+            if (c instanceof Command) {
+                ((Command) c).helpParsed();
             }
+        }
+
+        final List<MessageEmbed.Field> fields = new ArrayList<>();
+
+        for (CommandCategory category : HELP_ORDER) {
+            MessageEmbed.Field field = new MessageEmbed.Field(getFieldName(category),
+                joinCommands(commands.getOrDefault(category, Collections.emptyList())), INLINE);
 
-            if (c.shouldDisplayAliasesInHelp())
-                for (String alias : c.getAliases()) {
-                    switch (c.getCategory()) {
-                        case MAIN:
-                            mainCommands.add(alias);
-                            break;
-                        case FUN:
-                            funCommands.add(alias);
-                            break;
-                        case ANIMALS:
-                            animalCommands.add(alias);
-                            break;
-                        case MUSIC:
-                            musicCommands.add(alias);
-                            break;
-                        case MOD_ADMIN:
-                            modAdminCommands.add(alias);
-                            break;
-                        case NERD_STUFF:
-                            nerdCommands.add(alias);
-                            break;
-                        case PATRON:
-                            patronCommands.add(alias);
-                            break;
-                        case WEEB:
-                            weebCommands.add(alias);
-                            break;
-                        case NSFW:
-                            NSFWCommands.add(alias);
-                            break;
-                    }
-                }
+            categoryFields.put(category, field);
+            fields.add(field);
+        }
+
+        fields.add(OTHER_FIELD);
+        allFields = Collections.unmodifiableList(fields);
+
+        for (CommandCategory category : CommandCategory.values()) {
+            categoriesByName.put(category.name().toLowerCase(), category);
+            categoriesByName.put(category.getSearch(), category);
         }
     }
 
     /**
-     * This will return a embed containing all the commands
+     * Finds a category by its enum name or search name
+     *
+     * @param name
+     *         the name to search for
+     *
+     * @return the category or null if there is no category with this name
+     */
+    public static CommandCategory getCategory(String name) {
+        return categoriesByName.get(name.toLowerCase());
+    }
+
+    /**
+     * This will return a embed containing the commands
      *
      * @param prefix
      *         the prefix that we need
+     * @param categories
+     *         the categories to show, all categories are shown when this is empty
      *
-     * @return a embed containing all the commands
+     * @return a embed containing the commands
      */
-    /*public static MessageEmbed generateCommandEmbed(String prefix) {
-        return generateCommandEmbed(prefix, null);
-    }*/
     public static MessageEmbed generateCommandEmbed(String prefix, CommandCategory... categories) {
         EmbedBuilder embed = defaultEmbed()
             .setThumbnail(Settings.DEFAULT_ICON)
             .setTitle("Click here for the support guild", "https://discord.gg/NKM9Xtk")
             .setDescription("Use `" + prefix + "help [command]` to get more info about a command");
+
         if (categories == null || categories.length == 0) {
-            return embed
-                .addField("Main commands", joinCommands(mainCommands), INLINE)
-                .addField("Music commands", joinCommands(musicCommands), INLINE)
-                .addField("Animal commands", joinCommands(animalCommands), INLINE)
-                .addField("Weeb commands", joinCommands(weebCommands), INLINE)
-                .addField("Fun commands", joinCommands(funCommands), INLINE)
-                .addField("Nerd commands", joinCommands(nerdCommands), INLINE)
-                .addField("Mod/Admin commands", joinCommands(modAdminCommands), INLINE)
-                .addField("Patron only commands", joinCommands(patronCommands), INLINE)
-                .addField("NSFW commands", joinCommands(NSFWCommands), INLINE)
-                .addField("Other suff",
-                    "Support server: [https://discord.gg/NKM9Xtk](https://discord.gg/NKM9Xtk)\n" +
-                        "Support development of this bot: [https://www.patreon.com/DuncteBot](https://www.patreon.com/DuncteBot)", false)
-                .build();
+            embed.getFields().addAll(allFields);
+
+            return embed.build();
         }
+
         for (CommandCategory category : categories) {
-            switch (category) {
-                case FUN:
-                    embed.addField("Fun commands", joinCommands(funCommands), INLINE);
-                    break;
-                case MAIN:
-                    embed.addField("Main commands", joinCommands(mainCommands), INLINE);
-                    break;
-                case NSFW:
-                    embed.addField("NSFW commands", joinCommands(NSFWCommands), INLINE);
-                    break;
-                case NERD_STUFF:
-                    embed.addField("Nerd commands", joinCommands(nerdCommands), INLINE);
-                    break;
-                case WEEB:
-                    embed.addField("Weeb commands", joinCommands(weebCommands), INLINE);
-                    break;
-                case MUSIC:
-                    embed.addField("Music commands", joinCommands(musicCommands), INLINE);
-                    break;
-                case PATRON:
-                    embed.addField("Patron only commands", joinCommands(patronCommands), INLINE);
-                    break;
-                case ANIMALS:
-                    embed.addField("Animal commands", joinCommands(animalCommands), INLINE);
-                    break;
-                case MOD_ADMIN:
-                    embed.addField("Mod/Admin commands", joinCommands(modAdminCommands), INLINE);
-                    break;
-                case UNLISTED:
-                    break;
+            MessageEmbed.Field field = categoryFields.get(category);
+
+            if (field != null) {
+                embed.addField(field);
             }
         }
 
-        return embed.addField("Other suff",
-            "Support server: [https://discord.gg/NKM9Xtk](https://discord.gg/NKM9Xtk)\n" +
-                "Support development of this bot: [https://www.patreon.com/DuncteBot](https://www.patreon.com/DuncteBot)", false)
-            .build();
+        return embed.addField(OTHER_FIELD).build();
+    }
 
+    private static String getFieldName(CommandCategory category) {
+        switch (category) {
+            case MAIN:
+                return "Main commands";
+            case MUSIC:
+                return "Music commands";
+            case ANIMALS:
+                return "Animal commands";
+            case WEEB:
+                return "Weeb commands";
+            case FUN:
+                return "Fun commands";
+            case NERD_STUFF:
+                return "Nerd commands";
+            case MOD_ADMIN:
+                return "Mod/Admin commands";
+            case PATRON:
+                return "Patron only commands";
+            case NSFW:
+                return "NSFW commands";
+            default:
+                return category.getSearch();
+        }
     }
 
     /**
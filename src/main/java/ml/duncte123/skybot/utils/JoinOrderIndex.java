@@ -0,0 +1,247 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.utils;
+
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongIntMap;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongIntHashMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import ml.duncte123.skybot.Author;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Member;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the join order of the members per guild in a fenwick tree so the join position of a member can be found
+ * without sorting all the members of the guild
+ * <p>
+ * The index of a guild is built the first time we need it and is kept up to date by the member join and leave
+ * events, new members get a slot at the end of the tree
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class JoinOrderIndex {
+
+    /**
+     * Indexes that were not used for this long are removed
+     */
+    private static final long MAX_UNUSED = TimeUnit.HOURS.toMillis(1);
+
+    private final TLongObjectMap<GuildIndex> indexes = new TLongObjectHashMap<>();
+
+    /**
+     * Returns the position of the member in the join order of the guild, starting at 1
+     *
+     * @param member
+     *         the member to get the position for
+     *
+     * @return the join position of the member
+     */
+    public int getJoinPosition(@NotNull Member member) {
+        final GuildIndex index = getOrCreate(member.getGuild().getIdLong());
+
+        synchronized (index) {
+            index.lastUsed = System.currentTimeMillis();
+
+            if (!index.built || !index.slots.containsKey(member.getUser().getIdLong())) {
+                // The index is new or we missed an event, start over from the member cache
+                index.build(member.getGuild());
+            }
+
+            return index.position(member.getUser().getIdLong());
+        }
+    }
+
+    public void onMemberJoin(@NotNull Member member) {
+        final GuildIndex index = get(member.getGuild().getIdLong());
+
+        if (index == null) {
+            return;
+        }
+
+        synchronized (index) {
+            if (index.built) {
+                index.add(member.getUser().getIdLong(), getJoinTime(member));
+            }
+        }
+    }
+
+    public void onMemberLeave(long guildId, long userId) {
+        final GuildIndex index = get(guildId);
+
+        if (index == null) {
+            return;
+        }
+
+        synchronized (index) {
+            if (index.built) {
+                index.remove(userId);
+            }
+        }
+    }
+
+    public void remove(long guildId) {
+        synchronized (indexes) {
+            indexes.remove(guildId);
+        }
+    }
+
+    /**
+     * Removes the indexes of guilds where nobody looked at the join position for a while
+     */
+    public void removeUnused() {
+        final long unusedSince = System.currentTimeMillis() - MAX_UNUSED;
+
+        synchronized (indexes) {
+            indexes.retainEntries((guildId, index) -> index.lastUsed > unusedSince);
+        }
+    }
+
+    private GuildIndex get(long guildId) {
+        synchronized (indexes) {
+            return indexes.get(guildId);
+        }
+    }
+
+    private GuildIndex getOrCreate(long guildId) {
+        synchronized (indexes) {
+            GuildIndex index = indexes.get(guildId);
+
+            if (index == null) {
+                index = new GuildIndex();
+                indexes.put(guildId, index);
+            }
+
+            return index;
+        }
+    }
+
+    private static long getJoinTime(Member member) {
+        return member.getJoinDate().toInstant().toEpochMilli();
+    }
+
+    private static class GuildIndex {
+        /**
+         * Key: user id, Value: the slot of the member in the tree (1 based)
+         */
+        private final TLongIntMap slots = new TLongIntHashMap();
+        /**
+         * The join time of the member in each slot, used to detect members that don't join at the end
+         */
+        private TLongList joinTimes = new TLongArrayList();
+        /**
+         * The fenwick tree, index 0 is not used
+         */
+        private int[] tree = new int[1];
+        private int size = 0;
+        private boolean built = false;
+        private volatile long lastUsed = System.currentTimeMillis();
+
+        private void build(Guild guild) {
+            final int count = (int) guild.getMemberCache().size();
+            final long[][] members = new long[count][];
+            int i = 0;
+
+            for (Member member : guild.getMemberCache()) {
+                if (i == count) {
+                    break;
+                }
+
+                members[i++] = new long[]{getJoinTime(member), member.getUser().getIdLong()};
+            }
+
+            final int filled = i;
+
+            Arrays.sort(members, 0, filled, (a, b) -> a[0] == b[0] ? Long.compare(a[1], b[1]) : Long.compare(a[0], b[0]));
+
+            slots.clear();
+            joinTimes = new TLongArrayList(filled + 1);
+            joinTimes.add(0L);
+            tree = new int[Math.max(16, filled * 2)];
+            size = filled;
+
+            for (int slot = 1; slot <= filled; slot++) {
+                slots.put(members[slot - 1][1], slot);
+                joinTimes.add(members[slot - 1][0]);
+                // Every slot holds a member so each node covers exactly its own range
+                tree[slot] = slot & -slot;
+            }
+
+            built = true;
+        }
+
+        private void add(long userId, long joinTime) {
+            if (slots.containsKey(userId)) {
+                return;
+            }
+
+            // Members should join at the end, if they don't we let the next lookup rebuild the index
+            if (size > 0 && joinTime < joinTimes.get(size)) {
+                built = false;
+                return;
+            }
+
+            final int slot = ++size;
+
+            if (slot >= tree.length) {
+                tree = Arrays.copyOf(tree, tree.length * 2);
+            }
+
+            // The new node covers (slot - lowbit, slot], everything before the new slot is already in the tree
+            tree[slot] = 1 + prefix(slot - 1) - prefix(slot - (slot & -slot));
+            slots.put(userId, slot);
+            joinTimes.add(joinTime);
+        }
+
+        private void remove(long userId) {
+            if (!slots.containsKey(userId)) {
+                return;
+            }
+
+            final int slot = slots.remove(userId);
+
+            for (int i = slot; i <= size; i += i & -i) {
+                tree[i]--;
+            }
+
+            // Too many empty slots, build a compact index on the next lookup
+            if (size > 1024 && slots.size() < size / 2) {
+                built = false;
+            }
+        }
+
+        private int position(long userId) {
+            return prefix(slots.get(userId));
+        }
+
+        private int prefix(int slot) {
+            int sum = 0;
+
+            for (int i = slot; i > 0; i -= i & -i) {
+                sum += tree[i];
+            }
+
+            return sum;
+        }
+    }
+}
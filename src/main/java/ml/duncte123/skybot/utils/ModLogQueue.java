@@ -0,0 +1,104 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.utils;
+
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import ml.duncte123.skybot.Author;
+import net.dv8tion.jda.core.MessageBuilder;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.TextChannel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+import static me.duncte123.botcommons.messaging.MessageUtils.sendMsg;
+
+/**
+ * Collects the mod-log messages of a guild for a short time so a burst of actions (a spam wave or a bunch of
+ * unbans) ends up in a few messages instead of hitting the rate limit of the log channel
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+class ModLogQueue {
+
+    /**
+     * How long we wait for more messages before sending them
+     */
+    private static final long FLUSH_DELAY = 2L;
+
+    private final TLongObjectMap<List<String>> pending = new TLongObjectHashMap<>();
+    private final ScheduledExecutorService service = Executors.newSingleThreadScheduledExecutor(
+        (r) -> new Thread(r, "ModLog-Thread")
+    );
+
+    /**
+     * Adds a message to the queue of the channel, the first message of a burst schedules the send
+     *
+     * @param channel
+     *         the log channel
+     * @param message
+     *         the message to log
+     */
+    void add(TextChannel channel, String message) {
+        final long channelId = channel.getIdLong();
+
+        synchronized (pending) {
+            List<String> messages = pending.get(channelId);
+
+            if (messages != null) {
+                messages.add(message);
+                return;
+            }
+
+            messages = new ArrayList<>();
+            messages.add(message);
+            pending.put(channelId, messages);
+        }
+
+        service.schedule(() -> flush(channel), FLUSH_DELAY, TimeUnit.SECONDS);
+    }
+
+    private void flush(TextChannel channel) {
+        final List<String> messages;
+
+        synchronized (pending) {
+            messages = pending.remove(channel.getIdLong());
+        }
+
+        if (messages == null || messages.isEmpty()) {
+            return;
+        }
+
+        if (messages.size() == 1) {
+            sendMsg(channel, messages.get(0));
+            return;
+        }
+
+        final List<Message> split = new MessageBuilder()
+            .append(String.join("\n", messages))
+            .buildAll(MessageBuilder.SplitPolicy.NEWLINE);
+
+        for (Message message : split) {
+            sendMsg(channel, message.getContentRaw());
+        }
+    }
+}
@@ -48,6 +48,7 @@ import static me.duncte123.botcommons.messaging.MessageUtils.sendMsg;
 public class ModerationUtils {
 
     private static Logger logger = LoggerFactory.getLogger(ModerationUtils.class);
+    private static final ModLogQueue modLogQueue = new ModLogQueue();
 
     /**
      * This will send a message to a channel called modlog
@@ -69,12 +70,17 @@ public class ModerationUtils {
         long chan = g.getSettings().getLogChannel();
         if (chan > 0) {
             TextChannel logChannel = AirUtils.getLogChannel(chan, g);
+
+            if (logChannel == null) {
+                return;
+            }
+
             String length = "";
             if (time != null && !time.isEmpty()) {
                 length = " lasting " + time + "";
             }
 
-            sendMsg(logChannel, String.format("User **%#s** got **%s** by **%#s**%s%s",
+            modLogQueue.add(logChannel, String.format("User **%#s** got **%s** by **%#s**%s%s",
                 punishedUser,
                 punishment,
                 mod,
@@ -162,11 +168,11 @@ public class ModerationUtils {
      *
      * @return The current amount of warnings that a user has
      */
-    public static int getWarningCountForUser(DBManager database, User u, Guild g) {
+    public static int getWarningCountForUser(Variables variables, User u, Guild g) {
         if (u == null)
             throw new IllegalArgumentException("User to check can not be null");
 
-        return ApiUtils.getWarnsForUser(database, u.getId(), g.getId()).getWarnings().size();
+        return variables.getWarningLedger().getWarningCount(g.getIdLong(), u.getIdLong());
     }
 
     /**
@@ -179,7 +185,11 @@ public class ModerationUtils {
      * @param reason
      *         the reason for the warn
      */
-    public static void addWarningToDb(DBManager database, User moderator, User target, String reason, Guild guild) {
+    public static void addWarningToDb(Variables variables, User moderator, User target, String reason, Guild guild) {
+        DBManager database = variables.getDatabase();
+
+        // Count the warning right away, the insert happens in the background
+        variables.getWarningLedger().addWarning(guild.getIdLong(), target.getIdLong());
 
         database.run(() -> {
             try (Connection conn = database.getConnManager().getConnection()) {
@@ -0,0 +1,313 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.utils;
+
+import ml.duncte123.skybot.Author;
+import net.dv8tion.jda.bot.sharding.ShardManager;
+import net.dv8tion.jda.core.Permission;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.Role;
+import net.dv8tion.jda.core.entities.User;
+import org.jetbrains.annotations.NotNull;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import static ml.duncte123.skybot.objects.command.Command.*;
+
+/**
+ * Keeps track of who has patron perks, the maps are kept up to date by the role events from the support guild so
+ * checking a user or guild is a simple lookup
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class PatronEntitlements {
+
+    /**
+     * Users that are not a patron are not looked up in the support guild again for this long
+     */
+    private static final long NEGATIVE_TTL = TimeUnit.MINUTES.toMillis(10);
+
+    private final Set<Long> patrons = ConcurrentHashMap.newKeySet();
+    // Key: user_id Value: the guilds that the user is owner or admin in
+    private final Map<Long, Set<Long>> guildPatrons = new ConcurrentHashMap<>();
+    // Key: guild_id Value: the guild patrons that unlock the guild
+    private final Map<Long, Set<Long>> guildPatronGuilds = new ConcurrentHashMap<>();
+    // Key: user_id Value: guild_id
+    private final Map<Long, Long> oneGuildPatrons = new ConcurrentHashMap<>();
+    // Key: guild_id Value: the one guild patrons that registered the guild
+    private final Map<Long, Set<Long>> oneGuildPatronGuilds = new ConcurrentHashMap<>();
+    // Key: user_id Value: the time until we trust that the user is not a patron
+    private final Map<Long, Long> notPatron = new ConcurrentHashMap<>();
+    private final Map<Long, Long> notGuildPatron = new ConcurrentHashMap<>();
+
+    /**
+     * Checks if the user is a patron, users that we don't know about are looked up in the support guild
+     *
+     * @param u
+     *         the user to check
+     *
+     * @return true if the user has the patron role
+     */
+    public boolean isPatron(@NotNull User u) {
+        final long userId = u.getIdLong();
+
+        if (patrons.contains(userId)) {
+            return true;
+        }
+
+        if (isCachedNegative(notPatron, userId)) {
+            return false;
+        }
+
+        if (hasSupportRole(u, patronsRole)) {
+            addPatron(userId);
+            return true;
+        }
+
+        notPatron.put(userId, System.currentTimeMillis() + NEGATIVE_TTL);
+
+        return false;
+    }
+
+    /**
+     * Checks if the guild has patron perks, if the guild is not known but the user has the guild patron role the
+     * guild gets the perks
+     *
+     * @param u
+     *         the user that wants to use the perks
+     * @param g
+     *         the guild to check
+     *
+     * @return true if the guild has patron perks
+     */
+    public boolean isGuildPatron(@NotNull User u, @NotNull Guild g) {
+        final long guildId = g.getIdLong();
+
+        if (guildPatronGuilds.containsKey(guildId) || oneGuildPatronGuilds.containsKey(guildId)) {
+            return true;
+        }
+
+        final long userId = u.getIdLong();
+
+        if (isCachedNegative(notGuildPatron, userId)) {
+            return false;
+        }
+
+        if (hasSupportRole(u, guildPatronsRole)) {
+            addGuild(guildPatrons, guildPatronGuilds, userId, guildId);
+            return true;
+        }
+
+        notGuildPatron.put(userId, System.currentTimeMillis() + NEGATIVE_TTL);
+
+        return false;
+    }
+
+    /**
+     * Checks if the guild has patron perks without looking at who asks for them
+     *
+     * @param guildId
+     *         the id of the guild to check
+     *
+     * @return true if a guild patron or one guild patron gave the guild their perks
+     */
+    public boolean hasGuildPerks(long guildId) {
+        return guildPatronGuilds.containsKey(guildId) || oneGuildPatronGuilds.containsKey(guildId);
+    }
+
+    public void addPatron(long userId) {
+        patrons.add(userId);
+        notPatron.remove(userId);
+    }
+
+    public void removePatron(long userId) {
+        patrons.remove(userId);
+    }
+
+    /**
+     * Gives patron perks to all guilds where the user is owner or admin
+     */
+    public void addGuildPatron(@NotNull User user, @NotNull ShardManager manager) {
+        final long userId = user.getIdLong();
+
+        notGuildPatron.remove(userId);
+
+        for (Guild guild : manager.getMutualGuilds(user)) {
+            if (isOwnerOrAdmin(guild.getMember(user))) {
+                addGuild(guildPatrons, guildPatronGuilds, userId, guild.getIdLong());
+            }
+        }
+    }
+
+    public synchronized void removeGuildPatron(long userId) {
+        removeGuilds(guildPatrons.remove(userId), guildPatronGuilds, userId);
+    }
+
+    public synchronized void setOneGuildPatron(long userId, long guildId) {
+        removeOneGuildPatron(userId);
+        oneGuildPatrons.put(userId, guildId);
+        oneGuildPatronGuilds.computeIfAbsent(guildId, (k) -> ConcurrentHashMap.newKeySet()).add(userId);
+    }
+
+    public synchronized void removeOneGuildPatron(long userId) {
+        final Long guildId = oneGuildPatrons.remove(userId);
+
+        if (guildId != null) {
+            removeGuilds(Collections.singleton(guildId), oneGuildPatronGuilds, userId);
+        }
+    }
+
+    /**
+     * Removes all perks of a user, used when the user leaves the support guild
+     */
+    public void removeAll(long userId) {
+        removePatron(userId);
+        removeGuildPatron(userId);
+        removeOneGuildPatron(userId);
+    }
+
+    /**
+     * Rebuilds the patrons and guild patrons from the members of the support guild, this goes over the guilds only
+     * once instead of looking up the mutual guilds for every guild patron
+     *
+     * @param manager
+     *         the shard manager
+     */
+    public void rebuild(@NotNull ShardManager manager) {
+        final Guild supportGuild = manager.getGuildById(supportGuildId);
+
+        if (supportGuild == null) {
+            return;
+        }
+
+        final Role patronRole = supportGuild.getRoleById(patronsRole);
+        final Role guildPatronRole = supportGuild.getRoleById(guildPatronsRole);
+        final Set<Long> newPatrons = new HashSet<>();
+        final Set<Long> newGuildPatrons = new HashSet<>();
+
+        for (Member member : supportGuild.getMemberCache()) {
+            final List<Role> roles = member.getRoles();
+
+            if (roles.contains(patronRole)) {
+                newPatrons.add(member.getUser().getIdLong());
+            }
+
+            if (roles.contains(guildPatronRole)) {
+                newGuildPatrons.add(member.getUser().getIdLong());
+            }
+        }
+
+        final Map<Long, Set<Long>> newGuildsByPatron = new HashMap<>();
+
+        if (!newGuildPatrons.isEmpty()) {
+            for (Guild guild : manager.getGuildCache()) {
+                for (long patronId : newGuildPatrons) {
+                    if (isOwnerOrAdmin(guild.getMemberById(patronId))) {
+                        newGuildsByPatron.computeIfAbsent(patronId, (k) -> new HashSet<>()).add(guild.getIdLong());
+                    }
+                }
+            }
+        }
+
+        synchronized (this) {
+            patrons.retainAll(newPatrons);
+            patrons.addAll(newPatrons);
+            notPatron.keySet().removeAll(newPatrons);
+            notGuildPatron.keySet().removeAll(newGuildPatrons);
+
+            for (Long userId : new ArrayList<>(guildPatrons.keySet())) {
+                removeGuildPatron(userId);
+            }
+
+            newGuildsByPatron.forEach((userId, guilds) -> guilds.forEach(
+                (guildId) -> addGuild(guildPatrons, guildPatronGuilds, userId, guildId)
+            ));
+        }
+    }
+
+    /**
+     * Removes the negative cache entries that expired
+     */
+    public void removeExpired() {
+        final long now = System.currentTimeMillis();
+
+        notPatron.values().removeIf((until) -> until < now);
+        notGuildPatron.values().removeIf((until) -> until < now);
+    }
+
+    public int getPatronCount() {
+        return patrons.size();
+    }
+
+    public int getGuildPatronCount() {
+        return guildPatronGuilds.size();
+    }
+
+    public int getOneGuildPatronCount() {
+        return oneGuildPatrons.size();
+    }
+
+    private synchronized void addGuild(Map<Long, Set<Long>> byUser, Map<Long, Set<Long>> byGuild, long userId, long guildId) {
+        byUser.computeIfAbsent(userId, (k) -> ConcurrentHashMap.newKeySet()).add(guildId);
+        byGuild.computeIfAbsent(guildId, (k) -> ConcurrentHashMap.newKeySet()).add(userId);
+    }
+
+    private void removeGuilds(Collection<Long> guilds, Map<Long, Set<Long>> byGuild, long userId) {
+        if (guilds == null) {
+            return;
+        }
+
+        for (Long guildId : guilds) {
+            final Set<Long> users = byGuild.get(guildId);
+
+            if (users != null) {
+                users.remove(userId);
+
+                if (users.isEmpty()) {
+                    byGuild.remove(guildId);
+                }
+            }
+        }
+    }
+
+    private boolean isCachedNegative(Map<Long, Long> cache, long userId) {
+        final Long until = cache.get(userId);
+
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    private boolean hasSupportRole(@NotNull User u, long roleId) {
+        final ShardManager manager = u.getJDA().asBot().getShardManager();
+        final Guild supportGuild = manager.getGuildById(supportGuildId);
+
+        if (supportGuild == null) {
+            return false;
+        }
+
+        final Member m = supportGuild.getMember(u);
+
+        return m != null && m.getRoles().contains(supportGuild.getRoleById(roleId));
+    }
+
+    private boolean isOwnerOrAdmin(Member member) {
+        return member != null && (member.isOwner() || member.hasPermission(Permission.ADMINISTRATOR));
+    }
+}
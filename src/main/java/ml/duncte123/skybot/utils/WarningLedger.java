@@ -0,0 +1,210 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.utils;
+
+import gnu.trove.list.TLongList;
+import gnu.trove.list.array.TLongArrayList;
+import gnu.trove.map.TLongObjectMap;
+import gnu.trove.map.hash.TLongObjectHashMap;
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.connections.database.DBManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the active warnings of users in memory so we don't have to query the database every time we need to know
+ * how many warnings someone has
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class WarningLedger {
+
+    private static final Logger logger = LoggerFactory.getLogger(WarningLedger.class);
+    /**
+     * The expire date of a new warning is this many days after the warn date
+     */
+    private static final int EXPIRE_DAYS = 3;
+    /**
+     * Warnings keep counting for this many days after their expire date
+     */
+    private static final int GRACE_DAYS = 3;
+    /**
+     * Warnings are removed from the database this many days after their expire date
+     */
+    private static final int DELETE_DAYS = 5;
+    /**
+     * Users that we did not need the warnings for in this time are removed from memory
+     */
+    private static final long MAX_UNUSED = TimeUnit.HOURS.toMillis(1);
+
+    private final TLongObjectMap<TLongObjectMap<UserWarnings>> cache = new TLongObjectHashMap<>();
+    private final DBManager database;
+
+    public WarningLedger(DBManager database) {
+        this.database = database;
+    }
+
+    /**
+     * Returns the amount of warnings that still count for the user, the database is only used the first time we
+     * need the warnings of a user
+     *
+     * @param guildId
+     *         the guild to count the warnings in
+     * @param userId
+     *         the user to count the warnings for
+     *
+     * @return the amount of active warnings
+     */
+    public int getWarningCount(long guildId, long userId) {
+        final UserWarnings warnings = getOrLoad(guildId, userId);
+        final long today = LocalDate.now().toEpochDay();
+        int count = 0;
+
+        synchronized (warnings) {
+            warnings.lastUsed = System.currentTimeMillis();
+
+            for (int i = 0; i < warnings.countsUntil.size(); i++) {
+                if (warnings.countsUntil.get(i) >= today) {
+                    count++;
+                }
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Registers a new warning in memory, the caller is responsible for writing it to the database
+     *
+     * @param guildId
+     *         the guild that the warning is for
+     * @param userId
+     *         the user that got warned
+     */
+    public void addWarning(long guildId, long userId) {
+        final UserWarnings warnings = getOrLoad(guildId, userId);
+        final long countsUntil = LocalDate.now().plusDays(EXPIRE_DAYS + GRACE_DAYS).toEpochDay();
+
+        synchronized (warnings) {
+            warnings.lastUsed = System.currentTimeMillis();
+            warnings.countsUntil.add(countsUntil);
+        }
+    }
+
+    private UserWarnings getOrLoad(long guildId, long userId) {
+        synchronized (cache) {
+            TLongObjectMap<UserWarnings> guildWarnings = cache.get(guildId);
+
+            if (guildWarnings != null && guildWarnings.containsKey(userId)) {
+                return guildWarnings.get(userId);
+            }
+        }
+
+        // Load outside of the lock so a slow database does not block the other guilds
+        final UserWarnings loaded = load(guildId, userId);
+
+        synchronized (cache) {
+            TLongObjectMap<UserWarnings> guildWarnings = cache.get(guildId);
+
+            if (guildWarnings == null) {
+                guildWarnings = new TLongObjectHashMap<>();
+                cache.put(guildId, guildWarnings);
+            }
+
+            // Someone else might have loaded the user while we were waiting on the database
+            final UserWarnings existing = guildWarnings.putIfAbsent(userId, loaded);
+
+            return existing == null ? loaded : existing;
+        }
+    }
+
+    private UserWarnings load(long guildId, long userId) {
+        final UserWarnings warnings = new UserWarnings();
+
+        try (Connection conn = database.getConnManager().getConnection()) {
+            PreparedStatement smt = conn.prepareStatement(
+                "SELECT expire_date FROM warnings WHERE user_id = ? AND guild_id = ? AND expire_date >= ?");
+            smt.setString(1, Long.toString(userId));
+            smt.setString(2, Long.toString(guildId));
+            smt.setDate(3, java.sql.Date.valueOf(LocalDate.now().minusDays(GRACE_DAYS)));
+
+            ResultSet res = smt.executeQuery();
+
+            while (res.next()) {
+                warnings.countsUntil.add(res.getDate("expire_date").toLocalDate().plusDays(GRACE_DAYS).toEpochDay());
+            }
+        } catch (SQLException e) {
+            logger.error("Could not load the warnings for user {} in guild {}", userId, guildId, e);
+        }
+
+        return warnings;
+    }
+
+    /**
+     * Removes the warnings that don't count anymore from memory and the old warnings from the database, this is ran
+     * every hour by the {@link ml.duncte123.skybot.BotListener}
+     */
+    public void prune() {
+        final long today = LocalDate.now().toEpochDay();
+        final long unusedSince = System.currentTimeMillis() - MAX_UNUSED;
+
+        synchronized (cache) {
+            cache.retainEntries((guildId, guildWarnings) -> {
+                guildWarnings.retainEntries((userId, warnings) -> {
+                    synchronized (warnings) {
+                        for (int i = warnings.countsUntil.size() - 1; i >= 0; i--) {
+                            if (warnings.countsUntil.get(i) < today) {
+                                warnings.countsUntil.removeAt(i);
+                            }
+                        }
+
+                        return warnings.lastUsed > unusedSince;
+                    }
+                });
+
+                return !guildWarnings.isEmpty();
+            });
+        }
+
+        try (Connection conn = database.getConnManager().getConnection()) {
+            PreparedStatement smt = conn.prepareStatement("DELETE FROM warnings WHERE expire_date <= ?");
+            smt.setDate(1, java.sql.Date.valueOf(LocalDate.now().minusDays(DELETE_DAYS)));
+
+            int removed = smt.executeUpdate();
+
+            logger.debug("Removed {} expired warnings", removed);
+        } catch (SQLException e) {
+            logger.error("Could not remove the expired warnings", e);
+        }
+    }
+
+    private static class UserWarnings {
+        /**
+         * The epoch days until which each warning counts
+         */
+        private final TLongList countsUntil = new TLongArrayList();
+        private long lastUsed = System.currentTimeMillis();
+    }
+}
@@ -33,7 +33,10 @@ import java.util.function.BiConsumer
 @Author(nickname = "Sanduhr32", author = "Maurice R S")
 class ReactionHandler : ListenerAdapter() {
     private val executor: ScheduledExecutorService = Executors.newScheduledThreadPool(2) { r -> Thread(r, "ReactionAwaiter") }
+    // Events are handled on more than one thread, so the caches have to be visible to all of them
+    @Volatile
     private var requirementsCache: List<ReactionCacheElement> = ArrayList()
+    @Volatile
     private var consumerCache: Map<Long, Pair<CommandContext, List<SearchResult>>> = HashMap()
 
     private val defaultConsumer: BiConsumer<CommandContext, List<SearchResult>> = BiConsumer { ctx, resSet ->
@@ -0,0 +1,53 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.commands.essentials
+
+import me.duncte123.botcommons.messaging.MessageUtils
+import ml.duncte123.skybot.Author
+import ml.duncte123.skybot.objects.command.Command
+import ml.duncte123.skybot.objects.command.CommandCategory
+import ml.duncte123.skybot.objects.command.CommandContext
+import ml.duncte123.skybot.utils.EarthUtils
+import ml.duncte123.skybot.utils.ErrorReporter
+
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+class ErrorsCommand : Command() {
+
+    init {
+        this.category = CommandCategory.UNLISTED
+    }
+
+    override fun executeCommand(ctx: CommandContext) {
+        val event = ctx.event
+
+        if (!isDev(event.author)) {
+            MessageUtils.sendError(event.message)
+            return
+        }
+
+        val json = EarthUtils.errorsJSON(ErrorReporter.ins).toString(4)
+
+        event.channel.sendFile(json.toByteArray(), "errors.json").queue()
+    }
+
+    override fun help() = "Sends the errors that the bot has seen as a json file\nUsage: `$PREFIX$name`"
+
+    override fun getName() = "errors"
+}
@@ -36,11 +36,8 @@ class StatsCommand : Command() {
     override fun executeCommand(ctx: CommandContext) {
 
         val shardManager = ctx.shardManager
-        val connectedVC = shardManager.shards.map { shard ->
-            shard.voiceChannelCache.filter { vc ->
-                vc.members.contains(vc.guild.selfMember)
-            }.count()
-        }.sum()
+        val connectedVC = ctx.voiceCounter.connectedChannels
+        val musicManagers = ctx.audioUtils.musicManagers.size()
 
         val uptimeLong = ManagementFactory.getRuntimeMXBean().uptime
         val uptimeTime = Time(uptimeLong - 3600000)
@@ -66,6 +63,7 @@ class StatsCommand : Command() {
                     |**Text channels:** ${shardManager.textChannelCache.size()}
                     |**Voice channels:** ${shardManager.voiceChannelCache.size()}
                     |**Playing music count:** $connectedVC
+                    |**Music players loaded:** $musicManagers
                     |**Uptime:** ${AirUtils.getUptime(uptimeLong)} $uptimeTime
                 """.trimMargin(), false)
 
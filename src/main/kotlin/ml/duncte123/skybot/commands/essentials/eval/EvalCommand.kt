@@ -66,6 +66,7 @@ class EvalCommand : Command() {
      */
     init {
         this.category = CommandCategory.PATRON
+        this.rateLimitCost = 5
         // The GroovyShell is for the public eval
         protectedShell = object : GroovyShell(
             CompilerConfiguration()
@@ -33,6 +33,7 @@ class ImageCommand : Command() {
 
     init {
         this.category = CommandCategory.PATRON
+        this.rateLimitCost = 3
     }
 
     override fun executeCommand(ctx: CommandContext) {
@@ -42,6 +42,7 @@ class LeaveCommand : MusicCommand() {
         val manager = getMusicManager(guild, ctx.audioUtils)
 
         if (getLavalinkManager().isConnected(guild)) {
+            manager.cancelLoads()
             manager.player.stopTrack()
             getLavalinkManager().closeConnection(guild)
             guild.audioManager.sendingHandler = null
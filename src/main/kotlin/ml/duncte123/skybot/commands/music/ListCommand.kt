@@ -33,10 +33,14 @@ class ListCommand : MusicCommand() {
 
         val event = ctx.event
 
-        val mng = getMusicManager(event.guild, ctx.audioUtils)
-        val scheduler = mng.scheduler
+        val mng = ctx.audioUtils.getMusicManager(event.guild, false)
+        val queue: Queue<AudioTrack>? = mng?.scheduler?.queue
+
+        if (queue == null) {
+            sendEmbed(event, EmbedUtils.embedField(ctx.audioUtils.embedTitle, "The queue is currently empty!"))
+            return
+        }
 
-        val queue: Queue<AudioTrack> = scheduler.queue
         synchronized(queue) {
             if (queue.isEmpty()) {
                 sendEmbed(event, EmbedUtils.embedField(ctx.audioUtils.embedTitle, "The queue is currently empty!"))
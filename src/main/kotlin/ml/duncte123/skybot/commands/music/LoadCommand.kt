@@ -18,9 +18,7 @@
 
 package ml.duncte123.skybot.commands.music
 
-import me.duncte123.botcommons.messaging.EmbedUtils
 import me.duncte123.botcommons.messaging.MessageUtils
-import me.duncte123.botcommons.messaging.MessageUtils.sendEmbed
 import ml.duncte123.skybot.Author
 import ml.duncte123.skybot.objects.command.CommandContext
 import ml.duncte123.skybot.objects.command.MusicCommand
@@ -61,20 +59,14 @@ class LoadCommand : MusicCommand() {
                 // JSONArray doesn't accept a raw InputStream
                 val array = JSONArray(JSONTokener(it))
 
-                array.filter(Objects::nonNull)
-                    .forEach { obj ->
-                        // This probably announces it to the channel
-                        ctx.audioUtils.loadAndPlay(getMusicManager(event.guild, ctx.audioUtils),
-                            event.channel,
-                            event.author,
-                            obj.toString(),
-                            false,
-                            ctx,
-                            false)
-                    }
+                val urls = array.filter(Objects::nonNull).map { it.toString() }
 
-                sendEmbed(event, EmbedUtils.embedField(ctx.audioUtils.embedTitle,
-                    "Added ${array.length()} requested tracks."))
+                // Loads the tracks one by one and reports back when it is done
+                ctx.audioUtils.loadAll(getMusicManager(event.guild, ctx.audioUtils),
+                    event.channel,
+                    event.author,
+                    urls,
+                    ctx)
             } catch (exception: JSONException) {
                 MessageUtils.sendError(event.message)
                 MessageUtils.sendMsg(event, "Invalid JSON file!")
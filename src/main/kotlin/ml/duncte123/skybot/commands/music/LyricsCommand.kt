@@ -19,7 +19,6 @@
 package ml.duncte123.skybot.commands.music
 
 import me.duncte123.botcommons.messaging.EmbedUtils
-import me.duncte123.botcommons.messaging.MessageUtils
 import me.duncte123.botcommons.messaging.MessageUtils.sendEmbed
 import me.duncte123.botcommons.messaging.MessageUtils.sendMsg
 import me.duncte123.botcommons.web.WebUtils
@@ -30,14 +29,33 @@ import ml.duncte123.skybot.objects.command.CommandContext
 import ml.duncte123.skybot.objects.command.MusicCommand
 import ml.duncte123.skybot.objects.config.DunctebotConfig
 import org.apache.commons.lang3.StringUtils
+import org.json.JSONArray
 import org.json.JSONObject
+import org.json.JSONTokener
+import org.slf4j.LoggerFactory
+import java.io.File
 import java.net.URLEncoder
+import java.nio.charset.StandardCharsets
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.ScheduledExecutorService
+import java.util.concurrent.TimeUnit
+import java.util.concurrent.atomic.AtomicBoolean
 
 @Author(nickname = "duncte123", author = "Duncan Sterken")
 class LyricsCommand : MusicCommand() {
 
+    @Volatile
     private var authToken = ""
+    private val tokenRefreshStarted = AtomicBoolean(false)
     private val apiBase = "https://api.genius.com"
+    private val cache = LyricsCache(File("lyrics_cache.json"), commandService)
+    // Lookups that are still running, so people asking for the same song at the same time share one request
+    private val pendingLookups = ConcurrentHashMap<String, CompletableFuture<Lyrics?>>()
+
+    init {
+        this.rateLimitCost = 3
+    }
 
     override fun executeCommand(ctx: CommandContext) {
 
@@ -61,24 +79,21 @@ class LyricsCommand : MusicCommand() {
             return
         }
 
-        searchForSong(search, ctx.config.genius) {
-            if (it.isNullOrBlank()) {
+        // The bot starts the refresh when it is ready, this only matters when that did not happen
+        startTokenRefresh(ctx.config.genius)
+
+        getLyrics(search, ctx.config.genius).whenComplete { lyrics, _ ->
+            if (lyrics == null) {
                 sendMsg(event, "There where no lyrics found for the title of this song\n" +
                     "Alternatively you can try `${Settings.PREFIX}$name <song name>` to search for the lyrics on this song.\n" +
                     "(sometimes the song names in the player are wrong)")
             } else {
-                val url = "https://genius.com$it"
-                WebUtils.ins.scrapeWebPage(url).async { doc ->
-                    val text = doc.select("div.lyrics").first().child(0).wholeText()
-                        .replace("<br>", "\n")
-
-                    sendEmbed(event, EmbedUtils.defaultEmbed()
-                        .setTitle("Lyrics for $search", url)
-                        .setDescription(StringUtils.abbreviate(text, 1900))
-                        .appendDescription("\n\n Full lyrics on [genius.com]($url)")
-                        .setFooter("Powered by genius.com", Settings.DEFAULT_ICON)
-                        .build())
-                }
+                sendEmbed(event, EmbedUtils.defaultEmbed()
+                    .setTitle("Lyrics for $search", lyrics.url)
+                    .setDescription(StringUtils.abbreviate(lyrics.text, 1900))
+                    .appendDescription("\n\n Full lyrics on [genius.com](${lyrics.url})")
+                    .setFooter("Powered by genius.com", Settings.DEFAULT_ICON)
+                    .build())
             }
         }
     }
@@ -87,31 +102,242 @@ class LyricsCommand : MusicCommand() {
 
     override fun getName() = "lyrics"
 
-    private fun getAuthToken(config: DunctebotConfig.Genius): String {
+    private fun getLyrics(search: String, config: DunctebotConfig.Genius): CompletableFuture<Lyrics?> {
+        val key = LyricsCache.normalise(search)
+        val cached = cache[key]
+
+        if (cached != null) {
+            return CompletableFuture.completedFuture(cached)
+        }
+
+        // A callback that never comes back should not keep the song stuck in the pending lookups
+        val future = CompletableFuture<Lyrics?>().orTimeout(LOOKUP_TIMEOUT, TimeUnit.SECONDS)
+        val running = pendingLookups.putIfAbsent(key, future)
+
+        if (running != null) {
+            return running
+        }
+
+        future.whenComplete { lyrics, _ ->
+            pendingLookups.remove(key)
+
+            if (lyrics != null) {
+                cache[key] = lyrics
+            }
+        }
+
         if (authToken.isBlank()) {
+            // We don't have a token yet, get it without blocking the command thread
+            commandService.execute {
+                refreshToken(config)
+                fetchLyrics(search, future)
+            }
+        } else {
+            fetchLyrics(search, future)
+        }
+
+        return future
+    }
+
+    private fun fetchLyrics(search: String, future: CompletableFuture<Lyrics?>) {
+        searchForSong(search, {
+            if (it.isNullOrBlank()) {
+                future.complete(null)
+                return@searchForSong
+            }
+
+            val url = "https://genius.com$it"
+            WebUtils.ins.scrapeWebPage(url).async({ doc ->
+                try {
+                    // Genius changes their markup every now and then
+                    val lyricsDiv = doc.select("div.lyrics").first()
+
+                    if (lyricsDiv == null || lyricsDiv.children().isEmpty()) {
+                        future.complete(null)
+                        return@async
+                    }
+
+                    val text = lyricsDiv.child(0).wholeText()
+                        .replace("<br>", "\n")
+
+                    future.complete(Lyrics(url, text))
+                } catch (e: Exception) {
+                    logger.error("Could not read the lyrics from $url", e)
+                    future.complete(null)
+                }
+            }, { future.complete(null) })
+        }, { future.complete(null) })
+    }
+
+    /**
+     * Gets a token right away and refreshes it every hour after that, calling this more than once does nothing
+     */
+    fun startTokenRefresh(config: DunctebotConfig.Genius) {
+        if (tokenRefreshStarted.compareAndSet(false, true)) {
+            commandService.scheduleAtFixedRate({ refreshToken(config) }, 0L, 1L, TimeUnit.HOURS)
+        }
+    }
+
+    private fun refreshToken(config: DunctebotConfig.Genius) {
+        try {
             val formData = HashMap<String, Any>()
             formData["client_id"] = config.client_id
             formData["client_secret"] = config.client_secret
             formData["grant_type"] = "client_credentials"
             val raw = WebUtils.ins.preparePost("$apiBase/oauth/token", formData).execute()
-            this.authToken = JSONObject(raw).optString("access_token")
+            val token = JSONObject(raw).optString("access_token")
+
+            if (!token.isNullOrBlank()) {
+                this.authToken = token
+            }
+        } catch (e: Exception) {
+            logger.error("Could not refresh the genius token", e)
         }
-        return "Bearer $authToken"
     }
 
-    private fun searchForSong(t: String?, config: DunctebotConfig.Genius, callback: (String?) -> Unit) {
+    private fun searchForSong(t: String?, callback: (String?) -> Unit, failure: (Throwable) -> Unit) {
         WebUtils.ins.prepareRaw(WebUtils.defaultRequest()
-            .header("Authorization", getAuthToken(config))
+            .header("Authorization", "Bearer $authToken")
             .url("$apiBase/search?q=${URLEncoder.encode(t, "UTF-8")}").build(),
-            WebUtilsErrorUtils::toJSONObject).async {
-            val hits = it.getJSONObject("response").getJSONArray("hits")
-            if (hits.length() < 1) {
-                callback.invoke(null)
-            } else {
-                callback.invoke(
-                    hits.getJSONObject(0).getJSONObject("result").getString("path")
-                )
+            WebUtilsErrorUtils::toJSONObject).async({
+            try {
+                val hits = it.getJSONObject("response").getJSONArray("hits")
+                if (hits.length() < 1) {
+                    callback.invoke(null)
+                } else {
+                    callback.invoke(
+                        hits.getJSONObject(0).getJSONObject("result").getString("path")
+                    )
+                }
+            } catch (e: Exception) {
+                failure.invoke(e)
             }
+        }, failure)
+    }
+
+    companion object {
+        /**
+         * Seconds that a lookup can take before we give up on it
+         */
+        private const val LOOKUP_TIMEOUT = 30L
+    }
+}
+
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+data class Lyrics(val url: String, val text: String, val time: Long = System.currentTimeMillis())
+
+/**
+ * Keeps the lyrics of the songs that people look up the most so we don't have to scrape genius every time
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+class LyricsCache(private val file: File, private val service: ScheduledExecutorService) {
+
+    private val logger = LoggerFactory.getLogger(LyricsCache::class.java)
+    private val maxSize = 500
+    private val maxAge = TimeUnit.DAYS.toMillis(7)
+    private val saveQueued = AtomicBoolean(false)
+    // Access ordered so the first entry is always the one that was used the longest time ago
+    private val entries = object : LinkedHashMap<String, Lyrics>(16, 0.75f, true) {
+        override fun removeEldestEntry(eldest: MutableMap.MutableEntry<String, Lyrics>) = size > maxSize
+    }
+
+    init {
+        // Reading the file can take a while, the commands are made on the main thread when the bot starts
+        service.execute { load() }
+    }
+
+    operator fun get(key: String): Lyrics? {
+        synchronized(entries) {
+            val lyrics = entries[key] ?: return null
+
+            if (System.currentTimeMillis() - lyrics.time > maxAge) {
+                entries.remove(key)
+                return null
+            }
+
+            return lyrics
+        }
+    }
+
+    operator fun set(key: String, lyrics: Lyrics) {
+        synchronized(entries) {
+            entries[key] = lyrics
+        }
+
+        queueSave()
+    }
+
+    /**
+     * Writes the cache to disk in a minute from now, all the changes made until then are saved in one go
+     */
+    private fun queueSave() {
+        if (saveQueued.compareAndSet(false, true)) {
+            service.schedule({
+                saveQueued.set(false)
+                save()
+            }, 1L, TimeUnit.MINUTES)
         }
     }
+
+    private fun save() {
+        val array = JSONArray()
+
+        synchronized(entries) {
+            entries.forEach { key, lyrics ->
+                array.put(JSONObject()
+                    .put("key", key)
+                    .put("url", lyrics.url)
+                    .put("text", lyrics.text)
+                    .put("time", lyrics.time))
+            }
+        }
+
+        try {
+            file.writeText(array.toString(), StandardCharsets.UTF_8)
+        } catch (e: Exception) {
+            logger.error("Could not save the lyrics cache", e)
+        }
+    }
+
+    private fun load() {
+        if (!file.exists()) {
+            return
+        }
+
+        try {
+            val array = file.inputStream().use { JSONArray(JSONTokener(it)) }
+            val oldest = System.currentTimeMillis() - maxAge
+
+            for (i in 0 until array.length()) {
+                val json = array.getJSONObject(i)
+                val lyrics = Lyrics(json.getString("url"), json.getString("text"), json.getLong("time"))
+
+                if (lyrics.time > oldest) {
+                    synchronized(entries) {
+                        // Lyrics that were looked up while we were loading are newer
+                        entries.putIfAbsent(json.getString("key"), lyrics)
+                    }
+                }
+            }
+        } catch (e: Exception) {
+            logger.error("Could not load the lyrics cache", e)
+        }
+    }
+
+    companion object {
+        private val BRACKETS_REGEX = "[\\[(].*?[])]".toRegex()
+        private val SYMBOLS_REGEX = "[^\\p{L}\\p{N} ]".toRegex()
+        private val SPACES_REGEX = "\\s+".toRegex()
+
+        /**
+         * Turns "Artist - Song (Official Video) [HD]" into "artist song" so different titles for the same song share a
+         * cache entry
+         */
+        @JvmStatic
+        fun normalise(title: String) = title.toLowerCase()
+            .replace(BRACKETS_REGEX, "")
+            .replace(SYMBOLS_REGEX, " ")
+            .replace(SPACES_REGEX, " ")
+            .trim()
+    }
 }
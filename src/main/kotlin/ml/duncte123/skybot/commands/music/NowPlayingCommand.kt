@@ -20,9 +20,7 @@ package ml.duncte123.skybot.commands.music
 
 import me.duncte123.botcommons.messaging.EmbedUtils
 import me.duncte123.botcommons.messaging.MessageUtils.sendEmbed
-import me.duncte123.botcommons.web.WebUtils
 import ml.duncte123.skybot.Author
-import ml.duncte123.skybot.objects.ILoveStream
 import ml.duncte123.skybot.objects.command.CommandContext
 import ml.duncte123.skybot.objects.command.MusicCommand
 import ml.duncte123.skybot.utils.MusicEmbedUtils.playerEmbed
@@ -42,16 +40,29 @@ class NowPlayingCommand : MusicCommand() {
             player.playingTrack != null && !player.playingTrack.info.isStream ->
                 EmbedUtils.embedMessage("**Playing** [${player.playingTrack.info.title}](${player.playingTrack.info.uri})\n" + playerEmbed(mng))
             player.playingTrack != null && player.playingTrack.info.isStream -> {
-                val json = WebUtils.ins.getJSONObject("https://www.iloveradio.de/typo3conf/ext/ep_channel/Scripts/playlist.php").execute()
-                val stream = (ctx.commandManager.getCommand("radio") as RadioCommand).radioStreams.first { it.url == player.playingTrack.info.uri }
-                if (stream is ILoveStream) {
-                    val channeldata = json!!.getJSONObject("channel-${stream.npChannel}")
-                    EmbedUtils.defaultEmbed().setDescription("**Playing [${channeldata.getString("title")}]" +
-                        "(${stream.url}) by ${channeldata.getString("artist")}**")
-                        .setThumbnail("https://www.iloveradio.de${channeldata.getString("cover")}")
-                        .setColor(Color.decode(channeldata.getString("color")))
-                } else {
-                    EmbedUtils.embedMessage("**Playing [${stream.name}](${stream.url})")
+                val radioStreams = ctx.variables.radioStreams
+                val stream = radioStreams.getByUrl(player.playingTrack.info.uri)
+                val song = if (stream == null) null else radioStreams.getNowPlaying(stream)
+
+                when {
+                    stream == null ->
+                        EmbedUtils.embedMessage("**Playing [${player.playingTrack.info.title}](${player.playingTrack.info.uri})**")
+                    song == null ->
+                        EmbedUtils.embedMessage("**Playing [${stream.name}](${stream.url})**")
+                    else -> {
+                        val embed = EmbedUtils.defaultEmbed().setDescription("**Playing [${song.title}](${stream.url})" +
+                            "${if (song.artist.isNullOrBlank()) "" else " by ${song.artist}"}**")
+
+                        if (song.cover != null) {
+                            embed.setThumbnail(song.cover)
+                        }
+
+                        if (song.color != null) {
+                            embed.setColor(Color.decode(song.color))
+                        }
+
+                        embed
+                    }
                 }
             }
             else -> EmbedUtils.embedMessage("The player is not currently playing anything!")
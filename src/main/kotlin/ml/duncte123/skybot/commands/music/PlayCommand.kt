@@ -56,7 +56,7 @@ open class PlayCommand : MusicCommand() {
                 }
 
                 player.playingTrack != null -> MessageUtils.sendMsg(event, "Player is already playing!")
-                scheduler.queue.isEmpty() -> MessageUtils.sendMsg(event, "The current audio queue is empty! Add something to the queue first!\n" +
+                synchronized(scheduler.queue) { scheduler.queue.isEmpty() } -> MessageUtils.sendMsg(event, "The current audio queue is empty! Add something to the queue first!\n" +
                     "For example `${PREFIX}play https://www.youtube.com/watch?v=KKOBXrRzZwA`")
             }
             return
@@ -22,24 +22,16 @@ import me.duncte123.botcommons.messaging.EmbedUtils
 import me.duncte123.botcommons.messaging.MessageUtils.*
 import ml.duncte123.skybot.Author
 import ml.duncte123.skybot.SinceSkybot
-import ml.duncte123.skybot.objects.ILoveStream
 import ml.duncte123.skybot.objects.RadioStream
 import ml.duncte123.skybot.objects.command.CommandContext
 import ml.duncte123.skybot.objects.command.MusicCommand
 import net.dv8tion.jda.core.MessageBuilder
 import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent
-import java.util.*
 
 @Author(nickname = "Sanduhr32", author = "Maurice R S")
 @SinceSkybot("3.52.2")
 class RadioCommand : MusicCommand() {
 
-    var radioStreams: List<RadioStream> = ArrayList()
-
-    init {
-        loadStations()
-    }
-
     override fun executeCommand(ctx: CommandContext) {
 
         val event = ctx.event
@@ -61,24 +53,23 @@ class RadioCommand : MusicCommand() {
             1 -> {
                 when (ctx.args[0]) {
                     "list" -> {
-                        sendRadioSender(event = event)
+                        sendRadioSender(event = event, streams = ctx.variables.radioStreams.streams)
                         return
                     }
                     "fulllist" -> {
-                        sendRadioSender(event = event, full = true)
+                        sendRadioSender(event = event, streams = ctx.variables.radioStreams.streams, full = true)
                         return
                     }
                     else -> {
-                        val radio = radioStreams.firstOrNull { it.name == ctx.args[0].replace(oldValue = "❤", newValue = "love") }
+                        val radio = ctx.variables.radioStreams.getByName(ctx.args[0].replace(oldValue = "❤", newValue = "love"))
                         if (radio == null) {
                             sendErrorWithMessage(event.message, "The stream is invalid!")
                             return
                         }
+                        // Drop everything in one go so the stream is the only track that gets started
+                        scheduler.removeRange(0, Int.MAX_VALUE)
+                        mng.player.stopTrack()
                         ctx.audioUtils.loadAndPlay(mng, event.channel, event.author, radio.url, ctx, false)
-                        scheduler.queue.forEach {
-                            if (it.info.uri != radio.url)
-                                scheduler.nextTrack()
-                        }
                     }
                 }
             }
@@ -90,58 +81,18 @@ class RadioCommand : MusicCommand() {
 
     override fun help(): String = """Adds a radio http stream to your queue and goes to it!
         |**YOU HAVE TO UPVOTE!**
-        |Yes it skips all songs until it finds the stream it may bug if the current stream has the same url.
+        |Yes it skips all songs in the queue and starts the stream right away.
         |Usage: `$PREFIX$name <(full)list/station name>`""".trimMargin()
 
     override fun getName(): String = "radio"
 
     override fun getAliases(): Array<String> = arrayOf("pstream", "stream", "webstream", "webradio")
 
-    private fun sendRadioSender(event: GuildMessageReceivedEvent, full: Boolean = false) {
-        val streams = radioStreams
+    private fun sendRadioSender(event: GuildMessageReceivedEvent, streams: List<RadioStream>, full: Boolean = false) {
         val string = streams.filter { if (!full) it.public else true }
             .joinToString(separator = "\n") { it.toEmbedString() }
         for (it in MessageBuilder().append(string).buildAll(MessageBuilder.SplitPolicy.NEWLINE)) {
             sendEmbed(event, EmbedUtils.defaultEmbed().setDescription(it.contentRaw).build())
         }
     }
-
-    private fun loadStations() {
-        //Sorting via locales https://lh.2xlibre.net/locales/
-
-        //de_DE radio stations
-        radioStreams += ILoveStream(stationName = "iloveradio", channel = 1)
-        radioStreams += ILoveStream(stationName = "ilove2dance", channel = 2)
-        radioStreams += ILoveStream(stationName = "ilovetop100charts", channel = 9)
-        radioStreams += ILoveStream(stationName = "ilovethebattle", channel = 3, npChannel = 4, public = false)
-        radioStreams += ILoveStream(stationName = "ilovebass", channel = 4, npChannel = 3, public = false)
-        radioStreams += ILoveStream(stationName = "ilovemashup", channel = 5, public = false)
-        radioStreams += ILoveStream(stationName = "ilovedreist", channel = 6, public = false)
-        radioStreams += ILoveStream(stationName = "iloveberlin", channel = 7, public = false)
-        radioStreams += ILoveStream(stationName = "ilovexmas", channel = 8, public = false)
-        radioStreams += ILoveStream(stationName = "iloveandchill", channel = 10, public = false)
-        radioStreams += ILoveStream(stationName = "ilovetop100dance&dj", channel = 103, public = false)
-        radioStreams += ILoveStream(stationName = "ilovetop100pop", channel = 105, public = false)
-        radioStreams += ILoveStream(stationName = "ilovetop100hiphop", channel = 108, public = false)
-        radioStreams += ILoveStream(stationName = "ilovepopstars", channel = 11, npChannel = 16, public = false)
-        radioStreams += ILoveStream(stationName = "ilovehistory", channel = 12, npChannel = 15, public = false)
-        radioStreams += ILoveStream(stationName = "ilovehiphop", channel = 13, npChannel = 17, public = false)
-        radioStreams += ILoveStream(stationName = "ilovethesun", channel = 15, npChannel = 19)
-        radioStreams += ILoveStream(stationName = "iloveurban", channel = -1, npChannel = 12, internal = false, public = false)
-        radioStreams += ILoveStream(stationName = "ilovegroove", channel = -1, npChannel = 13, internal = false, public = false)
-        radioStreams += ILoveStream(stationName = "ilovenitroxedm", channel = -1, npChannel = 11, internal = false, public = false)
-        radioStreams += ILoveStream(stationName = "ilovenitroxdeep", channel = -1, npChannel = 24, internal = false, public = false)
-
-        //nl_NL radio stations
-        radioStreams += RadioStream("slam", "http://playerservices.streamtheworld.com/api/livestream-redirect/SLAM_MP3_SC", "https://live.slam.nl/slam-live/")
-        radioStreams += RadioStream("radio538", "http://playerservices.streamtheworld.com/api/livestream-redirect/RADIO538.mp3", "https://www.538.nl/")
-        radioStreams += RadioStream("3fm", "http://icecast.omroep.nl/3fm-sb-mp3", "https://www.npo3fm.nl/", false)
-        radioStreams += RadioStream("skyradio", "http://playerservices.streamtheworld.com/api/livestream-redirect/SKYRADIO_SC", "http://www.skyradio.nl/", false)
-        radioStreams += RadioStream("qmusic", "http://icecast-qmusicnl-cdp.triple-it.nl/Qmusic_nl_live_96.mp3", "http://qmusic.nl/", false)
-
-        //International radio stations
-        //TODO: add international radio stations
-        radioStreams += RadioStream("trapfm", "http://stream.trap.fm:6004/;stream.mp3", "http://trap.fm/")
-        radioStreams += RadioStream("listen.moe", "https://listen.moe/stream", "https://listen.moe/stream")
-    }
 }
@@ -47,14 +47,7 @@ class ReaddCommand : MusicCommand() {
         val track = t.makeClone()
         track.userData = t.userData
 
-        // This is from AudioUtils.java but in Kotlin
-        var title = track.info.title
-        if (track.info.isStream) {
-            val stream = (ctx.commandManager.getCommand("radio") as RadioCommand)
-                .radioStreams.stream().filter { s -> s.url == track.info.uri }.findFirst()
-            if (stream.isPresent)
-                title = stream.get().name
-        }
+        val title = ctx.variables.radioStreams.getDisplayName(track.info)
         var msg = "Adding to queue: $title"
         if (manager.player.playingTrack == null) {
             msg += "\nand the Player has started playing;"
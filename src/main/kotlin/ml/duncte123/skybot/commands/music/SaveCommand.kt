@@ -18,12 +18,12 @@
 
 package ml.duncte123.skybot.commands.music
 
+import me.duncte123.botcommons.messaging.MessageUtils
 import ml.duncte123.skybot.Author
+import ml.duncte123.skybot.audio.GuildMusicManager
 import ml.duncte123.skybot.objects.command.CommandContext
 import ml.duncte123.skybot.objects.command.MusicCommand
-import ml.duncte123.skybot.utils.AudioUtils
 import net.dv8tion.jda.core.MessageBuilder
-import net.dv8tion.jda.core.entities.Guild
 import org.json.JSONArray
 
 import java.nio.charset.StandardCharsets.UTF_8
@@ -34,9 +34,15 @@ class SaveCommand : MusicCommand() {
     override fun executeCommand(ctx: CommandContext) {
 
         val event = ctx.event
+        val manager = ctx.audioUtils.getMusicManager(event.guild, false)
+
+        if (manager == null || manager.player.playingTrack == null) {
+            MessageUtils.sendMsg(event, "The player is not playing.")
+            return
+        }
 
         event.channel.sendFile(
-            toByteArray(event.guild, ctx.audioUtils),
+            toByteArray(manager),
             "playlist.json",
             MessageBuilder()
                 .append(event.author)
@@ -44,13 +50,13 @@ class SaveCommand : MusicCommand() {
                 .build()).queue()
     }
 
-    private fun toByteArray(guild: Guild?, audioUtils: AudioUtils): ByteArray {
+    private fun toByteArray(manager: GuildMusicManager): ByteArray {
         val array = JSONArray()
-        val manager = getMusicManager(guild, audioUtils)
 
-        val urls = manager.scheduler.queue
-            .map { it.identifier }
-            .toMutableList()
+        val queue = manager.scheduler.queue
+        val urls = synchronized(queue) {
+            queue.map { it.identifier }.toMutableList()
+        }
 
         urls.add(0, manager.player.playingTrack.identifier)
 
@@ -30,6 +30,10 @@ import java.util.concurrent.TimeUnit
 @Author(nickname = "Sanduhr32", author = "Maurice R S")
 class SearchCommand : MusicCommand() {
 
+    init {
+        this.rateLimitCost = 3
+    }
+
     override fun executeCommand(ctx: CommandContext) {
 
         val event = ctx.event
@@ -34,7 +34,7 @@ class ShuffleCommand : MusicCommand() {
 
         val mng = getMusicManager(event.guild, ctx.audioUtils)
         val scheduler = mng.scheduler
-        if (scheduler.queue.isEmpty()) {
+        if (synchronized(scheduler.queue) { scheduler.queue.isEmpty() }) {
             MessageUtils.sendMsg(event, "There are no songs to shuffle")
             return
         }
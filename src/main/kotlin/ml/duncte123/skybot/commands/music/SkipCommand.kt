@@ -46,15 +46,13 @@ class SkipCommand : MusicCommand() {
             if (!args[0].matches("\\d{1,10}".toRegex())) {
                 1
             } else {
-                args[0].toInt().coerceIn(1, scheduler.queue.size.coerceAtLeast(1))
+                args[0].toInt().coerceAtLeast(1)
             }
         } else {
             1
         }
 
-        repeat(count) {
-            scheduler.nextTrack()
-        }
+        scheduler.skipTracks(count)
 
         if (mng.player.playingTrack != null) {
             val trackUserData = mng.player.playingTrack.userData
@@ -37,12 +37,16 @@ class StopCommand : MusicCommand() {
         val player = mng.player
         val scheduler = mng.scheduler
 
+        mng.cancelLoads()
+
         if (mng.player.playingTrack == null) {
             MessageUtils.sendMsg(event, "The player is not playing.")
             return
         }
 
-        scheduler.queue.clear()
+        synchronized(scheduler.queue) {
+            scheduler.queue.clear()
+        }
         player.stopTrack()
         player.isPaused = false
         MessageUtils.sendMsg(event, "Playback has been completely stopped and the queue has been cleared.")
@@ -42,3 +42,15 @@ class ILoveStream(
     website = "http://www.iloveradio.de/streams/",
     public = public
 )
+
+/**
+ * The song that a radio station is playing according to the last time that we checked
+ */
+data class RadioNowPlaying(
+    val title: String,
+    val artist: String? = null,
+    val cover: String? = null,
+    val color: String? = null
+) {
+    override fun toString() = if (artist.isNullOrBlank()) title else "$title by $artist"
+}
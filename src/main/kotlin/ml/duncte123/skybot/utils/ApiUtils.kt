@@ -91,7 +91,7 @@ object ApiUtils {
             val warnings = ArrayList<Warning>()
 
             val smt = conn.prepareStatement(
-                "SELECT * FROM `warnings` WHERE user_id=? AND guild_id=? AND (CURDATE() <= DATE_ADD(expire_date, INTERVAL 3 DAY))")
+                "SELECT * FROM `warnings` WHERE user_id=? AND guild_id=? AND expire_date >= DATE_SUB(CURDATE(), INTERVAL 3 DAY)")
             smt.setString(1, userId)
             smt.setString(2, guildId)
             val result = smt.executeQuery()
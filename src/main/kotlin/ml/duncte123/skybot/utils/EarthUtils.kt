@@ -63,6 +63,31 @@ class EarthUtils {
                 .put("stacktraces", stacktraceArrayToJSONArray(throwable.stackTrace))
         }
 
+        /**
+         *
+         * This function generates a debug JSON of the errors that the [ErrorReporter] grouped together.
+         *
+         * @param reporter the [ErrorReporter] that provides data.
+         * @returns a [JSONObject] that contains the counts and a sample of every error.
+         *
+         *
+         * @see [EarthUtils.throwableToJSONObject]
+         */
+        @JvmStatic
+        fun errorsJSON(reporter: ErrorReporter): JSONObject {
+            val errors = JSONArray(reporter.errors.map {
+                JSONObject().put("fingerprint", it.fingerprint)
+                    .put("className", it.className)
+                    .put("count", it.count)
+                    .put("lastMinute", it.lastWindowCount)
+                    .put("firstSeen", it.firstSeen)
+                    .put("lastSeen", it.lastSeen)
+                    .put("sample", it.sample?.let { sample -> throwableToJSONObject(sample) })
+            })
+
+            return JSONObject().put("time", OffsetDateTime.now()).put("dropped", reporter.dropped).put("errors", errors)
+        }
+
         /**
          * This small function wraps [List]<[JSONObject]> into an [JSONArray]
          *
@@ -181,7 +206,8 @@ class EarthUtils {
          */
         @JvmStatic
         private fun schedulerToJSON(scheduler: TrackScheduler): JSONObject =
-            JSONObject().put("repeating", scheduler.isRepeating).put("queue_size", scheduler.queue.size)
+            JSONObject().put("repeating", scheduler.isRepeating)
+                .put("queue_size", synchronized(scheduler.queue) { scheduler.queue.size })
 
         /**
          * This small function that converts a [AudioTrack] into a [JSONObject]
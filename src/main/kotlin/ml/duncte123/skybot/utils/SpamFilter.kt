@@ -132,9 +132,9 @@ class SpamFilter(private val database: DBManager, private val variables: Variabl
             }
 
             if (shouldModerate) {
-                val warnings = ModerationUtils.getWarningCountForUser(database, user, author.guild) + 1
+                val warnings = ModerationUtils.getWarningCountForUser(variables, user, author.guild) + 1
                 val ratelimit = rates[warnings.coerceIn(0, 5)]
-                ModerationUtils.addWarningToDb(database, jda.selfUser, user, "Spam", guild)
+                ModerationUtils.addWarningToDb(variables, jda.selfUser, user, "Spam", guild)
                 if (data.third) {
                     ModerationUtils.kickUser(guild, author, msg.textChannel, "Spam")
                 } else {
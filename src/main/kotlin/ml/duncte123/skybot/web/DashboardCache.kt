@@ -0,0 +1,79 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.web
+
+import ml.duncte123.skybot.Author
+import net.dv8tion.jda.core.Permission
+import net.dv8tion.jda.core.entities.Guild
+import net.dv8tion.jda.core.entities.Role
+import net.dv8tion.jda.core.entities.TextChannel
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Caches the channels and roles that we show on the dashboard of a guild, the bot listener removes a guild from
+ * this cache when its channels or roles change
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+class DashboardCache {
+
+    private val guilds = ConcurrentHashMap<Long, GuildView>()
+
+    fun getView(guild: Guild): GuildView {
+        val now = System.currentTimeMillis()
+
+        return guilds.compute(guild.idLong) { _, cached ->
+            if (cached != null && cached.expires > now) cached else createView(guild, now)
+        }!!
+    }
+
+    fun invalidate(guildId: Long) {
+        guilds.remove(guildId)
+    }
+
+    /**
+     * Removes the views that expired, the dashboard is not used a lot so most of them will be gone
+     */
+    fun removeExpired() {
+        val now = System.currentTimeMillis()
+
+        guilds.values.removeIf { it.expires < now }
+    }
+
+    private fun createView(guild: Guild, now: Long): GuildView {
+        val self = guild.selfMember
+
+        val goodChannels = guild.textChannelCache.filter {
+            self.hasPermission(it, Permission.MESSAGE_READ, Permission.MESSAGE_WRITE)
+        }.toList()
+
+        val goodRoles = guild.roles.filter {
+            self.roles[0].canInteract(it) && it.name != "@everyone" && it.name != "@here"
+        }.toList()
+
+        return GuildView(goodChannels, goodRoles, now + TTL)
+    }
+
+    data class GuildView(val goodChannels: List<TextChannel>, val goodRoles: List<Role>, val expires: Long)
+
+    companion object {
+        // We can miss permission changes, so don't keep the views around for too long
+        private val TTL = TimeUnit.MINUTES.toMillis(2)
+    }
+}
@@ -0,0 +1,101 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.web
+
+import ml.duncte123.skybot.Author
+import spark.Request
+import spark.Response
+import java.time.Instant
+import java.time.ZoneOffset
+import java.time.format.DateTimeFormatter
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
+
+/**
+ * Caches the rendered html of pages that look the same for everyone, browsers get an etag so they can revalidate
+ * without downloading the page again
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+class PageCache(private val ttl: Long = TimeUnit.MINUTES.toMillis(10)) {
+
+    private val pages = ConcurrentHashMap<String, CachedPage>()
+
+    /**
+     * Serves a page from the cache, the page is rendered when it is not cached or expired
+     *
+     * @param key the cache key, this should contain everything that changes the page
+     * @param render renders the page
+     *
+     * @return the body for spark
+     */
+    fun serve(request: Request, response: Response, key: String, render: () -> String): Any {
+        val now = System.currentTimeMillis()
+
+        // compute makes sure that a page is only rendered once when a lot of people request it at the same time
+        val page = pages.compute(key) { _, cached ->
+            if (cached != null && cached.expires > now) cached else createPage(render(), now)
+        }!!
+
+        if (pages.size > MAX_PAGES) {
+            pages.values.removeIf { it.expires < now }
+        }
+
+        response.header("ETag", page.etag)
+        response.header("Last-Modified", page.lastModified)
+        // Browsers have to check with us every time, the dashboard pages still need the login check
+        response.header("Cache-Control", "no-cache")
+        response.header("Vary", "Accept-Encoding")
+
+        if (request.headers("If-None-Match") == page.etag) {
+            response.status(304)
+            return ""
+        }
+
+        if (request.headers("Accept-Encoding")?.contains("gzip") == true) {
+            // Spark compresses the body when this header is set
+            response.header("Content-Encoding", "gzip")
+        }
+
+        return page.body
+    }
+
+    /**
+     * Renders a page right away so the templates are compiled before the first visitor shows up
+     */
+    fun preload(key: String, render: () -> String) {
+        pages[key] = createPage(render(), System.currentTimeMillis())
+    }
+
+    fun clear() {
+        pages.clear()
+    }
+
+    private fun createPage(body: String, now: Long): CachedPage {
+        val etag = "W/\"${Integer.toHexString(body.hashCode())}-${body.length}\""
+        val lastModified = DateTimeFormatter.RFC_1123_DATE_TIME.format(Instant.ofEpochMilli(now).atOffset(ZoneOffset.UTC))
+
+        return CachedPage(body, etag, lastModified, now + ttl)
+    }
+
+    private data class CachedPage(val body: String, val etag: String, val lastModified: String, val expires: Long)
+
+    companion object {
+        private const val MAX_PAGES = 500
+    }
+}
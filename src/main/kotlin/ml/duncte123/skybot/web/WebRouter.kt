@@ -24,6 +24,7 @@ import me.duncte123.botcommons.web.WebUtils
 import ml.duncte123.skybot.Author
 import ml.duncte123.skybot.Settings
 import ml.duncte123.skybot.Variables
+import ml.duncte123.skybot.metrics.MetricsRegistry
 import ml.duncte123.skybot.objects.WebVariables
 import ml.duncte123.skybot.utils.AirUtils.colorToHex
 import ml.duncte123.skybot.utils.GuildSettingsUtils
@@ -32,11 +33,9 @@ import ml.duncte123.skybot.web.controllers.Commands
 import ml.duncte123.skybot.web.controllers.OneGuildRegister
 import ml.duncte123.skybot.web.controllers.Suggestions
 import ml.duncte123.skybot.web.controllers.api.*
-import ml.duncte123.skybot.web.controllers.crons.CronJobs
 import ml.duncte123.skybot.web.controllers.dashboard.*
 import ml.duncte123.skybot.web.controllers.errors.HttpErrorHandlers
 import net.dv8tion.jda.bot.sharding.ShardManager
-import net.dv8tion.jda.core.Permission
 import org.apache.commons.lang3.RandomStringUtils
 import spark.ModelAndView
 import spark.Spark.path
@@ -50,6 +49,8 @@ class WebRouter(val shardManager: ShardManager, val variables: Variables) {
     private val database = variables.database
 
     private val engine = JtwigTemplateEngine("views")
+    private val pageCache = PageCache()
+    private val dashboardCache = variables.dashboardCache
     private val oAuth2Client = OAuth2Client.Builder()
         .setClientId(config.discord.oauth.clientId)
         .setClientSecret(config.discord.oauth.clientSecret)
@@ -64,9 +65,18 @@ class WebRouter(val shardManager: ShardManager, val variables: Variables) {
 
         get("/", WebVariables().put("title", "Home"), "home.twig")
 
+        get("/metrics") {
+            response.type(MetricsRegistry.CONTENT_TYPE)
+
+            return@get MetricsRegistry.ins.scrape()
+        }
+
         get("/commands") {
-            val output = Commands.show(request, variables, shardManager)
-            return@get engine.render(output)
+            val prefix = Commands.getPrefix(request, variables, shardManager)
+
+            return@get pageCache.serve(request, response, "commands.twig:$prefix") {
+                engine.render(Commands.show(prefix, variables))
+            }
         }
 
         get("/suggest", WebVariables().put("title", "Leave a suggestion")
@@ -85,8 +95,9 @@ class WebRouter(val shardManager: ShardManager, val variables: Variables) {
         }
 
         get("/liveServerCount") {
-            return@get engine.render(ModelAndView(mapOf("nothing" to "something"),
-                "static/liveServerCount.twig"))
+            return@get pageCache.serve(request, response, "static/liveServerCount.twig") {
+                engine.render(ModelAndView(mapOf("nothing" to "something"), "static/liveServerCount.twig"))
+            }
         }
 
         get("/register-server", WebVariables()
@@ -221,12 +232,6 @@ class WebRouter(val shardManager: ShardManager, val variables: Variables) {
 
         }
 
-        path("/crons") {
-            get("/clearExpiredWarns") {
-                return@get CronJobs.clearExpiredWarns(database)
-            }
-        }
-
         notFound {
             return@notFound HttpErrorHandlers.notFound(this, engine)
         }
@@ -237,43 +242,48 @@ class WebRouter(val shardManager: ShardManager, val variables: Variables) {
     }
 
     fun get(path: String, map: WebVariables, model: String, withGuildData: Boolean = false) {
-        get(path) {
-
-            if (withGuildData) {
-                val guild = WebHelpers.getGuildFromRequest(request, shardManager)
-
-                if (guild != null) {
-                    val tcs = guild.textChannelCache.filter {
-                        it.guild.selfMember.hasPermission(it, Permission.MESSAGE_READ, Permission.MESSAGE_WRITE)
-                    }.toList()
+        map.put("color", colorToHex(Settings.defaultColour))
 
-                    val goodRoles = guild.roles.filter {
-                        guild.selfMember.roles[0].canInteract(it) && it.name != "@everyone" && it.name != "@here"
-                    }.toList()
+        if (!withGuildData) {
+            // These pages are the same for everyone
+            val render = { engine.render(ModelAndView(map.map, model)) }
 
-                    val colorRaw = EmbedUtils.getColorOrDefault(guild.idLong, Settings.defaultColour)
+            pageCache.preload(model, render)
 
-                    map.put("goodChannels", tcs)
-                    map.put("goodRoles", goodRoles)
-                    map.put("settings", GuildSettingsUtils.getGuild(guild, variables))
-                    map.put("guild", guild)
-                    map.put("guildColor", colorToHex(colorRaw))
+            get(path) {
+                return@get pageCache.serve(request, response, model, render)
+            }
 
-                    val session = request.session()
-                    val message: String? = session.attribute(FLASH_MESSAGE)
+            return
+        }
 
-                    if (!message.isNullOrEmpty()) {
-                        session.attribute(FLASH_MESSAGE, null)
-                        map.put("message", message)
-                    } else {
-                        map.put("message", false)
-                    }
+        get(path) {
+            // Every request gets its own copy, the guild data is different for each request
+            val data = HashMap(map.map)
+            val guild = WebHelpers.getGuildFromRequest(request, shardManager)
+
+            if (guild != null) {
+                val view = dashboardCache.getView(guild)
+                val colorRaw = EmbedUtils.getColorOrDefault(guild.idLong, Settings.defaultColour)
+
+                data["goodChannels"] = view.goodChannels
+                data["goodRoles"] = view.goodRoles
+                data["settings"] = GuildSettingsUtils.getGuild(guild, variables)
+                data["guild"] = guild
+                data["guildColor"] = colorToHex(colorRaw)
+
+                val session = request.session()
+                val message: String? = session.attribute(FLASH_MESSAGE)
+
+                if (!message.isNullOrEmpty()) {
+                    session.attribute(FLASH_MESSAGE, null)
+                    data["message"] = message
+                } else {
+                    data["message"] = false
                 }
             }
 
-            map.put("color", colorToHex(Settings.defaultColour))
-
-            engine.render(ModelAndView(map.map, model))
+            engine.render(ModelAndView(data, model))
         }
     }
 
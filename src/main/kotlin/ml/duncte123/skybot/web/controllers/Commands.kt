@@ -31,23 +31,25 @@ import spark.Request
 @Author(nickname = "duncte123", author = "Duncan Sterken")
 object Commands {
 
-    fun show(request: Request, variables: Variables, shardManager: ShardManager): Any {
-        val map = WebVariables().put("title", "List of commands").put("prefix", Settings.PREFIX)
-            .put("commands", variables.commandManager.sortedCommands)
-
+    fun getPrefix(request: Request, variables: Variables, shardManager: ShardManager): String {
         if (request.queryParams().contains("server")) {
             val serverId: String = request.queryParams("server")
             if (serverId.isNotEmpty()) {
                 val guild = shardManager.getGuildById(serverId)
 
                 if (guild != null) {
-                    val settings = GuildSettingsUtils.getGuild(guild, variables)
-                    map.put("prefix", settings.customPrefix)
+                    return GuildSettingsUtils.getGuild(guild, variables).customPrefix
                 }
             }
         }
 
-        map.put("color", AirUtils.colorToHex(Settings.defaultColour))
+        return Settings.PREFIX
+    }
+
+    fun show(prefix: String, variables: Variables): ModelAndView {
+        val map = WebVariables().put("title", "List of commands").put("prefix", prefix)
+            .put("commands", variables.commandManager.sortedCommands)
+            .put("color", AirUtils.colorToHex(Settings.defaultColour))
 
         return ModelAndView(map.map, "commands.twig")
     }
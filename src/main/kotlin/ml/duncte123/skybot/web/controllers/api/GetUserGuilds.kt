@@ -28,11 +28,26 @@ import net.dv8tion.jda.core.Permission
 import org.json.JSONObject
 import spark.Request
 import spark.Response
-import java.util.*
+import java.util.concurrent.CompletableFuture
+import java.util.concurrent.ConcurrentHashMap
+import java.util.concurrent.TimeUnit
 
 @Author(nickname = "duncte123", author = "Duncan Sterken")
 object GetUserGuilds {
 
+    /**
+     * How long we keep the guilds of a user session
+     */
+    private val CACHE_TTL = TimeUnit.MINUTES.toMillis(1)
+    /**
+     * How long a request waits for discord before giving up
+     */
+    private const val FETCH_TIMEOUT = 10L
+    private const val MAX_SESSIONS = 1000
+
+    // Key: the user session, this has the id of the discord user in it so a new login on the same browser gets its own entry
+    private val cache = ConcurrentHashMap<String, CachedGuilds>()
+
     fun show(request: Request, response: Response, oAuth2Client: OAuth2Client, shardManager: ShardManager): Any {
         val attributes = request.session().attributes()
 
@@ -43,20 +58,59 @@ object GetUserGuilds {
                 .put("code", response.status())
         }
 
-        val guilds = ArrayList<JSONObject>()
+        val userSession: String = request.session().attribute(WebRouter.USER_SESSION)
+        // Spark has no async routes, so a cache miss still holds this thread until discord answers
+        val userGuilds = try {
+            getGuilds(userSession, request, oAuth2Client).get(FETCH_TIMEOUT, TimeUnit.SECONDS)
+        } catch (e: Exception) {
+            response.status(502)
 
-        oAuth2Client.getGuilds(WebHelpers.getSession(request, oAuth2Client)).complete().forEach {
-            if (it.hasPermission(Permission.ADMINISTRATOR) || it.hasPermission(Permission.MANAGE_SERVER)) {
-                guilds.add(guildToJson(it, shardManager))
-            }
+            return JSONObject()
+                .put("status", "error")
+                .put("message", "DISCORD_ERROR")
+                .put("code", 502)
         }
 
+        val guilds = userGuilds.map { guildToJson(it, shardManager) }
+
         return JSONObject()
             .put("status", "success")
             .put("guilds", guilds)
             .put("code", response.status())
     }
 
+    /**
+     * Gets the guilds that the user can manage from the cache, when they are not cached one request goes out to
+     * discord and everyone asking for the same user session waits on that request
+     */
+    private fun getGuilds(userSession: String, request: Request, oAuth2Client: OAuth2Client): CompletableFuture<List<OAuth2Guild>> {
+        val now = System.currentTimeMillis()
+
+        if (cache.size > MAX_SESSIONS) {
+            cache.values.removeIf { it.expires < now }
+        }
+
+        return cache.compute(userSession) { _, cached ->
+            if (cached != null && cached.expires > now && !cached.future.isCompletedExceptionally) {
+                return@compute cached
+            }
+
+            val future = CompletableFuture<List<OAuth2Guild>>()
+
+            oAuth2Client.getGuilds(WebHelpers.getSession(request, oAuth2Client)).queue(
+                { list ->
+                    future.complete(list.filter {
+                        it.hasPermission(Permission.ADMINISTRATOR) || it.hasPermission(Permission.MANAGE_SERVER)
+                    })
+                },
+                // Failed requests are not reused, the next request will try again
+                { error -> future.completeExceptionally(error) }
+            )
+
+            CachedGuilds(future, now + CACHE_TTL)
+        }!!.future
+    }
+
     private fun guildToJson(guild: OAuth2Guild, shardManager: ShardManager): JSONObject {
 
         val jdaGuild = shardManager.getGuildById(guild.id)
@@ -70,4 +124,6 @@ object GetUserGuilds {
             .put("members", jdaGuild?.memberCache?.size() ?: false)
             .put("id", guild.id)
     }
+
+    private data class CachedGuilds(val future: CompletableFuture<List<OAuth2Guild>>, val expires: Long)
 }
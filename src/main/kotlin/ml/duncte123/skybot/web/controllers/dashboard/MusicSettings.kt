@@ -36,7 +36,7 @@ object MusicSettings {
 
         return """<p>Audio player details:</p>
             |<p>Currently playing: <b>${if (mng.player.playingTrack != null) mng.player.playingTrack.info.title else "nothing"}</b></p>
-            |<p>Total tracks in queue: <b>${mng.scheduler.queue.size}</b></p>
+            |<p>Total tracks in queue: <b>${synchronized(mng.scheduler.queue) { mng.scheduler.queue.size }}</b></p>
         """.trimMargin()
     }
 }
@@ -0,0 +1,325 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot;
+
+import ml.duncte123.skybot.objects.guild.GuildSettings;
+import ml.duncte123.skybot.replay.*;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.entities.TextChannel;
+import net.dv8tion.jda.core.entities.VoiceChannel;
+import net.dv8tion.jda.core.events.Event;
+import net.dv8tion.jda.core.events.guild.member.GuildMemberJoinEvent;
+import net.dv8tion.jda.core.events.guild.member.GuildMemberLeaveEvent;
+import net.dv8tion.jda.core.events.guild.voice.GuildVoiceJoinEvent;
+import net.dv8tion.jda.core.events.guild.voice.GuildVoiceLeaveEvent;
+import net.dv8tion.jda.core.events.message.guild.GuildMessageReceivedEvent;
+
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a trace of events into the event manager without connecting to discord, this is used to load test the
+ * listeners, the command manager and the auto-mod
+ * <p>
+ * Usage: {@code gradlew replay -Pargs="--guilds=50 --members=200 --events=100000 --rate=2000"}
+ * <ul>
+ * <li>--guilds, --members, --channels: the size of the fake discord</li>
+ * <li>--events: the amount of events to generate, --seed: the seed for the generator</li>
+ * <li>--trace: replay a trace file instead of generating one, --save: write the trace to a file</li>
+ * <li>--rate: events per second, 0 replays as fast as possible</li>
+ * <li>--can-talk: let the bot talk in the channels, most messages are not sent when this is false</li>
+ * </ul>
+ * This needs the same config.json as the bot, use SQLite as the database so the run does not touch real data
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class ReplayHarness {
+
+    private static final long DRAIN_TIMEOUT = TimeUnit.MINUTES.toMillis(5);
+
+    private final FakeDiscord discord;
+    private final EventManager eventManager;
+    private final Variables variables;
+    private final Map<TraceEvent.Type, LatencyRecorder> handleLatency = new EnumMap<>(TraceEvent.Type.class);
+    private long responseNumber = 0;
+    private long skipped = 0;
+
+    private ReplayHarness(Variables variables, FakeDiscord discord) {
+        this.variables = variables;
+        this.discord = discord;
+        this.eventManager = new EventManager(variables);
+        discord.setEventManager(eventManager);
+
+        for (TraceEvent.Type type : TraceEvent.Type.values()) {
+            handleLatency.put(type, new LatencyRecorder(type.name()));
+        }
+
+        // Turn on the auto-mod and make sure that we never go to the database for the settings
+        for (FakeDiscord.FakeGuild guild : discord.getGuilds()) {
+            final long guildId = guild.getGuild().getIdLong();
+
+            variables.getGuildSettings().put(guildId, new GuildSettings(guildId)
+                .setEnableSwearFilter(true)
+                .setFilterInvites(true)
+                .setEnableSpamFilter(true)
+            );
+        }
+    }
+
+    public static void main(String[] args) throws Exception {
+        final Map<String, String> options = parseOptions(args);
+        final int guilds = Integer.parseInt(options.getOrDefault("guilds", "50"));
+        final int members = Integer.parseInt(options.getOrDefault("members", "200"));
+        final int channels = Integer.parseInt(options.getOrDefault("channels", "3"));
+        final int rate = Integer.parseInt(options.getOrDefault("rate", "0"));
+        final boolean canTalk = Boolean.parseBoolean(options.getOrDefault("can-talk", "false"));
+
+        final List<TraceEvent> trace;
+
+        if (options.containsKey("trace")) {
+            trace = Traces.read(Paths.get(options.get("trace")));
+        } else {
+            trace = Traces.generate(
+                Integer.parseInt(options.getOrDefault("events", "100000")),
+                guilds, members, channels, new Traces.Mix(),
+                Long.parseLong(options.getOrDefault("seed", "1"))
+            );
+        }
+
+        if (options.containsKey("save")) {
+            final Path file = Paths.get(options.get("save"));
+
+            Traces.write(file, trace);
+            System.out.println("Wrote " + trace.size() + " events to " + file);
+        }
+
+        final FakeDiscord discord = new FakeDiscord(guilds, members, channels, canTalk);
+        final ReplayHarness harness = new ReplayHarness(new Variables(), discord);
+
+        harness.run(trace, rate);
+        System.exit(0);
+    }
+
+    private void run(List<TraceEvent> trace, int rate) {
+        final long interval = rate <= 0 ? 0 : TimeUnit.SECONDS.toNanos(1) / rate;
+        final long start = System.nanoTime();
+
+        for (int i = 0; i < trace.size(); i++) {
+            if (interval > 0) {
+                final long wait = start + i * interval - System.nanoTime();
+
+                if (wait > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+
+            replay(trace.get(i));
+        }
+
+        final long submitted = System.nanoTime();
+        final boolean drained = waitForDrain();
+        final long end = System.nanoTime();
+
+        report(trace.size(), submitted - start, end - start, drained);
+    }
+
+    private void replay(TraceEvent traceEvent) {
+        final List<FakeDiscord.FakeGuild> guilds = discord.getGuilds();
+        final FakeDiscord.FakeGuild guild = guilds.get(traceEvent.getGuild() % guilds.size());
+        final JDA jda = discord.getJDA();
+        final List<Member> members = guild.getMembers();
+        final Member member = members.isEmpty() || traceEvent.getMember() < 0 ?
+            null : members.get(traceEvent.getMember() % members.size());
+        final Event event;
+
+        switch (traceEvent.getType()) {
+            case MESSAGE: {
+                final List<TextChannel> channels = guild.getTextChannels();
+
+                if (member == null || channels.isEmpty()) {
+                    skipped++;
+                    return;
+                }
+
+                final TextChannel channel = channels.get(traceEvent.getChannel() % channels.size());
+
+                event = new GuildMessageReceivedEvent(jda, responseNumber++,
+                    guild.createMessage(member, channel, traceEvent.getContent()));
+                break;
+            }
+            case MEMBER_JOIN:
+                event = new GuildMemberJoinEvent(jda, responseNumber++, guild.getGuild(), guild.addMember());
+                break;
+            case MEMBER_LEAVE:
+                if (member == null) {
+                    skipped++;
+                    return;
+                }
+
+                guild.removeMember(member);
+                event = new GuildMemberLeaveEvent(jda, responseNumber++, guild.getGuild(), member);
+                break;
+            case VOICE_JOIN: {
+                final List<VoiceChannel> channels = guild.getVoiceChannels();
+
+                if (member == null || channels.isEmpty() || guild.getVoiceChannel(member) != null) {
+                    skipped++;
+                    return;
+                }
+
+                guild.setVoiceChannel(member, channels.get(traceEvent.getChannel() % channels.size()));
+                event = new GuildVoiceJoinEvent(jda, responseNumber++, member);
+                break;
+            }
+            case VOICE_LEAVE: {
+                final VoiceChannel channel = member == null ? null : guild.getVoiceChannel(member);
+
+                if (channel == null) {
+                    skipped++;
+                    return;
+                }
+
+                guild.setVoiceChannel(member, null);
+                event = new GuildVoiceLeaveEvent(jda, responseNumber++, member, channel);
+                break;
+            }
+            default:
+                throw new IllegalArgumentException("Unknown event type " + traceEvent.getType());
+        }
+
+        final long start = System.nanoTime();
+
+        eventManager.handle(event);
+        handleLatency.get(traceEvent.getType()).record(System.nanoTime() - start);
+    }
+
+    /**
+     * Waits until the events and commands are done, not just out of their queues
+     *
+     * @return false if they did not get empty in time
+     */
+    private boolean waitForDrain() {
+        final long deadline = System.currentTimeMillis() + DRAIN_TIMEOUT;
+        final CommandScheduler scheduler = variables.getCommandManager().commandScheduler;
+
+        // The events are checked first, an event that is still being handled can submit a command after we look
+        while (eventManager.getInFlightEvents() > 0 || scheduler.getQueued() > 0 || scheduler.getRunning() > 0) {
+            if (System.currentTimeMillis() > deadline) {
+                return false;
+            }
+
+            LockSupport.parkNanos(TimeUnit.MILLISECONDS.toNanos(10));
+        }
+
+        return true;
+    }
+
+    private void report(int events, long submitNanos, long totalNanos, boolean drained) {
+        final CommandManager commandManager = variables.getCommandManager();
+        final CommandScheduler scheduler = commandManager.commandScheduler;
+        final CommandThrottle throttle = commandManager.commandThrottle;
+        final double seconds = totalNanos / 1e9;
+
+        System.out.println();
+        System.out.println("==== Replay results ====");
+        System.out.printf("Events: %d (%d skipped), submitted in %dms, handled in %dms%s%n",
+            events, skipped, TimeUnit.NANOSECONDS.toMillis(submitNanos), TimeUnit.NANOSECONDS.toMillis(totalNanos),
+            drained ? "" : " (the queues did not drain in time)");
+        System.out.printf("Throughput: %.1f events/s, dropped by the event manager: %d%n",
+            (events - skipped) / seconds, eventManager.getDroppedEvents());
+
+        System.out.println();
+        System.out.println("EventManager.handle (websocket thread):");
+        handleLatency.values().forEach((recorder) -> System.out.println("  " + recorder.summary()));
+
+        System.out.println();
+        System.out.println("Listeners (event lanes, bucketed):");
+
+        for (EventManager.ListenerStats stats : eventManager.getListenerStats()) {
+            System.out.println("  " + listenerSummary(stats));
+        }
+
+        System.out.println();
+        System.out.printf("Commands: executed=%d rejected=%d queue avg=%.2fms max=%dms%n",
+            scheduler.getExecuted(), scheduler.getRejected(), scheduler.getAverageQueueTime(),
+            scheduler.getMaxQueueTime());
+        System.out.printf("Throttle: allowed=%d throttled users=%d throttled guilds=%d%n",
+            throttle.getAllowed(), throttle.getThrottledUsers(), throttle.getThrottledGuilds());
+
+        System.out.println();
+        System.out.println("Recorded requests (" + discord.getRecorder().getUnanswered() + " without a fake response):");
+        discord.getRecorder().getRequests().forEach((name, count) -> System.out.printf("  %-40s %d%n", name, count));
+    }
+
+    /**
+     * The listener stats only have buckets, so the percentiles are the upper bound of the bucket they fall in
+     */
+    private static String listenerSummary(EventManager.ListenerStats stats) {
+        final long[] bounds = stats.getBucketBounds();
+        final long[] counts = stats.getCounts();
+        final long total = Arrays.stream(counts).sum();
+
+        if (total == 0) {
+            return String.format("%-20s no events", stats.getName());
+        }
+
+        return String.format("%-20s n=%-8d avg=%dus p50<=%s p90<=%s p99<=%s",
+            stats.getName(), total, TimeUnit.NANOSECONDS.toMicros(stats.getTotalNanos()) / total,
+            bucketBound(bounds, counts, total, 50), bucketBound(bounds, counts, total, 90),
+            bucketBound(bounds, counts, total, 99));
+    }
+
+    private static String bucketBound(long[] bounds, long[] counts, long total, double percentile) {
+        final double target = total * percentile / 100;
+        long seen = 0;
+
+        for (int i = 0; i < counts.length; i++) {
+            seen += counts[i];
+
+            if (seen >= target) {
+                return i < bounds.length ? bounds[i] + "ms" : "inf";
+            }
+        }
+
+        return "inf";
+    }
+
+    private static Map<String, String> parseOptions(String[] args) {
+        final Map<String, String> options = new HashMap<>();
+
+        for (String arg : args) {
+            if (!arg.startsWith("--")) {
+                continue;
+            }
+
+            final int split = arg.indexOf('=');
+
+            if (split == -1) {
+                options.put(arg.substring(2), "true");
+            } else {
+                options.put(arg.substring(2, split), arg.substring(split + 1));
+            }
+        }
+
+        return options;
+    }
+}
@@ -0,0 +1,405 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.replay;
+
+import ml.duncte123.skybot.Author;
+import net.dv8tion.jda.bot.JDABot;
+import net.dv8tion.jda.bot.sharding.ShardManager;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.OnlineStatus;
+import net.dv8tion.jda.core.entities.*;
+import net.dv8tion.jda.core.hooks.IEventManager;
+import net.dv8tion.jda.core.utils.cache.MemberCacheView;
+import net.dv8tion.jda.core.utils.cache.SnowflakeCacheView;
+
+import java.time.OffsetDateTime;
+import java.util.*;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A fake discord with guilds, members and channels that only lives in memory
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class FakeDiscord {
+
+    /**
+     * Ids are made like discord snowflakes so they get spread over the event lanes in the same way
+     */
+    private static final long DISCORD_EPOCH = 1420070400000L;
+
+    private final AtomicLong idSequence = new AtomicLong();
+    private final RestRecorder recorder = new RestRecorder();
+    private final List<FakeGuild> guilds = new ArrayList<>();
+    private final Map<Long, FakeGuild> guildsById = new HashMap<>();
+    private final boolean canTalk;
+    private final JDA jda;
+    private final ShardManager shardManager;
+    private final SelfUser selfUser;
+    private volatile IEventManager eventManager;
+
+    /**
+     * @param guildCount
+     *         the amount of guilds
+     * @param membersPerGuild
+     *         the amount of members that every guild starts with
+     * @param channelsPerGuild
+     *         the amount of text and voice channels in every guild
+     * @param canTalk
+     *         if the bot is allowed to talk in the channels, when this is false most messages are never sent
+     */
+    public FakeDiscord(int guildCount, int membersPerGuild, int channelsPerGuild, boolean canTalk) {
+        this.canTalk = canTalk;
+        this.jda = Fakes.create(JDA.class, "FakeJDA", recorder, jdaAnswers());
+        this.selfUser = Fakes.create(SelfUser.class, "FakeSelfUser", recorder, userAnswers(nextId(), "DuncteBot", true));
+        this.shardManager = Fakes.create(ShardManager.class, "FakeShardManager", recorder, shardManagerAnswers());
+        this.recorder.setJDA(jda);
+
+        for (int i = 0; i < guildCount; i++) {
+            FakeGuild guild = new FakeGuild(nextId(), "Guild " + i);
+
+            for (int c = 0; c < channelsPerGuild; c++) {
+                guild.textChannels.add(guild.createTextChannel(nextId(), "text-" + c));
+                guild.voiceChannels.add(guild.createVoiceChannel(nextId(), "voice-" + c));
+            }
+
+            guild.selfMember = guild.createMember(selfUser);
+
+            for (int m = 0; m < membersPerGuild; m++) {
+                guild.addMember();
+            }
+
+            guilds.add(guild);
+            guildsById.put(guild.id, guild);
+        }
+    }
+
+    public JDA getJDA() {
+        return jda;
+    }
+
+    public RestRecorder getRecorder() {
+        return recorder;
+    }
+
+    public List<FakeGuild> getGuilds() {
+        return Collections.unmodifiableList(guilds);
+    }
+
+    public void setEventManager(IEventManager eventManager) {
+        this.eventManager = eventManager;
+    }
+
+    private long nextId() {
+        return ((System.currentTimeMillis() - DISCORD_EPOCH) << 22) | (idSequence.incrementAndGet() & 0x3FFFFF);
+    }
+
+    private Map<String, Fakes.Answer> jdaAnswers() {
+        final Map<String, Fakes.Answer> answers = new HashMap<>();
+        final JDABot bot = Fakes.create(JDABot.class, "FakeJDABot", recorder,
+            Map.of("getShardManager", (args) -> shardManager));
+
+        answers.put("getShardInfo", (args) -> new JDA.ShardInfo(0, 1));
+        answers.put("getStatus", (args) -> JDA.Status.CONNECTED);
+        answers.put("getSelfUser", (args) -> selfUser);
+        answers.put("asBot", (args) -> bot);
+        answers.put("getEventManager", (args) -> eventManager);
+        answers.put("getGuildById", (args) -> getGuild(args[0]));
+        answers.put("getGuilds", (args) -> getGuildList());
+        answers.put("getGuildCache", (args) -> Fakes.cacheView(SnowflakeCacheView.class, getGuildList(), Guild::getIdLong));
+
+        return answers;
+    }
+
+    private Map<String, Fakes.Answer> shardManagerAnswers() {
+        final Map<String, Fakes.Answer> answers = new HashMap<>();
+
+        answers.put("getShardsTotal", (args) -> 1);
+        answers.put("getShards", (args) -> List.of(jda));
+        answers.put("getShardById", (args) -> jda);
+        answers.put("getGuildById", (args) -> getGuild(args[0]));
+        answers.put("getGuilds", (args) -> getGuildList());
+        answers.put("getGuildCache", (args) -> Fakes.cacheView(SnowflakeCacheView.class, getGuildList(), Guild::getIdLong));
+
+        return answers;
+    }
+
+    private Guild getGuild(Object id) {
+        final FakeGuild guild = guildsById.get(id instanceof String ? Long.parseUnsignedLong((String) id) : (long) id);
+
+        return guild == null ? null : guild.guild;
+    }
+
+    private List<Guild> getGuildList() {
+        final List<Guild> result = new ArrayList<>(guilds.size());
+
+        for (FakeGuild guild : guilds) {
+            result.add(guild.guild);
+        }
+
+        return result;
+    }
+
+    private Map<String, Fakes.Answer> userAnswers(long id, String name, boolean bot) {
+        final Map<String, Fakes.Answer> answers = new HashMap<>();
+
+        answers.put("getIdLong", (args) -> id);
+        answers.put("getName", (args) -> name);
+        answers.put("getDiscriminator", (args) -> "0001");
+        answers.put("getAsMention", (args) -> "<@" + Long.toUnsignedString(id) + '>');
+        answers.put("isBot", (args) -> bot);
+        answers.put("isFake", (args) -> false);
+        answers.put("getJDA", (args) -> jda);
+        answers.put("getEffectiveAvatarUrl", (args) -> "https://cdn.discordapp.com/embed/avatars/0.png");
+
+        return answers;
+    }
+
+    /**
+     * A guild in the fake discord, members can join and leave while the events are replayed
+     */
+    public class FakeGuild {
+        private final long id;
+        private final Guild guild;
+        private final List<Member> members = new CopyOnWriteArrayList<>();
+        private final List<TextChannel> textChannels = new ArrayList<>();
+        private final List<VoiceChannel> voiceChannels = new ArrayList<>();
+        private final Map<Member, VoiceChannel> voiceStates = new HashMap<>();
+        private Member selfMember;
+
+        private FakeGuild(long id, String name) {
+            this.id = id;
+
+            final Map<String, Fakes.Answer> answers = new HashMap<>();
+
+            answers.put("getIdLong", (args) -> id);
+            answers.put("getName", (args) -> name);
+            answers.put("getJDA", (args) -> jda);
+            answers.put("getSelfMember", (args) -> selfMember);
+            answers.put("getOwner", (args) -> members.isEmpty() ? selfMember : members.get(0));
+            answers.put("getMemberCache", (args) -> Fakes.cacheView(MemberCacheView.class, members,
+                (member) -> member.getUser().getIdLong()));
+            answers.put("getMembers", (args) -> Collections.unmodifiableList(members));
+            answers.put("getMember", (args) -> findMember(((User) args[0]).getIdLong()));
+            answers.put("getMemberById", (args) -> findMember(toId(args[0])));
+            answers.put("getTextChannelCache", (args) -> Fakes.cacheView(SnowflakeCacheView.class, textChannels,
+                ISnowflake::getIdLong));
+            answers.put("getTextChannels", (args) -> Collections.unmodifiableList(textChannels));
+            answers.put("getTextChannelById", (args) -> findById(textChannels, toId(args[0])));
+            answers.put("getDefaultChannel", (args) -> textChannels.isEmpty() ? null : textChannels.get(0));
+            answers.put("getVoiceChannelCache", (args) -> Fakes.cacheView(SnowflakeCacheView.class, voiceChannels,
+                ISnowflake::getIdLong));
+            answers.put("getVoiceChannels", (args) -> Collections.unmodifiableList(voiceChannels));
+            answers.put("getVoiceChannelById", (args) -> findById(voiceChannels, toId(args[0])));
+            answers.put("getFeatures", (args) -> Collections.emptySet());
+
+            this.guild = Fakes.create(Guild.class, name, recorder, answers);
+        }
+
+        public Guild getGuild() {
+            return guild;
+        }
+
+        public List<Member> getMembers() {
+            return members;
+        }
+
+        public List<TextChannel> getTextChannels() {
+            return textChannels;
+        }
+
+        public List<VoiceChannel> getVoiceChannels() {
+            return voiceChannels;
+        }
+
+        /**
+         * Adds a new member to the guild
+         *
+         * @return the member that joined
+         */
+        public Member addMember() {
+            final long userId = nextId();
+            final User user = Fakes.create(User.class, "User " + userId, recorder,
+                userAnswers(userId, "User" + userId, false));
+            final Member member = createMember(user);
+
+            members.add(member);
+
+            return member;
+        }
+
+        public void removeMember(Member member) {
+            members.remove(member);
+
+            synchronized (voiceStates) {
+                voiceStates.remove(member);
+            }
+        }
+
+        /**
+         * Moves a member in or out of a voice channel
+         *
+         * @param channel
+         *         the channel to join or null to leave
+         */
+        public void setVoiceChannel(Member member, VoiceChannel channel) {
+            synchronized (voiceStates) {
+                if (channel == null) {
+                    voiceStates.remove(member);
+                } else {
+                    voiceStates.put(member, channel);
+                }
+            }
+        }
+
+        public VoiceChannel getVoiceChannel(Member member) {
+            synchronized (voiceStates) {
+                return voiceStates.get(member);
+            }
+        }
+
+        /**
+         * Makes a message that looks like it was sent by the member
+         */
+        public Message createMessage(Member member, TextChannel channel, String content) {
+            final long messageId = nextId();
+            final Map<String, Fakes.Answer> answers = new HashMap<>();
+
+            answers.put("getIdLong", (args) -> messageId);
+            answers.put("getContentRaw", (args) -> content);
+            answers.put("getContentDisplay", (args) -> content);
+            answers.put("getContentStripped", (args) -> content);
+            answers.put("getAuthor", (args) -> member.getUser());
+            answers.put("getMember", (args) -> member);
+            answers.put("getGuild", (args) -> guild);
+            answers.put("getChannel", (args) -> channel);
+            answers.put("getTextChannel", (args) -> channel);
+            answers.put("getChannelType", (args) -> ChannelType.TEXT);
+            answers.put("isFromType", (args) -> args[0] == ChannelType.TEXT);
+            answers.put("getType", (args) -> MessageType.DEFAULT);
+            answers.put("getJDA", (args) -> jda);
+            answers.put("getCreationTime", (args) -> OffsetDateTime.now());
+
+            return Fakes.create(Message.class, "Message " + messageId, recorder, answers);
+        }
+
+        private Member createMember(User user) {
+            final OffsetDateTime joinDate = OffsetDateTime.now();
+            final boolean self = user == selfUser;
+            final Map<String, Fakes.Answer> answers = new HashMap<>();
+            final Member[] member = new Member[1];
+            final GuildVoiceState voiceState = Fakes.create(GuildVoiceState.class, "VoiceState", recorder, Map.of(
+                "getMember", (args) -> member[0],
+                "getGuild", (args) -> guild,
+                "getJDA", (args) -> jda,
+                "getChannel", (args) -> getVoiceChannel(member[0]),
+                "getAudioChannel", (args) -> getVoiceChannel(member[0]),
+                "inVoiceChannel", (args) -> getVoiceChannel(member[0]) != null
+            ));
+
+            answers.put("getUser", (args) -> user);
+            answers.put("getGuild", (args) -> guild);
+            answers.put("getJDA", (args) -> jda);
+            answers.put("getEffectiveName", (args) -> user.getName());
+            answers.put("getAsMention", (args) -> user.getAsMention());
+            answers.put("getJoinDate", (args) -> joinDate);
+            answers.put("getVoiceState", (args) -> voiceState);
+            answers.put("getOnlineStatus", (args) -> OnlineStatus.ONLINE);
+            // The bot can moderate so the auto-mod checks run, members can't so they don't skip them
+            answers.put("hasPermission", (args) -> self);
+            answers.put("canInteract", (args) -> self);
+            answers.put("isOwner", (args) -> false);
+
+            member[0] = Fakes.create(Member.class, "Member " + user.getIdLong(), recorder, answers);
+
+            return member[0];
+        }
+
+        private TextChannel createTextChannel(long channelId, String name) {
+            final Map<String, Fakes.Answer> answers = new HashMap<>();
+
+            answers.put("getIdLong", (args) -> channelId);
+            answers.put("getName", (args) -> name);
+            answers.put("getGuild", (args) -> guild);
+            answers.put("getJDA", (args) -> jda);
+            answers.put("getType", (args) -> ChannelType.TEXT);
+            answers.put("getAsMention", (args) -> "<#" + Long.toUnsignedString(channelId) + '>');
+            answers.put("canTalk", (args) -> canTalk);
+            answers.put("getMembers", (args) -> Collections.unmodifiableList(members));
+
+            return Fakes.create(TextChannel.class, name, recorder, answers);
+        }
+
+        private VoiceChannel createVoiceChannel(long channelId, String name) {
+            final Map<String, Fakes.Answer> answers = new HashMap<>();
+            final VoiceChannel[] channel = new VoiceChannel[1];
+
+            answers.put("getIdLong", (args) -> channelId);
+            answers.put("getName", (args) -> name);
+            answers.put("getGuild", (args) -> guild);
+            answers.put("getJDA", (args) -> jda);
+            answers.put("getType", (args) -> ChannelType.VOICE);
+            answers.put("getMembers", (args) -> {
+                final List<Member> inChannel = new ArrayList<>();
+
+                synchronized (voiceStates) {
+                    voiceStates.forEach((member, joined) -> {
+                        if (joined == channel[0]) {
+                            inChannel.add(member);
+                        }
+                    });
+                }
+
+                return inChannel;
+            });
+
+            channel[0] = Fakes.create(VoiceChannel.class, name, recorder, answers);
+
+            return channel[0];
+        }
+
+        private Member findMember(long userId) {
+            if (selfMember != null && selfUser.getIdLong() == userId) {
+                return selfMember;
+            }
+
+            for (Member member : members) {
+                if (member.getUser().getIdLong() == userId) {
+                    return member;
+                }
+            }
+
+            return null;
+        }
+
+        private <T extends ISnowflake> T findById(List<T> list, long id) {
+            for (T item : list) {
+                if (item.getIdLong() == id) {
+                    return item;
+                }
+            }
+
+            return null;
+        }
+
+        private long toId(Object id) {
+            return id instanceof String ? Long.parseUnsignedLong((String) id) : (long) id;
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.replay;
+
+import ml.duncte123.skybot.Author;
+import net.dv8tion.jda.core.requests.RestAction;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+import java.util.function.ToLongFunction;
+import java.util.stream.Stream;
+
+/**
+ * Makes fake versions of the jda interfaces, methods that we don't answer return an empty value
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+final class Fakes {
+
+    private Fakes() {}
+
+    @FunctionalInterface
+    interface Answer {
+        Object answer(Object[] args) throws Throwable;
+    }
+
+    /**
+     * Makes a fake object
+     *
+     * @param type
+     *         the interface to fake
+     * @param name
+     *         the name that is returned by toString
+     * @param recorder
+     *         records the requests that are made on the object
+     * @param answers
+     *         the answers for methods by their name
+     *
+     * @return the fake object
+     */
+    static <T> T create(Class<T> type, String name, RestRecorder recorder, Map<String, Answer> answers) {
+        final Object proxy = Proxy.newProxyInstance(type.getClassLoader(), new Class[]{type}, (self, method, args) -> {
+            final Object[] arguments = args == null ? new Object[0] : args;
+            final String methodName = method.getName();
+
+            if (method.getDeclaringClass() == Object.class) {
+                switch (methodName) {
+                    case "equals":
+                        return self == arguments[0];
+                    case "hashCode":
+                        return System.identityHashCode(self);
+                    default:
+                        return name;
+                }
+            }
+
+            final Answer answer = answers.get(methodName);
+
+            if (answer != null) {
+                return answer.answer(arguments);
+            }
+
+            final Class<?> returnType = method.getReturnType();
+
+            if (RestAction.class.isAssignableFrom(returnType)) {
+                return recorder.record(self, type.getSimpleName(), methodName, arguments, returnType);
+            }
+
+            if (method.isDefault()) {
+                return invokeDefault(type, self, method, arguments);
+            }
+
+            return emptyValue(returnType);
+        });
+
+        return type.cast(proxy);
+    }
+
+    /**
+     * Makes a fake cache view that holds the elements of a list
+     */
+    static <T, E> T cacheView(Class<T> type, List<E> elements, ToLongFunction<E> getId) {
+        final Map<String, Answer> answers = new HashMap<>();
+
+        answers.put("size", (args) -> (long) elements.size());
+        answers.put("isEmpty", (args) -> elements.isEmpty());
+        answers.put("asList", (args) -> Collections.unmodifiableList(elements));
+        answers.put("asSet", (args) -> Collections.unmodifiableSet(new HashSet<>(elements)));
+        answers.put("stream", (args) -> elements.stream());
+        answers.put("parallelStream", (args) -> elements.parallelStream());
+        answers.put("iterator", (args) -> Collections.unmodifiableList(elements).iterator());
+        answers.put("getElementById", (args) -> {
+            final long id = args[0] instanceof String ? Long.parseUnsignedLong((String) args[0]) : (long) args[0];
+
+            for (E element : elements) {
+                if (getId.applyAsLong(element) == id) {
+                    return element;
+                }
+            }
+
+            return null;
+        });
+
+        return create(type, type.getSimpleName(), null, answers);
+    }
+
+    private static Object invokeDefault(Class<?> type, Object self, Method method, Object[] args) throws Throwable {
+        return MethodHandles.privateLookupIn(type, MethodHandles.lookup())
+            .unreflectSpecial(method, type)
+            .bindTo(self)
+            .invokeWithArguments(args);
+    }
+
+    private static Object emptyValue(Class<?> type) {
+        if (type == boolean.class) {
+            return false;
+        } else if (type == int.class) {
+            return 0;
+        } else if (type == long.class) {
+            return 0L;
+        } else if (type == double.class) {
+            return 0D;
+        } else if (type == float.class) {
+            return 0F;
+        } else if (type == short.class) {
+            return (short) 0;
+        } else if (type == byte.class) {
+            return (byte) 0;
+        } else if (type == char.class) {
+            return '\0';
+        } else if (type == String.class) {
+            return "";
+        } else if (type == List.class || type == Collection.class) {
+            return Collections.emptyList();
+        } else if (type == Set.class) {
+            return Collections.emptySet();
+        } else if (type == Map.class) {
+            return Collections.emptyMap();
+        } else if (type == Optional.class) {
+            return Optional.empty();
+        } else if (type == Stream.class) {
+            return Stream.empty();
+        }
+
+        return null;
+    }
+}
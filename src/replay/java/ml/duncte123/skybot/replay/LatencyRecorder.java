@@ -0,0 +1,70 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.replay;
+
+import ml.duncte123.skybot.Author;
+
+import java.util.Arrays;
+
+/**
+ * Keeps all the samples of one stage so we can give exact percentiles at the end of a run
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class LatencyRecorder {
+
+    private final String name;
+    private long[] samples = new long[1024];
+    private int size = 0;
+
+    public LatencyRecorder(String name) {
+        this.name = name;
+    }
+
+    public synchronized void record(long nanos) {
+        if (size == samples.length) {
+            samples = Arrays.copyOf(samples, size * 2);
+        }
+
+        samples[size++] = nanos;
+    }
+
+    /**
+     * @return a line with the count and the p50, p90, p99, p99.9 and max in microseconds
+     */
+    public synchronized String summary() {
+        if (size == 0) {
+            return String.format("%-20s no samples", name);
+        }
+
+        final long[] sorted = Arrays.copyOf(samples, size);
+
+        Arrays.sort(sorted);
+
+        return String.format("%-20s n=%-8d p50=%dus p90=%dus p99=%dus p99.9=%dus max=%dus",
+            name, size,
+            percentile(sorted, 50), percentile(sorted, 90), percentile(sorted, 99), percentile(sorted, 99.9),
+            sorted[size - 1] / 1000);
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        final int index = (int) Math.ceil(percentile / 100 * sorted.length) - 1;
+
+        return sorted[Math.max(0, index)] / 1000;
+    }
+}
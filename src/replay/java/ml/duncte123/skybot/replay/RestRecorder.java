@@ -0,0 +1,175 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.replay;
+
+import ml.duncte123.skybot.Author;
+import net.dv8tion.jda.core.JDA;
+import net.dv8tion.jda.core.entities.Message;
+import net.dv8tion.jda.core.entities.MessageChannel;
+import net.dv8tion.jda.core.entities.TextChannel;
+import net.dv8tion.jda.core.requests.RequestFuture;
+import net.dv8tion.jda.core.requests.RestAction;
+import net.dv8tion.jda.core.requests.RestFuture;
+import net.dv8tion.jda.core.requests.Route;
+import net.dv8tion.jda.core.requests.restaction.AuditableRestAction;
+import net.dv8tion.jda.core.requests.restaction.MessageAction;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Takes the place of the discord api, every request that the bot makes is counted instead of sent
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class RestRecorder {
+
+    private final Map<String, LongAdder> requests = new ConcurrentHashMap<>();
+    private final LongAdder unanswered = new LongAdder();
+    private final AtomicLong messageIds = new AtomicLong(1L << 40);
+    private volatile JDA jda;
+
+    void setJDA(JDA jda) {
+        this.jda = jda;
+    }
+
+    /**
+     * Records a request and makes an action that completes right away
+     *
+     * @param self
+     *         the fake object that the request was made on
+     * @param entity
+     *         the type of the entity that the request was made on
+     * @param method
+     *         the name of the method
+     * @param args
+     *         the arguments of the method
+     * @param type
+     *         the type of action that the method should return
+     *
+     * @return the action
+     *
+     * @throws UnsupportedOperationException
+     *         when we can't make an action of this type
+     */
+    Object record(Object self, String entity, String method, Object[] args, Class<?> type) {
+        requests.computeIfAbsent(entity + '.' + method, (k) -> new LongAdder()).increment();
+
+        if (type.isAssignableFrom(AuditableRestAction.EmptyRestAction.class)) {
+            return new AuditableRestAction.EmptyRestAction<>(jda);
+        }
+
+        if (type.isAssignableFrom(RestAction.EmptyRestAction.class)) {
+            return new RestAction.EmptyRestAction<>(jda);
+        }
+
+        if (type.isAssignableFrom(RecordedMessageAction.class)) {
+            return messageAction(self, method, args);
+        }
+
+        // Actions like the ChannelAction need a real guild to be made, fail here instead of handing out null
+        unanswered.increment();
+
+        throw new UnsupportedOperationException("The replay can't answer " + entity + '.' + method);
+    }
+
+    /**
+     * Makes a message action that "sends" the message right away, the message that it completes with is fake as well
+     * so the things that are done with it are recorded too
+     */
+    private MessageAction messageAction(Object self, String method, Object[] args) {
+        final MessageChannel channel = self instanceof Message ? ((Message) self).getChannel() : (MessageChannel) self;
+        final Route.CompiledRoute route;
+        final long messageId;
+
+        if (method.startsWith("edit")) {
+            messageId = self instanceof Message
+                ? ((Message) self).getIdLong()
+                : Long.parseUnsignedLong(String.valueOf(args[0]));
+            route = Route.Messages.EDIT_MESSAGE.compile(channel.getId(), Long.toUnsignedString(messageId));
+        } else {
+            messageId = messageIds.incrementAndGet();
+            route = Route.Messages.SEND_MESSAGE.compile(channel.getId());
+        }
+
+        final Map<String, Fakes.Answer> answers = new HashMap<>();
+
+        answers.put("getIdLong", (a) -> messageId);
+        answers.put("getChannel", (a) -> channel);
+        answers.put("getTextChannel", (a) -> channel instanceof TextChannel ? channel : null);
+        answers.put("getGuild", (a) -> channel instanceof TextChannel ? ((TextChannel) channel).getGuild() : null);
+        answers.put("getAuthor", (a) -> jda.getSelfUser());
+        answers.put("getJDA", (a) -> jda);
+
+        final Message message = Fakes.create(Message.class, "Message " + messageId, this, answers);
+
+        return new RecordedMessageAction(jda, route, channel, message);
+    }
+
+    /**
+     * @return the amount of requests per method, sorted by name
+     */
+    public Map<String, Long> getRequests() {
+        final Map<String, Long> result = new TreeMap<>();
+
+        requests.forEach((name, count) -> result.put(name, count.sum()));
+
+        return result;
+    }
+
+    /**
+     * @return the amount of requests that we could not make an action for
+     */
+    public long getUnanswered() {
+        return unanswered.sum();
+    }
+
+    /**
+     * A message action that never goes to discord and completes with a fake message
+     */
+    private static class RecordedMessageAction extends MessageAction {
+        private final Message message;
+
+        private RecordedMessageAction(JDA api, Route.CompiledRoute route, MessageChannel channel, Message message) {
+            super(api, route, channel);
+            this.message = message;
+        }
+
+        @Override
+        public void queue(Consumer<? super Message> success, Consumer<? super Throwable> failure) {
+            if (success != null) {
+                success.accept(message);
+            }
+        }
+
+        @Override
+        public RequestFuture<Message> submit(boolean shouldQueue) {
+            return new RestFuture<>(message);
+        }
+
+        @Override
+        public Message complete(boolean shouldQueue) {
+            return message;
+        }
+    }
+}
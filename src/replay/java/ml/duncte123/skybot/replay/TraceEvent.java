@@ -0,0 +1,90 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.replay;
+
+import ml.duncte123.skybot.Author;
+import org.json.JSONObject;
+
+/**
+ * One event in a trace, guilds, members and channels are referenced by their index in the fake discord
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class TraceEvent {
+
+    public enum Type {
+        MESSAGE,
+        MEMBER_JOIN,
+        MEMBER_LEAVE,
+        VOICE_JOIN,
+        VOICE_LEAVE
+    }
+
+    private final Type type;
+    private final int guild;
+    private final int member;
+    private final int channel;
+    private final String content;
+
+    public TraceEvent(Type type, int guild, int member, int channel, String content) {
+        this.type = type;
+        this.guild = guild;
+        this.member = member;
+        this.channel = channel;
+        this.content = content;
+    }
+
+    public Type getType() {
+        return type;
+    }
+
+    public int getGuild() {
+        return guild;
+    }
+
+    public int getMember() {
+        return member;
+    }
+
+    public int getChannel() {
+        return channel;
+    }
+
+    public String getContent() {
+        return content;
+    }
+
+    public JSONObject toJson() {
+        return new JSONObject()
+            .put("type", type.name())
+            .put("guild", guild)
+            .put("member", member)
+            .put("channel", channel)
+            .putOpt("content", content);
+    }
+
+    public static TraceEvent fromJson(JSONObject json) {
+        return new TraceEvent(
+            Type.valueOf(json.getString("type")),
+            json.getInt("guild"),
+            json.optInt("member"),
+            json.optInt("channel"),
+            json.optString("content", null)
+        );
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package ml.duncte123.skybot.replay;
+
+import ml.duncte123.skybot.Author;
+import ml.duncte123.skybot.Settings;
+import org.json.JSONObject;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * Makes, reads and writes traces, a trace file has one json event on every line
+ */
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public final class Traces {
+
+    private static final String[] PLAIN_MESSAGES = {
+        "hello there",
+        "does anyone know how to fix this?",
+        "lol",
+        "I'm going to get some food, brb",
+        "https://example.com/some/link",
+    };
+
+    private Traces() {}
+
+    /**
+     * The mix of events in a generated trace, the weights don't have to add up to anything
+     */
+    public static class Mix {
+        public int messages = 90;
+        public int joins = 3;
+        public int leaves = 2;
+        public int voice = 5;
+        /**
+         * Out of 100 messages, how many are commands, invites and swear words
+         */
+        public int commandPercentage = 20;
+        public int invitePercentage = 2;
+        public int swearPercentage = 2;
+        public String[] commands = {"help", "ping", "userinfo", "guildinfo", "flip", "ttb hello", "settings"};
+        public String swearMessage = "this is shit";
+    }
+
+    /**
+     * Makes a random trace, the same seed always gives the same trace
+     */
+    public static List<TraceEvent> generate(int count, int guilds, int membersPerGuild, int channelsPerGuild,
+                                            Mix mix, long seed) {
+        final Random random = new Random(seed);
+        final List<TraceEvent> events = new ArrayList<>(count);
+        final int totalWeight = mix.messages + mix.joins + mix.leaves + mix.voice;
+
+        for (int i = 0; i < count; i++) {
+            final int guild = random.nextInt(guilds);
+            // Members at the end of the list might have left, the replay wraps the index around
+            final int member = random.nextInt(Math.max(1, membersPerGuild));
+            final int channel = random.nextInt(Math.max(1, channelsPerGuild));
+            int pick = random.nextInt(totalWeight);
+
+            if ((pick -= mix.messages) < 0) {
+                events.add(new TraceEvent(TraceEvent.Type.MESSAGE, guild, member, channel, makeMessage(random, mix)));
+            } else if ((pick -= mix.joins) < 0) {
+                events.add(new TraceEvent(TraceEvent.Type.MEMBER_JOIN, guild, -1, 0, null));
+            } else if (pick - mix.leaves < 0) {
+                events.add(new TraceEvent(TraceEvent.Type.MEMBER_LEAVE, guild, member, 0, null));
+            } else {
+                final TraceEvent.Type type = random.nextBoolean() ? TraceEvent.Type.VOICE_JOIN : TraceEvent.Type.VOICE_LEAVE;
+
+                events.add(new TraceEvent(type, guild, member, channel, null));
+            }
+        }
+
+        return events;
+    }
+
+    public static List<TraceEvent> read(Path file) throws IOException {
+        final List<TraceEvent> events = new ArrayList<>();
+
+        for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+            if (!line.isBlank()) {
+                events.add(TraceEvent.fromJson(new JSONObject(line)));
+            }
+        }
+
+        return events;
+    }
+
+    public static void write(Path file, List<TraceEvent> events) throws IOException {
+        final List<String> lines = new ArrayList<>(events.size());
+
+        for (TraceEvent event : events) {
+            lines.add(event.toJson().toString());
+        }
+
+        Files.write(file, lines, StandardCharsets.UTF_8);
+    }
+
+    private static String makeMessage(Random random, Mix mix) {
+        final int kind = random.nextInt(100);
+
+        if (kind < mix.commandPercentage) {
+            return Settings.PREFIX + mix.commands[random.nextInt(mix.commands.length)];
+        }
+
+        if (kind < mix.commandPercentage + mix.invitePercentage) {
+            return "join my server discord.gg/abc" + random.nextInt(1000);
+        }
+
+        if (kind < mix.commandPercentage + mix.invitePercentage + mix.swearPercentage) {
+            return mix.swearMessage;
+        }
+
+        return PLAIN_MESSAGES[random.nextInt(PLAIN_MESSAGES.length)];
+    }
+}
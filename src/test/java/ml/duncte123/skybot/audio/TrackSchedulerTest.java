@@ -0,0 +1,196 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.audio;
+
+import com.sedmelluq.discord.lavaplayer.track.AudioTrack;
+import lavalink.client.player.IPlayer;
+import ml.duncte123.skybot.Author;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.*;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class TrackSchedulerTest {
+
+    private final AtomicReference<AudioTrack> playing = new AtomicReference<>();
+    private TrackScheduler scheduler;
+
+    @Before
+    public void setUp() {
+        final IPlayer player = mock(IPlayer.class);
+
+        when(player.getPlayingTrack()).thenAnswer((invocation) -> playing.get());
+        doAnswer((invocation) -> {
+            playing.set(invocation.getArgument(0));
+            return null;
+        }).when(player).playTrack(any());
+        doAnswer((invocation) -> {
+            playing.set(null);
+            return null;
+        }).when(player).stopTrack();
+
+        // The mocked manager does not announce tracks, so the variables are never used
+        scheduler = new TrackScheduler(player, null, mock(GuildMusicManager.class));
+    }
+
+    @Test
+    public void skipStartsTheNextTrack() {
+        start("playing", "a", "b", "c");
+
+        assertEquals(0, scheduler.skipTracks(1));
+        assertPlaying("a");
+        assertQueue("b", "c");
+    }
+
+    @Test
+    public void skipToDropsTheTracksInBetween() {
+        start("playing", "a", "b", "c");
+
+        assertEquals(1, scheduler.skipTo(1));
+        assertPlaying("b");
+        assertQueue("c");
+    }
+
+    @Test
+    public void skipPastTheQueuePlaysTheLastTrack() {
+        start("playing", "a", "b");
+
+        assertEquals(1, scheduler.skipTracks(5));
+        assertPlaying("b");
+        assertQueue();
+    }
+
+    @Test
+    public void skipWithAnEmptyQueueKeepsPlaying() {
+        start("playing");
+
+        assertEquals(0, scheduler.skipTracks(1));
+        assertPlaying("playing");
+        assertQueue();
+    }
+
+    @Test
+    public void skipWhileRepeatingMovesOn() {
+        start("playing", "a", "b");
+        scheduler.setRepeating(true);
+
+        assertEquals(0, scheduler.skipTracks(1));
+        assertPlaying("a");
+        assertQueue("b");
+    }
+
+    @Test
+    public void skipToWhileRepeatingPlaylistRequeuesSkippedTracks() {
+        start("playing", "a", "b", "c");
+        scheduler.setRepeating(true);
+        scheduler.setRepeatingPlaylists(true);
+
+        assertEquals(1, scheduler.skipTo(1));
+        assertPlaying("b");
+        assertQueue("c", "playing", "a");
+    }
+
+    @Test
+    public void skipWhileRepeatingPlaylistWithEmptyQueueReplaysTheTrack() {
+        start("playing");
+        scheduler.setRepeating(true);
+        scheduler.setRepeatingPlaylists(true);
+
+        assertEquals(0, scheduler.skipTracks(1));
+        assertPlaying("playing");
+        assertQueue();
+    }
+
+    @Test
+    public void removeRangeClampsToTheQueue() {
+        start("playing", "a", "b", "c", "d");
+
+        assertEquals(0, scheduler.removeRange(3, 1));
+        assertEquals(2, scheduler.removeRange(2, 10));
+        assertQueue("a", "b");
+    }
+
+    @Test
+    public void moveChangesThePosition() {
+        start("playing", "a", "b", "c");
+
+        assertTrue(scheduler.move(0, 2));
+        assertQueue("b", "c", "a");
+        assertFalse(scheduler.move(0, 3));
+        assertQueue("b", "c", "a");
+    }
+
+    @Test
+    public void removeDuplicatesKeepsTheFirstTrack() {
+        start("playing", "a", "b", "a", "c", "b");
+
+        assertEquals(2, scheduler.removeDuplicates());
+        assertQueue("a", "b", "c");
+    }
+
+    @Test
+    public void skipAfterMoveAndRemoveDuplicatesUsesTheNewOrder() {
+        start("playing", "a", "b", "a", "c");
+        scheduler.setRepeating(true);
+        scheduler.setRepeatingPlaylists(true);
+
+        assertEquals(1, scheduler.removeDuplicates());
+        assertTrue(scheduler.move(2, 0));
+
+        assertEquals(1, scheduler.skipTo(1));
+        assertPlaying("a");
+        assertQueue("b", "playing", "c");
+    }
+
+    private void start(String current, String... queued) {
+        scheduler.queue(track(current));
+        Arrays.stream(queued).map(this::track).forEach(scheduler::queue);
+    }
+
+    private void assertPlaying(String identifier) {
+        assertNotNull(playing.get());
+        assertEquals(identifier, playing.get().getIdentifier());
+    }
+
+    private void assertQueue(String... identifiers) {
+        final List<String> queue = scheduler.queue.stream()
+            .map(AudioTrack::getIdentifier)
+            .collect(Collectors.toList());
+
+        assertEquals(Arrays.asList(identifiers), queue);
+    }
+
+    private AudioTrack track(String identifier) {
+        final AudioTrack track = mock(AudioTrack.class);
+
+        when(track.getIdentifier()).thenReturn(identifier);
+        when(track.makeClone()).thenAnswer((invocation) -> track(identifier));
+
+        return track;
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Skybot, a multipurpose discord bot
+ *      Copyright (C) 2017 - 2018  Duncan "duncte123" Sterken & Ramid "ramidzkh" Khan
+ *
+ * This program is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU Affero General Public License as published
+ * by the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU Affero General Public License for more details.
+ *
+ * You should have received a copy of the GNU Affero General Public License
+ * along with this program.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package ml.duncte123.skybot.utils;
+
+import ml.duncte123.skybot.Author;
+import net.dv8tion.jda.core.Permission;
+import net.dv8tion.jda.core.entities.Guild;
+import net.dv8tion.jda.core.entities.Invite;
+import net.dv8tion.jda.core.entities.Member;
+import net.dv8tion.jda.core.requests.RestAction;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Consumer;
+
+import static java.util.Collections.singletonList;
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+@Author(nickname = "duncte123", author = "Duncan Sterken")
+public class GuildInviteCacheTest {
+
+    private final List<Consumer<List<Invite>>> pendingSuccess = new ArrayList<>();
+    private final List<Consumer<Throwable>> pendingFailure = new ArrayList<>();
+    private final List<Boolean> results = new ArrayList<>();
+    private GuildInviteCache cache;
+    private Guild guild;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        final RestAction<List<Invite>> action = mock(RestAction.class);
+        final Member selfMember = mock(Member.class);
+
+        doAnswer((invocation) -> {
+            pendingSuccess.add(invocation.getArgument(0));
+            pendingFailure.add(invocation.getArgument(1));
+            return null;
+        }).when(action).queue(any(), any());
+
+        guild = mock(Guild.class);
+        when(guild.getIdLong()).thenReturn(1L);
+        when(guild.getSelfMember()).thenReturn(selfMember);
+        when(guild.getInvites()).thenReturn(action);
+        when(selfMember.hasPermission(Permission.MANAGE_SERVER)).thenReturn(true);
+
+        cache = new GuildInviteCache();
+    }
+
+    @Test
+    public void checksDuringARefreshWaitForIt() {
+        cache.isOwnInvite(guild, "own", results::add);
+        cache.isOwnInvite(guild, "other", results::add);
+
+        // Nobody gets an answer from the empty set that we started with
+        assertEquals(0, results.size());
+        verify(guild, times(1)).getInvites();
+
+        pendingSuccess.get(0).accept(singletonList(invite("own")));
+
+        assertEquals(List.of(true, false), results);
+    }
+
+    @Test
+    public void failedRefreshAllowsTheInvite() {
+        cache.isOwnInvite(guild, "own", results::add);
+        pendingFailure.get(0).accept(new RuntimeException("Missing access"));
+
+        // The refresh was just done, so this answers right away without the invites
+        cache.isOwnInvite(guild, "other", results::add);
+
+        assertEquals(List.of(true, true), results);
+    }
+
+    @Test
+    public void missingPermissionAllowsTheInvite() {
+        when(guild.getSelfMember().hasPermission(Permission.MANAGE_SERVER)).thenReturn(false);
+
+        cache.isOwnInvite(guild, "other", results::add);
+
+        assertEquals(List.of(true), results);
+        verify(guild, never()).getInvites();
+    }
+
+    @Test
+    public void fetchedInvitesAreUsedUntilTheNextRefresh() {
+        cache.isOwnInvite(guild, "own", results::add);
+        pendingSuccess.get(0).accept(singletonList(invite("own")));
+
+        cache.isOwnInvite(guild, "own", results::add);
+        cache.isOwnInvite(guild, "other", results::add);
+
+        assertEquals(List.of(true, true, false), results);
+        verify(guild, times(1)).getInvites();
+    }
+
+    private static Invite invite(String code) {
+        final Invite invite = mock(Invite.class);
+
+        when(invite.getCode()).thenReturn(code);
+
+        return invite;
+    }
+}